@@ -30,9 +30,19 @@
 package org.scijava.ui.behaviour;
 
 import java.awt.Toolkit;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+
+import gnu.trove.map.hash.TIntObjectHashMap;
+import gnu.trove.set.TIntSet;
 
 public abstract class AbstractMouseAndKeyHandler
 {
@@ -44,24 +54,57 @@ public abstract class AbstractMouseAndKeyHandler
 		return prop == null ? 200 : ( Integer ) prop;
 	}
 
-	private InputTriggerMap inputMap;
+	private volatile InputTriggerMap inputMap;
+
+	private volatile BehaviourMap behaviourMap;
+
+	/**
+	 * The current compiled behaviour indices. Replaced (never modified) when
+	 * {@link #inputMap} or {@link #behaviourMap} change.
+	 */
+	private volatile DispatchTable table = DispatchTable.EMPTY;
+
+	/**
+	 * Where {@link #table} comes from. Shared with all other handlers that use
+	 * the same {@link #inputMap} and {@link #behaviourMap}.
+	 */
+	private SharedTable shared;
+
+	/**
+	 * The {@link SharedTable}s of dispatch maps other than {@link #inputMap}
+	 * itself (see {@link InputTriggerMap#getDispatchMap()}), for example one
+	 * for each mode of a
+	 * {@link org.scijava.ui.behaviour.util.TriggerBehaviourBindings}. They are
+	 * kept so that switching back to a dispatch map does not rebuild its
+	 * table. Only accessed in {@link #rebuild()}. Cleared when the input map
+	 * or behaviour map of this handler are replaced, otherwise kept as long as
+	 * this handler.
+	 */
+	private final Map< InputTriggerMap, SharedTable > dispatchTables = new IdentityHashMap<>();
 
-	private BehaviourMap behaviourMap;
+	/**
+	 * The {@link #inputMap} and {@link #behaviourMap} that
+	 * {@link #dispatchTables} belong to.
+	 */
+	private InputTriggerMap dispatchTablesInputMap;
 
-	private int inputMapExpectedModCount;
+	private BehaviourMap dispatchTablesBehaviourMap;
 
-	private int behaviourMapExpectedModCount;
+	/**
+	 * How often a new table was built (or patched) for this handler because
+	 * the maps changed. Switching to the up-to-date table of another dispatch
+	 * map is not counted.
+	 */
+	private volatile long tableUpdates;
 
 	public void setInputMap( final InputTriggerMap inputMap )
 	{
 		this.inputMap = inputMap;
-		inputMapExpectedModCount = inputMap.modCount() - 1;
 	}
 
 	public void setBehaviourMap( final BehaviourMap behaviourMap )
 	{
 		this.behaviourMap = behaviourMap;
-		behaviourMapExpectedModCount = behaviourMap.modCount() - 1;
 	}
 
 	/*
@@ -76,13 +119,24 @@ public abstract class AbstractMouseAndKeyHandler
 	{
 		private final InputTrigger buttons;
 
+		private final String behaviourKey;
+
 		private final T behaviour;
 
 		public BehaviourEntry(
 				final InputTrigger buttons,
 				final T behaviour )
+		{
+			this( buttons, null, behaviour );
+		}
+
+		public BehaviourEntry(
+				final InputTrigger buttons,
+				final String behaviourKey,
+				final T behaviour )
 		{
 			this.buttons = buttons;
+			this.behaviourKey = behaviourKey;
 			this.behaviour = behaviour;
 		}
 
@@ -91,90 +145,744 @@ public abstract class AbstractMouseAndKeyHandler
 			return buttons;
 		}
 
+		public String behaviourKey()
+		{
+			return behaviourKey;
+		}
+
 		public T behaviour()
 		{
 			return behaviour;
 		}
 	}
 
-	protected final ArrayList< BehaviourEntry< DragBehaviour > > buttonDrags = new ArrayList<>();
+	/**
+	 * Index of {@link BehaviourEntry}s of one behaviour type, for fast lookup
+	 * of the entries matching a given modifier mask and set of pressed keys.
+	 * <p>
+	 * Entries with triggers that don't ignore anything (the vast majority) can
+	 * only be matched by exactly their own mask and pressed keys. These are
+	 * hashed by (mask, keys), so that looking them up does not depend on the
+	 * number of bindings. Entries with triggers that ignore some modifiers or
+	 * keys (or "{@code | all}") are kept in a separate list that is scanned
+	 * linearly.
+	 * <p>
+	 * Lookup does not allocate. Entries are only added and removed while
+	 * building a {@link DispatchTable}, the index is not modified after that.
+	 * <p>
+	 * A copy shares the hash map and the list of inexact entries with the
+	 * original, until it is first modified. Then the modified structure is
+	 * copied, which is O(n) in the number of entries of this index (not of
+	 * the whole table). So patching a table costs a full copy of each index
+	 * that the patch actually changes, while unchanged indices are shared.
+	 * The per-hash entry lists are always shared, and replaced instead of
+	 * modified.
+	 */
+	protected static class BehaviourIndex< T extends Behaviour >
+	{
+		private TIntObjectHashMap< ArrayList< BehaviourEntry< T > > > exact;
 
-	protected final ArrayList< BehaviourEntry< DragBehaviour > > keyDrags = new ArrayList<>();
+		private ArrayList< BehaviourEntry< T > > inexact;
 
-	protected final ArrayList< BehaviourEntry< ClickBehaviour > > buttonClicks = new ArrayList<>();
+		/**
+		 * Whether {@link #exact} is shared with another index, and must be
+		 * copied before it is modified.
+		 */
+		private boolean sharedExact;
 
-	protected final ArrayList< BehaviourEntry< ClickBehaviour > > keyClicks = new ArrayList<>();
+		/**
+		 * Whether {@link #inexact} is shared with another index, and must be
+		 * copied before it is modified.
+		 */
+		private boolean sharedInexact;
 
-	protected final ArrayList< BehaviourEntry< ScrollBehaviour > > scrolls = new ArrayList<>();
+		private int size;
 
-	/**
-	 * Make sure that the internal behaviour lists are up to date. For this, we
-	 * keep track the modification count of {@link #inputMap} and
-	 * {@link #behaviourMap}. If expected mod counts are not matched, call
-	 * {@link #updateInternalMaps()} to rebuild the internal behaviour lists.
-	 */
-	protected synchronized void update()
-	{
-		final int imc = inputMap.modCount();
-		final int bmc = behaviourMap.modCount();
-		if ( imc != inputMapExpectedModCount || bmc != behaviourMapExpectedModCount )
+		public BehaviourIndex()
+		{
+			exact = new TIntObjectHashMap<>();
+			inexact = new ArrayList<>();
+		}
+
+		public BehaviourIndex( final BehaviourIndex< T > index )
+		{
+			exact = index.exact;
+			inexact = index.inexact;
+			sharedExact = true;
+			sharedInexact = true;
+			size = index.size;
+		}
+
+		private TIntObjectHashMap< ArrayList< BehaviourEntry< T > > > exactForWriting()
+		{
+			if ( sharedExact )
+			{
+				exact = new TIntObjectHashMap<>( exact );
+				sharedExact = false;
+			}
+			return exact;
+		}
+
+		private ArrayList< BehaviourEntry< T > > inexactForWriting()
+		{
+			if ( sharedInexact )
+			{
+				inexact = new ArrayList<>( inexact );
+				sharedInexact = false;
+			}
+			return inexact;
+		}
+
+		public void add( final BehaviourEntry< T > entry )
+		{
+			final InputTrigger trigger = entry.buttons();
+			if ( trigger.ignoreNone() )
+			{
+				final int hash = hash( trigger );
+				final ArrayList< BehaviourEntry< T > > entries = exact.get( hash );
+				final ArrayList< BehaviourEntry< T > > added;
+				if ( entries == null )
+					added = new ArrayList<>( 1 );
+				else
+					added = new ArrayList<>( entries );
+				added.add( entry );
+				exactForWriting().put( hash, added );
+			}
+			else
+				inexactForWriting().add( entry );
+			++size;
+		}
+
+		/**
+		 * Remove all entries binding {@code trigger} to {@code behaviourKey}.
+		 */
+		public void remove( final InputTrigger trigger, final String behaviourKey )
+		{
+			if ( trigger.ignoreNone() )
+			{
+				final int hash = hash( trigger );
+				final ArrayList< BehaviourEntry< T > > entries = exact.get( hash );
+				if ( entries == null )
+					return;
+				final ArrayList< BehaviourEntry< T > > remaining = new ArrayList<>( entries.size() );
+				for ( final BehaviourEntry< T > entry : entries )
+					if ( !isBinding( entry, trigger, behaviourKey ) )
+						remaining.add( entry );
+				if ( remaining.size() == entries.size() )
+					return;
+				size -= entries.size() - remaining.size();
+				if ( remaining.isEmpty() )
+					exactForWriting().remove( hash );
+				else
+					exactForWriting().put( hash, remaining );
+			}
+			else
+			{
+				if ( !inexact.stream().anyMatch( entry -> isBinding( entry, trigger, behaviourKey ) ) )
+					return;
+				final int before = inexact.size();
+				inexactForWriting().removeIf( entry -> isBinding( entry, trigger, behaviourKey ) );
+				size -= before - inexact.size();
+			}
+		}
+
+		private static boolean isBinding( final BehaviourEntry< ? > entry, final InputTrigger trigger, final String behaviourKey )
+		{
+			return entry.buttons().equals( trigger ) && behaviourKey.equals( entry.behaviourKey() );
+		}
+
+		public int size()
 		{
-			inputMapExpectedModCount = imc;
-			behaviourMapExpectedModCount = bmc;
-			updateInternalMaps();
+			return size;
+		}
+
+		public boolean isEmpty()
+		{
+			return size == 0;
+		}
+
+		/**
+		 * Append all entries with triggers matching the given {@code mask} and
+		 * {@code keys}, or the given {@code altMask} and {@code keys}, to
+		 * {@code matches}. Every matching entry is appended only once. Use
+		 * {@code altMask == mask} if there is no alternative mask to consider.
+		 *
+		 * @param mask
+		 *            modifier mask of the event.
+		 * @param altMask
+		 *            alternative modifier mask of the event (e.g., with or
+		 *            without {@link InputTrigger#DOUBLE_CLICK_MASK}).
+		 * @param keys
+		 *            currently pressed keys.
+		 * @param matches
+		 *            matching entries are appended to this list.
+		 * @return the number of entries that were checked.
+		 */
+		public int collectMatches( final int mask, final int altMask, final TIntSet keys, final List< BehaviourEntry< T > > matches )
+		{
+			final int keysHash = keys.hashCode();
+			int scanned = collectExact( mask, keysHash, keys, matches );
+			if ( altMask != mask )
+				scanned += collectExact( altMask, keysHash, keys, matches );
+
+			for ( int i = 0; i < inexact.size(); ++i )
+			{
+				final BehaviourEntry< T > entry = inexact.get( i );
+				final InputTrigger trigger = entry.buttons();
+				if ( trigger.matches( mask, keys ) || ( altMask != mask && trigger.matches( altMask, keys ) ) )
+					matches.add( entry );
+			}
+			return scanned + inexact.size();
+		}
+
+		private int collectExact( final int mask, final int keysHash, final TIntSet keys, final List< BehaviourEntry< T > > matches )
+		{
+			final ArrayList< BehaviourEntry< T > > entries = exact.get( hash( mask, keysHash ) );
+			if ( entries == null )
+				return 0;
+			for ( int i = 0; i < entries.size(); ++i )
+			{
+				// an entry with exact trigger can only match one mask, so
+				// this never appends duplicates
+				final BehaviourEntry< T > entry = entries.get( i );
+				if ( entry.buttons().matches( mask, keys ) )
+					matches.add( entry );
+			}
+			return entries.size();
+		}
+
+		/**
+		 * Combine modifier mask and hash code of pressed keys set. Note that
+		 * the hash code of {@code TIntSet} is defined as the sum of its
+		 * elements, so it is the same for equal sets independent of
+		 * implementation.
+		 */
+		private static int hash( final int mask, final int keysHash )
+		{
+			return 31 * mask + keysHash;
+		}
+
+		private static int hash( final InputTrigger trigger )
+		{
+			return hash( trigger.getMask(), trigger.getPressedKeys().hashCode() );
 		}
 	}
 
 	/**
-	 * Build internal lists buttonDrag, keyDrags, etc from of {@link #inputMap}
-	 * and {@link #behaviourMap}. The internal lists only contain entries for
-	 * behaviours that can be actually triggered with the current InputMap,
-	 * grouped by behaviour type, such that hopefully lookup from the event
-	 * handlers is fast.
+	 * Immutable snapshot of the internal behaviour indices, compiled from a
+	 * particular state of an {@link InputTriggerMap} and a
+	 * {@link BehaviourMap}. The indices only contain entries for behaviours
+	 * that can be actually triggered with the InputMap, grouped by behaviour
+	 * type, and hashed by trigger such that lookup from the event handlers is
+	 * fast.
+	 * <p>
+	 * When the maps are modified, the next table is derived by patching the
+	 * indices with the changes reported by
+	 * {@link InputTriggerMap#getChangesSince(int, java.util.Collection)} and
+	 * {@link BehaviourMap#getChangesSince(int, java.util.Collection)}. Only if
+	 * these are not available, all bindings are re-read.
 	 */
-	private void updateInternalMaps()
+	protected static final class DispatchTable
 	{
-		buttonDrags.clear();
-		keyDrags.clear();
-		buttonClicks.clear();
-		keyClicks.clear();
-		scrolls.clear();
+		static final DispatchTable EMPTY = new DispatchTable( null, null );
+
+		private final InputTriggerMap inputMap;
+
+		private final BehaviourMap behaviourMap;
+
+		private final int inputMapModCount;
+
+		private final int behaviourMapModCount;
+
+		private final BehaviourIndex< DragBehaviour > buttonDrags;
+
+		private final BehaviourIndex< DragBehaviour > keyDrags;
+
+		private final BehaviourIndex< ClickBehaviour > buttonClicks;
+
+		private final BehaviourIndex< ClickBehaviour > keyClicks;
+
+		private final BehaviourIndex< ScrollBehaviour > scrolls;
+
+		/**
+		 * The bindings this table was built from. Handed over to the next
+		 * table in {@link #next(InputTriggerMap, BehaviourMap)}, and
+		 * {@code null} after that.
+		 */
+		private Bindings bindings;
+
+		/**
+		 * The number of distinct (trigger, behaviour key) bindings this table
+		 * was built from.
+		 */
+		private int bindingCount;
 
-		for ( final Map.Entry< InputTrigger, Set< String > > entry : inputMap.getAllBindings().entrySet() )
+		/**
+		 * Build a table from all bindings of {@code inputMap} and
+		 * {@code behaviourMap}.
+		 */
+		DispatchTable( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
 		{
-			final InputTrigger buttons = entry.getKey();
-			final Set< String > behaviourKeys = entry.getValue();
-			if ( behaviourKeys == null )
-				continue;
+			// Mod counts are recorded before reading the maps. If a map is
+			// modified while we build, the table is stale and updated on the
+			// next update().
+			this( inputMap, behaviourMap,
+					inputMap == null ? 0 : inputMap.modCount(),
+					behaviourMap == null ? 0 : behaviourMap.modCount(),
+					new BehaviourIndex<>(),
+					new BehaviourIndex<>(),
+					new BehaviourIndex<>(),
+					new BehaviourIndex<>(),
+					new BehaviourIndex<>(),
+					null );
+			if ( inputMap == null || behaviourMap == null )
+				return;
 
-			for ( final String behaviourKey : behaviourKeys )
+			bindings = new Bindings( inputMap.getAllBindingsSnapshot() );
+			for ( final Map.Entry< InputTrigger, Set< String > > entry : bindings.triggerToKeys.entrySet() )
 			{
-				final Behaviour behaviour = behaviourMap.get( behaviourKey );
-				if ( behaviour == null )
-					continue;
+				final InputTrigger trigger = entry.getKey();
+				for ( final String behaviourKey : entry.getValue() )
+					addEntries( trigger, behaviourKey, behaviourMap.get( behaviourKey ) );
+			}
+			bindingCount = bindings.size;
+		}
 
-				if ( behaviour instanceof DragBehaviour )
-				{
-					final BehaviourEntry< DragBehaviour > dragEntry = new BehaviourEntry<>( buttons, ( DragBehaviour ) behaviour );
-					if ( buttons.isKeyTriggered() )
-						keyDrags.add( dragEntry );
-					else
-						buttonDrags.add( dragEntry );
-				}
-				if ( behaviour instanceof ClickBehaviour )
+		private DispatchTable(
+				final InputTriggerMap inputMap,
+				final BehaviourMap behaviourMap,
+				final int inputMapModCount,
+				final int behaviourMapModCount,
+				final BehaviourIndex< DragBehaviour > buttonDrags,
+				final BehaviourIndex< DragBehaviour > keyDrags,
+				final BehaviourIndex< ClickBehaviour > buttonClicks,
+				final BehaviourIndex< ClickBehaviour > keyClicks,
+				final BehaviourIndex< ScrollBehaviour > scrolls,
+				final Bindings bindings )
+		{
+			this.inputMap = inputMap;
+			this.behaviourMap = behaviourMap;
+			this.inputMapModCount = inputMapModCount;
+			this.behaviourMapModCount = behaviourMapModCount;
+			this.buttonDrags = buttonDrags;
+			this.keyDrags = keyDrags;
+			this.buttonClicks = buttonClicks;
+			this.keyClicks = keyClicks;
+			this.scrolls = scrolls;
+			this.bindings = bindings;
+		}
+
+		/**
+		 * Whether this table was built from exactly the given maps, and these
+		 * have not been modified since.
+		 */
+		boolean isCurrent( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+		{
+			return this.inputMap == inputMap
+					&& this.behaviourMap == behaviourMap
+					&& ( inputMap == null || inputMap.modCount() == inputMapModCount )
+					&& ( behaviourMap == null || behaviourMap.modCount() == behaviourMapModCount );
+		}
+
+		/**
+		 * Build a table for the current state of {@code inputMap} and
+		 * {@code behaviourMap}. If these are the maps this table was built
+		 * from, and their changes since are known, the new table is derived
+		 * from this one by re-evaluating only the changed bindings. This table
+		 * itself is not modified, but it cannot be used to derive another
+		 * table afterwards.
+		 */
+		DispatchTable next( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+		{
+			if ( inputMap == null || behaviourMap == null
+					|| inputMap != this.inputMap || behaviourMap != this.behaviourMap
+					|| bindings == null )
+				return new DispatchTable( inputMap, behaviourMap );
+
+			final int imc = inputMap.modCount();
+			final int bmc = behaviourMap.modCount();
+			final ArrayList< InputTriggerMap.Change > inputChanges = new ArrayList<>();
+			final ArrayList< String > behaviourChanges = new ArrayList<>();
+			if ( !inputMap.getChangesSince( inputMapModCount, inputChanges )
+					|| !behaviourMap.getChangesSince( behaviourMapModCount, behaviourChanges ) )
+				return new DispatchTable( inputMap, behaviourMap );
+
+			// collect the (trigger, behaviourKey) bindings to re-evaluate
+			final Map< InputTrigger, Set< String > > changed = new HashMap<>();
+			for ( final InputTriggerMap.Change change : inputChanges )
+			{
+				final Set< String > keys = changed.computeIfAbsent( change.trigger(), k -> new HashSet<>() );
+				if ( change.behaviourKey() != null )
+					keys.add( change.behaviourKey() );
+				else
+					keys.addAll( bindings.keys( change.trigger() ) );
+			}
+			for ( final String behaviourKey : behaviourChanges )
+				for ( final InputTrigger trigger : bindings.triggers( behaviourKey ) )
+					changed.computeIfAbsent( trigger, k -> new HashSet<>() ).add( behaviourKey );
+
+			final DispatchTable table = new DispatchTable( inputMap, behaviourMap, imc, bmc,
+					new BehaviourIndex<>( buttonDrags ),
+					new BehaviourIndex<>( keyDrags ),
+					new BehaviourIndex<>( buttonClicks ),
+					new BehaviourIndex<>( keyClicks ),
+					new BehaviourIndex<>( scrolls ),
+					bindings );
+			bindings = null;
+
+			for ( final Map.Entry< InputTrigger, Set< String > > entry : changed.entrySet() )
+			{
+				final InputTrigger trigger = entry.getKey();
+				final Set< String > bound = inputMap.get( trigger );
+				for ( final String behaviourKey : entry.getValue() )
 				{
-					final BehaviourEntry< ClickBehaviour > clickEntry = new BehaviourEntry<>( buttons, ( ClickBehaviour ) behaviour );
-					if ( buttons.isKeyTriggered() )
-						keyClicks.add( clickEntry );
+					table.removeEntries( trigger, behaviourKey );
+					if ( bound.contains( behaviourKey ) )
+					{
+						table.bindings.add( trigger, behaviourKey );
+						table.addEntries( trigger, behaviourKey, behaviourMap.get( behaviourKey ) );
+					}
 					else
-						buttonClicks.add( clickEntry );
-				}
-				if ( behaviour instanceof ScrollBehaviour )
-				{
-					final BehaviourEntry< ScrollBehaviour > scrollEntry = new BehaviourEntry<>( buttons, ( ScrollBehaviour ) behaviour );
-					scrolls.add( scrollEntry );
+						table.bindings.remove( trigger, behaviourKey );
 				}
 			}
+			table.bindingCount = table.bindings.size;
+			return table;
+		}
+
+		private void addEntries( final InputTrigger trigger, final String behaviourKey, final Behaviour behaviour )
+		{
+			if ( behaviour instanceof DragBehaviour )
+			{
+				final BehaviourEntry< DragBehaviour > dragEntry = new BehaviourEntry<>( trigger, behaviourKey, ( DragBehaviour ) behaviour );
+				if ( trigger.isKeyTriggered() )
+					keyDrags.add( dragEntry );
+				else
+					buttonDrags.add( dragEntry );
+			}
+			if ( behaviour instanceof ClickBehaviour )
+			{
+				final BehaviourEntry< ClickBehaviour > clickEntry = new BehaviourEntry<>( trigger, behaviourKey, ( ClickBehaviour ) behaviour );
+				if ( trigger.isKeyTriggered() )
+					keyClicks.add( clickEntry );
+				else
+					buttonClicks.add( clickEntry );
+			}
+			if ( behaviour instanceof ScrollBehaviour )
+			{
+				final BehaviourEntry< ScrollBehaviour > scrollEntry = new BehaviourEntry<>( trigger, behaviourKey, ( ScrollBehaviour ) behaviour );
+				scrolls.add( scrollEntry );
+			}
+		}
+
+		private void removeEntries( final InputTrigger trigger, final String behaviourKey )
+		{
+			if ( trigger.isKeyTriggered() )
+			{
+				keyDrags.remove( trigger, behaviourKey );
+				keyClicks.remove( trigger, behaviourKey );
+			}
+			else
+			{
+				buttonDrags.remove( trigger, behaviourKey );
+				buttonClicks.remove( trigger, behaviourKey );
+			}
+			scrolls.remove( trigger, behaviourKey );
+		}
+
+		public BehaviourIndex< DragBehaviour > buttonDrags()
+		{
+			return buttonDrags;
+		}
+
+		public BehaviourIndex< DragBehaviour > keyDrags()
+		{
+			return keyDrags;
+		}
+
+		public BehaviourIndex< ClickBehaviour > buttonClicks()
+		{
+			return buttonClicks;
+		}
+
+		public BehaviourIndex< ClickBehaviour > keyClicks()
+		{
+			return keyClicks;
+		}
+
+		public BehaviourIndex< ScrollBehaviour > scrolls()
+		{
+			return scrolls;
+		}
+
+		/**
+		 * Get the number of distinct (trigger, behaviour key) bindings this
+		 * table was built from. A behaviour that is, e.g., both a
+		 * {@link DragBehaviour} and a {@link ClickBehaviour} is indexed twice,
+		 * but counted once.
+		 */
+		public int size()
+		{
+			return bindingCount;
+		}
+	}
+
+	/**
+	 * Flattened {@code InputTrigger -> behaviour keys} bindings that a
+	 * {@link DispatchTable} was built from, with the reverse mapping from
+	 * behaviour keys to triggers.
+	 */
+	private static final class Bindings
+	{
+		final Map< InputTrigger, Set< String > > triggerToKeys;
+
+		final Map< String, Set< InputTrigger > > keyToTriggers = new HashMap<>();
+
+		/**
+		 * The number of (trigger, behaviour key) pairs.
+		 */
+		int size;
+
+		/**
+		 * Copy the (unmodifiable) {@code bindings}.
+		 */
+		Bindings( final Map< InputTrigger, Set< String > > bindings )
+		{
+			triggerToKeys = new HashMap<>( bindings.size() * 2 );
+			for ( final Map.Entry< InputTrigger, Set< String > > entry : bindings.entrySet() )
+			{
+				triggerToKeys.put( entry.getKey(), new HashSet<>( entry.getValue() ) );
+				size += entry.getValue().size();
+				for ( final String behaviourKey : entry.getValue() )
+					keyToTriggers.computeIfAbsent( behaviourKey, k -> new HashSet<>() ).add( entry.getKey() );
+			}
+		}
+
+		Set< String > keys( final InputTrigger trigger )
+		{
+			final Set< String > keys = triggerToKeys.get( trigger );
+			return keys == null ? Collections.emptySet() : keys;
+		}
+
+		Set< InputTrigger > triggers( final String behaviourKey )
+		{
+			final Set< InputTrigger > triggers = keyToTriggers.get( behaviourKey );
+			return triggers == null ? Collections.emptySet() : triggers;
+		}
+
+		void add( final InputTrigger trigger, final String behaviourKey )
+		{
+			if ( triggerToKeys.computeIfAbsent( trigger, k -> new HashSet<>() ).add( behaviourKey ) )
+				++size;
+			keyToTriggers.computeIfAbsent( behaviourKey, k -> new HashSet<>() ).add( trigger );
+		}
+
+		void remove( final InputTrigger trigger, final String behaviourKey )
+		{
+			final Set< String > keys = triggerToKeys.get( trigger );
+			if ( keys != null && keys.remove( behaviourKey ) )
+			{
+				--size;
+				if ( keys.isEmpty() )
+					triggerToKeys.remove( trigger );
+			}
+			final Set< InputTrigger > triggers = keyToTriggers.get( behaviourKey );
+			if ( triggers != null && triggers.remove( trigger ) && triggers.isEmpty() )
+				keyToTriggers.remove( behaviourKey );
+		}
+	}
+
+	/**
+	 * Get an up-to-date {@link DispatchTable}. If {@link #inputMap} and
+	 * {@link #behaviourMap} did not change since the current table was built,
+	 * it is returned without locking. Otherwise a new table is built and
+	 * published.
+	 */
+	protected DispatchTable update()
+	{
+		final DispatchTable t = table;
+		final InputTriggerMap im = inputMap;
+		return t.isCurrent( im == null ? null : im.getDispatchMap(), behaviourMap ) ? t : rebuild();
+	}
+
+	private synchronized DispatchTable rebuild()
+	{
+		// Tables are shared with other threads, so they are built from
+		// published bindings only, even if this thread has a batch open.
+		final ThreadBatchState batches = ThreadBatchState.current();
+		++batches.publishedOnly;
+		try
+		{
+			return rebuildTable();
+		}
+		finally
+		{
+			--batches.publishedOnly;
+		}
+	}
+
+	private DispatchTable rebuildTable()
+	{
+		final InputTriggerMap m = inputMap;
+		final InputTriggerMap im = m == null ? null : m.getDispatchMap();
+		final BehaviourMap bm = behaviourMap;
+		if ( im == null || bm == null )
+		{
+			shared = null;
+			dispatchTables.clear();
+			dispatchTablesInputMap = null;
+			dispatchTablesBehaviourMap = null;
+			table = new DispatchTable( im, bm );
+			++tableUpdates;
+			return table;
+		}
+
+		SharedTable s = shared;
+		if ( s == null || !s.isFor( im, bm ) )
+		{
+			if ( im == m )
+				s = sharedTable( im, bm );
+			else
+				s = dispatchTable( m, im, bm );
+			shared = s;
+		}
+		final DispatchTable t;
+		final boolean built;
+		synchronized ( s )
+		{
+			final int builds = s.builds;
+			t = s.get();
+			built = s.builds != builds;
+		}
+		table = t;
+		if ( built )
+			++tableUpdates;
+		return t;
+	}
+
+	/**
+	 * Get the {@link SharedTable} for dispatch map {@code im} of input map
+	 * {@code m}, and keep it in {@link #dispatchTables}. Tables of maps that
+	 * can no longer be dispatched from (see
+	 * {@link InputTriggerMap#isDispatchMap(InputTriggerMap)}) are dropped.
+	 */
+	private SharedTable dispatchTable( final InputTriggerMap m, final InputTriggerMap im, final BehaviourMap bm )
+	{
+		if ( m != dispatchTablesInputMap || bm != dispatchTablesBehaviourMap )
+		{
+			dispatchTables.clear();
+			dispatchTablesInputMap = m;
+			dispatchTablesBehaviourMap = bm;
+		}
+		else
+			dispatchTables.keySet().removeIf( map -> !m.isDispatchMap( map ) );
+		SharedTable s = dispatchTables.get( im );
+		if ( s == null )
+		{
+			s = sharedTable( im, bm );
+			dispatchTables.put( im, s );
+		}
+		return s;
+	}
+
+	/**
+	 * Get the number of distinct (trigger, behaviour key) bindings in the
+	 * current dispatch table of this handler. This does not bring the table up
+	 * to date, so it does not reflect changes of the maps that no event was
+	 * dispatched with yet.
+	 */
+	public int getBindingCount()
+	{
+		return table.size();
+	}
+
+	/**
+	 * Get how often the dispatch table of this handler was rebuilt (or
+	 * patched) because the {@link InputTriggerMap} or {@link BehaviourMap}
+	 * changed.
+	 */
+	public long getDispatchTableUpdateCount()
+	{
+		return tableUpdates;
+	}
+
+	/**
+	 * The latest {@link DispatchTable} for a pair of {@link InputTriggerMap}
+	 * and {@link BehaviourMap}. Handlers that use the same maps (e.g., one
+	 * global keymap installed in many windows) share one {@code SharedTable},
+	 * so that the table is built only once, by the first handler that needs
+	 * it, and held in memory only once.
+	 */
+	private static final class SharedTable
+	{
+		private final InputTriggerMap inputMap;
+
+		private final BehaviourMap behaviourMap;
+
+		private DispatchTable table;
+
+		/**
+		 * How often {@link #table} was built or patched.
+		 */
+		private int builds;
+
+		SharedTable( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+		{
+			this.inputMap = inputMap;
+			this.behaviourMap = behaviourMap;
+		}
+
+		boolean isFor( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+		{
+			return this.inputMap == inputMap && this.behaviourMap == behaviourMap;
+		}
+
+		synchronized DispatchTable get()
+		{
+			if ( table != null && table.isCurrent( inputMap, behaviourMap ) )
+				return table;
+
+			final Object event = FlightRecorderEvents.beginTableRebuilt();
+			final boolean patched;
+			if ( table == null )
+			{
+				table = new DispatchTable( inputMap, behaviourMap );
+				patched = false;
+			}
+			else
+			{
+				final DispatchTable previous = table;
+				table = previous.next( inputMap, behaviourMap );
+				// bindings are handed over only if the table was patched
+				patched = previous.bindings == null;
+			}
+			++builds;
+			if ( event != null )
+				FlightRecorderEvents.endTableRebuilt( event, table.size(), patched );
+			return table;
+		}
+	}
+
+	/**
+	 * {@link SharedTable}s by map identity. Everything is weakly referenced.
+	 * {@code SharedTable}s are kept alive by the handlers that use them, and
+	 * maps are kept alive by their {@code SharedTable}s.
+	 */
+	private static final Map< InputTriggerMap, Map< BehaviourMap, WeakReference< SharedTable > > > sharedTables = new WeakHashMap<>();
+
+	private static SharedTable sharedTable( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+	{
+		synchronized ( sharedTables )
+		{
+			final Map< BehaviourMap, WeakReference< SharedTable > > tables = sharedTables.computeIfAbsent( inputMap, k -> new WeakHashMap<>() );
+			final WeakReference< SharedTable > ref = tables.get( behaviourMap );
+			SharedTable s = ref == null ? null : ref.get();
+			if ( s == null )
+			{
+				s = new SharedTable( inputMap, behaviourMap );
+				tables.put( behaviourMap, new WeakReference<>( s ) );
+			}
+			return s;
 		}
 	}
 }
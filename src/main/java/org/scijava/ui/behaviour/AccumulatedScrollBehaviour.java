@@ -0,0 +1,59 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+/**
+ * A {@link ScrollBehaviour} that does not need to see every mouse-wheel event.
+ * {@link MouseAndKeyHandler} sums the wheel rotation of such behaviours,
+ * separately for vertical and horizontal scrolling and for each matched
+ * trigger, and calls {@link #scroll(double, boolean, int, int)} with the
+ * accumulated rotation at most once per frame (see
+ * {@link MouseAndKeyHandler#setFrameInterval(int)} and
+ * {@link MouseAndKeyHandler#frameTick()}), or as soon as the accumulated
+ * rotation reaches {@link MouseAndKeyHandler#setScrollThreshold(double) a
+ * threshold}.
+ * <p>
+ * Use this for scrolling that triggers expensive work (e.g., zooming and
+ * re-rendering), with high-resolution wheels or touchpads that produce many
+ * events with small rotations.
+ */
+public interface AccumulatedScrollBehaviour extends ScrollBehaviour
+{
+	/**
+	 * Wrap a {@link ScrollBehaviour} such that its scrolls are accumulated.
+	 */
+	public static AccumulatedScrollBehaviour accumulated( final ScrollBehaviour behaviour )
+	{
+		if ( behaviour instanceof AccumulatedScrollBehaviour )
+			return ( AccumulatedScrollBehaviour ) behaviour;
+
+		return behaviour::scroll;
+	}
+}
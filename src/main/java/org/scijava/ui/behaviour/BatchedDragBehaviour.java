@@ -0,0 +1,68 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+/**
+ * A {@link DragBehaviour} that receives every mouse position of a drag, but in
+ * batches. {@link MouseAndKeyHandler} collects the positions and timestamps of
+ * mouse motion events into primitive arrays, and delivers them through
+ * {@link #drag(int[], int[], long[], int)} at most once per frame (see
+ * {@link MouseAndKeyHandler#setFrameInterval(int)} and
+ * {@link MouseAndKeyHandler#frameTick()}). Pending positions are delivered
+ * before {@link #end(int, int)}.
+ * <p>
+ * Use this for drags that need every sample (e.g., freehand painting), where
+ * one call per sample would be too expensive.
+ * <p>
+ * {@link MouseAndKeyHandler} never calls {@link #drag(int, int)} on a
+ * {@code BatchedDragBehaviour}, but other callers may, so implementations
+ * must still handle single positions.
+ */
+public interface BatchedDragBehaviour extends DragBehaviour
+{
+	/**
+	 * Mouse was dragged through the given positions, in this order. Only
+	 * called between {@link #init(int, int)} and {@link #end(int, int)}.
+	 * <p>
+	 * The arrays are re-used by the caller. They are only valid during this
+	 * call, and only the first {@code count} elements are meaningful.
+	 *
+	 * @param x
+	 *            mouse x of each position.
+	 * @param y
+	 *            mouse y of each position.
+	 * @param when
+	 *            timestamp of each position, as given by
+	 *            {@link java.awt.event.InputEvent#getWhen()}.
+	 * @param count
+	 *            number of positions.
+	 */
+	public void drag( int[] x, int[] y, long[] when, int count );
+}
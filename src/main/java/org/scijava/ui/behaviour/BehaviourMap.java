@@ -29,17 +29,35 @@
  */
 package org.scijava.ui.behaviour;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 
 import java.util.Set;
+import java.util.WeakHashMap;
 import javax.swing.ActionMap;
 
 /**
  * Maps {@link String} keys to {@link Behaviour}s. Equivalent to
  * {@link ActionMap}.
+ * <p>
+ * Reading bindings does not lock. Modifications are serialized, and publish a
+ * new copy of the bindings, so readers always see a consistent state.
+ * Several modifications can be published at once with {@link #beginBatch()}
+ * and {@link #commit()}.
+ * <p>
+ * The copies share most of their structure, so a modification costs
+ * {@code O(log n)} for {@code n} bindings, and adding {@code n} bindings one
+ * by one costs {@code O(n log n)}.
+ * <p>
+ * A {@code null} key is never bound. {@link #get(String) get(null)} returns
+ * the binding of the parent, and {@code put(null, ...)} and
+ * {@code remove(null)} leave the bindings unchanged. Like every other
+ * modification, they increment the {@link #modCount()}.
  *
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
  */
@@ -48,27 +66,70 @@ public class BehaviourMap
 	/**
 	 * Maps key to {@link Behaviour}.
 	 * Similar to {@link ActionMap}.
+	 * <p>
+	 * Persistent, so published maps are never modified. Writers
+	 * (synchronized on this map) derive a modified map, and then replace the
+	 * map.
 	 */
-	private final Map< String, Behaviour > behaviours;
+	private volatile PersistentMap< String, Behaviour > behaviours;
+
+	/**
+	 * The thread that has a batch open (see {@link #beginBatch()}), or
+	 * {@code null}. Other writers wait until the batch is committed. Readers
+	 * check it to see the unpublished {@link #batchBehaviours} of their own
+	 * batch.
+	 */
+	private volatile Thread batchOwner;
+
+	/**
+	 * Nesting depth of {@link #beginBatch()}.
+	 */
+	private int batchDepth;
+
+	/**
+	 * Modified version of {@link #behaviours} that is not published yet, or
+	 * {@code null}. Only accessed by the thread that holds the monitor of this
+	 * map, or by the {@link #batchOwner}.
+	 */
+	private PersistentMap< String, Behaviour > batchBehaviours;
+
+	/**
+	 * Changed keys in {@link #batchBehaviours} that are not published yet.
+	 */
+	private final ArrayList< String > batchChanges = new ArrayList<>();
 
 	/**
 	 * Parent that handles any bindings we don't contain.
 	 */
-	private BehaviourMap parent;
+	private volatile BehaviourMap parent;
+
+	/**
+	 * Maps that depend on this one, i.e., children (see
+	 * {@link #setParent(BehaviourMap)}) and maps registered with
+	 * {@link #trackModifications(BehaviourMap)}. Modifications of this map are
+	 * pushed to them. Weakly referenced, so that discarded children can be
+	 * garbage-collected.
+	 */
+	private final Set< BehaviourMap > dependents = Collections.newSetFromMap( new WeakHashMap<>() );
 
-	private int expectedParentModCount;
+	/**
+	 * Modification count and log of recently changed keys of this map and the
+	 * maps it depends on.
+	 */
+	private final ChangeLog< String > changes = new ChangeLog<>();
 
-	private int modCount;
+	/**
+	 * Cached result of {@link #getAllBindingsSnapshot()}, or {@code null}.
+	 */
+	private volatile AllBindings allBindings;
 
     /**
      * Creates an {@link BehaviourMap} with no parent and no mappings.
      */
 	public BehaviourMap()
 	{
-		behaviours = new HashMap<>();
+		behaviours = PersistentMap.empty();
 		parent = null;
-		expectedParentModCount = 0;
-		modCount = 0;
 	}
 
 	/**
@@ -77,12 +138,14 @@ public class BehaviourMap
 	 * @param map
 	 *            the map that is the parent of this one
 	 */
-	public void setParent( final BehaviourMap map )
+	public synchronized void setParent( final BehaviourMap map )
 	{
+		if ( parent != null )
+			parent.removeDependent( this );
 		this.parent = map;
 		if ( map != null )
-			expectedParentModCount = parent.modCount();
-		++modCount;
+			map.addDependent( this );
+		modified();
 	}
 
 	/**
@@ -105,17 +168,22 @@ public class BehaviourMap
 	 */
 	public synchronized void put( final String key, final Behaviour behaviour )
 	{
-		behaviours.put( key, behaviour );
-		++modCount;
+		awaitBatch();
+		if ( key != null )
+			batchBehaviours = behaviour == null
+					? current().minus( key )
+					: current().plus( key, behaviour );
+		changed( key );
 	}
 
 	/**
 	 * Returns the binding for {@code key}, messaging the parent
 	 * {@link BehaviourMap} if the binding is not locally defined.
 	 */
-	public synchronized Behaviour get( final String key )
+	public Behaviour get( final String key )
 	{
-		final Behaviour behaviour = behaviours.get( key );
+		final Behaviour behaviour = readBehaviours().get( key );
+		final BehaviourMap parent = this.parent;
 		if ( behaviour == null && parent != null )
 			return parent.get( key );
 		else
@@ -127,8 +195,10 @@ public class BehaviourMap
      */
 	public synchronized void remove( final String key )
 	{
-		behaviours.remove( key );
-		++modCount;
+		awaitBatch();
+		if ( key != null )
+			batchBehaviours = current().minus( key );
+		changed( key );
 	}
 
     /**
@@ -136,44 +206,325 @@ public class BehaviourMap
      */
 	public synchronized void clear()
 	{
-		behaviours.clear();
-		++modCount;
+		awaitBatch();
+		batchBehaviours = PersistentMap.empty();
+		changed( null );
+	}
+
+	/**
+	 * Start a batch of modifications. Modifications until the matching
+	 * {@link #commit()} are not visible to other threads. They are published
+	 * together, with a single increment of {@link #modCount()}. Batches can be
+	 * nested. Only the outermost {@code commit()} publishes.
+	 * <p>
+	 * A batch belongs to the thread that started it. This thread reads its own
+	 * unpublished modifications. Other threads that modify the map, or start a
+	 * batch, wait until the batch is committed. So a batch must always be
+	 * committed, otherwise other writers block forever:
+	 * <p>
+	 * Use as
+	 *
+	 * <pre>
+	 * map.beginBatch();
+	 * try
+	 * {
+	 * 	...
+	 * }
+	 * finally
+	 * {
+	 * 	map.commit();
+	 * }
+	 * </pre>
+	 * <p>
+	 * To batch this map together with an {@link InputTriggerMap}, start the
+	 * batch of the {@code BehaviourMap} second and commit it first (as
+	 * {@link org.scijava.ui.behaviour.util.Behaviours#beginBatch()} does).
+	 * Threads that open the two batches in different orders can deadlock, each
+	 * waiting for the batch held by the other.
+	 */
+	public synchronized void beginBatch()
+	{
+		awaitBatch();
+		if ( batchDepth++ == 0 )
+		{
+			batchOwner = Thread.currentThread();
+			++ThreadBatchState.current().openBatches;
+		}
+	}
+
+	/**
+	 * End a batch of modifications started with {@link #beginBatch()}. If this
+	 * ends the outermost batch, all modifications made during the batch are
+	 * published.
+	 *
+	 * @throws IllegalStateException
+	 *             if the current thread has no batch to commit.
+	 */
+	public synchronized void commit()
+	{
+		if ( batchOwner != Thread.currentThread() )
+			throw new IllegalStateException( "commit() without beginBatch()" );
+		if ( --batchDepth == 0 )
+		{
+			try
+			{
+				publish();
+			}
+			finally
+			{
+				batchOwner = null;
+				--ThreadBatchState.current().openBatches;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wait until no other thread has a batch open. Must be called while
+	 * holding the monitor of this map.
+	 */
+	private void awaitBatch()
+	{
+		final Thread self = Thread.currentThread();
+		boolean interrupted = false;
+		while ( batchOwner != null && batchOwner != self )
+		{
+			try
+			{
+				wait();
+			}
+			catch ( final InterruptedException e )
+			{
+				interrupted = true;
+			}
+		}
+		if ( interrupted )
+			self.interrupt();
+	}
+
+	/**
+	 * Get the bindings that the current thread reads. These are the
+	 * published bindings, or the unpublished {@link #batchBehaviours} if the
+	 * current thread has a batch open (and does not read
+	 * {@link ThreadBatchState#publishedOnly published bindings only}).
+	 */
+	private Map< String, Behaviour > readBehaviours()
+	{
+		if ( batchOwner == Thread.currentThread() && ThreadBatchState.current().publishedOnly == 0 )
+		{
+			final PersistentMap< String, Behaviour > b = batchBehaviours;
+			if ( b != null )
+				return b;
+		}
+		return behaviours;
+	}
+
+	/**
+	 * Get the current bindings including unpublished modifications.
+	 */
+	private PersistentMap< String, Behaviour > current()
+	{
+		return batchBehaviours != null ? batchBehaviours : behaviours;
+	}
+
+	/**
+	 * Record the change of {@code key}, and publish it unless in a batch. A
+	 * {@code null} key records an unspecified change.
+	 */
+	private void changed( final String key )
+	{
+		batchChanges.add( key );
+		if ( batchDepth == 0 )
+			publish();
+	}
+
+	private void publish()
+	{
+		if ( batchBehaviours != null )
+		{
+			behaviours = batchBehaviours;
+			batchBehaviours = null;
+		}
+		if ( !batchChanges.isEmpty() )
+		{
+			modified( batchChanges );
+			batchChanges.clear();
+		}
 	}
 
 	/**
 	 * Get all bindings defined in this map and its parents. Note the returned
 	 * map <em>not</em> backed by the {@link BehaviourMap}, i.e., it will not
 	 * reflect changes to the {@link BehaviourMap}.
+	 * <p>
+	 * The returned map is a new copy that the caller may modify. Use
+	 * {@link #getAllBindingsSnapshot()} to avoid copying.
+	 * <p>
+	 * A thread that has a batch open (see {@link #beginBatch()}) sees its own
+	 * unpublished modifications.
 	 *
 	 * @return all bindings defined in this map and its parents.
 	 */
-	public synchronized Map< String, Behaviour > getAllBindings()
+	public Map< String, Behaviour > getAllBindings()
 	{
-		final Map< String, Behaviour > allBindings =
-				( parent == null ) ? new HashMap<>() : parent.getAllBindings();
+		return new HashMap<>( getAllBindingsSnapshot() );
+	}
 
-		for ( final Entry< String, Behaviour > entry : behaviours.entrySet() )
-			allBindings.put( entry.getKey(), entry.getValue() );
+	/**
+	 * Get all bindings defined in this map and its parents, like
+	 * {@link #getAllBindings()}, as an unmodifiable snapshot. It is cached,
+	 * and returned again to subsequent callers until the {@link #modCount()}
+	 * of this map changes.
+	 *
+	 * @return all bindings defined in this map and its parents.
+	 */
+	public Map< String, Behaviour > getAllBindingsSnapshot()
+	{
+		// a thread with open batches may see unpublished bindings, which are
+		// neither taken from nor put into the cache
+		final boolean inBatch = ThreadBatchState.current().readsUnpublished();
+		final AllBindings cached = allBindings;
+		final int modCount = modCount();
+		if ( !inBatch && cached != null && cached.modCount == modCount )
+			return cached.bindings;
 
-		return allBindings;
+		final BehaviourMap parent = getParent();
+		final Map< String, Behaviour > bindings = parent == null
+				? new HashMap<>()
+				: new HashMap<>( parent.getAllBindingsSnapshot() );
+		bindings.putAll( getLocalBindings() );
+		final Map< String, Behaviour > snapshot = Collections.unmodifiableMap( bindings );
+		if ( !inBatch )
+			allBindings = new AllBindings( modCount, snapshot );
+		return snapshot;
 	}
 
-	public synchronized Set< String > keys()
+	/**
+	 * Get the bindings that this map adds to (or overrides in) the bindings of
+	 * its parent, for {@link #getAllBindingsSnapshot()}. The returned map is not
+	 * modified.
+	 *
+	 * @return bindings defined in this map.
+	 */
+	protected Map< String, Behaviour > getLocalBindings()
 	{
-		return new HashSet<>( behaviours.keySet() );
+		return readBehaviours();
 	}
 
+	/**
+	 * Cached result of {@link #getAllBindingsSnapshot()}.
+	 */
+	private static final class AllBindings
+	{
+		/**
+		 * The {@link #modCount()} for which {@link #bindings} was computed.
+		 */
+		final int modCount;
+
+		final Map< String, Behaviour > bindings;
+
+		AllBindings( final int modCount, final Map< String, Behaviour > bindings )
+		{
+			this.modCount = modCount;
+			this.bindings = bindings;
+		}
+	}
+
+	public Set< String > keys()
+	{
+		return new HashSet<>( readBehaviours().keySet() );
+	}
+
+	/**
+	 * Get the modification count of this map. The count changes whenever this
+	 * map, any of its parents, or any map registered with
+	 * {@link #trackModifications(BehaviourMap)} is modified. Modifications are
+	 * pushed from parents to children, so this is a single volatile read,
+	 * independent of the depth of the parent chain.
+	 *
+	 * @return the modification count.
+	 */
 	public int modCount()
 	{
-		if ( parent != null )
+		return changes.version();
+	}
+
+	/**
+	 * Get the keys whose bindings changed since the map had modification count
+	 * {@code modCount}. This includes changes of the parents and tracked maps.
+	 * The current binding of a changed key must be queried with
+	 * {@link #get(String)}.
+	 * <p>
+	 * Only a limited number of recent changes is kept. Re-parenting and
+	 * {@link #clear()} are not recorded as individual changes and invalidate
+	 * all earlier changes.
+	 *
+	 * @param modCount
+	 *            a previous {@link #modCount()} of this map.
+	 * @param changedKeys
+	 *            keys changed since {@code modCount} are appended to this
+	 *            collection, oldest first.
+	 * @return {@code true} if successful, or {@code false} if the changes since
+	 *         {@code modCount} are not known. In that case nothing is
+	 *         appended to {@code changedKeys}, and the consumer must re-read
+	 *         all bindings.
+	 */
+	public boolean getChangesSince( final int modCount, final Collection< ? super String > changedKeys )
+	{
+		return changes.changesSince( modCount, changedKeys );
+	}
+
+	/**
+	 * Bump the {@link #modCount()} of this map whenever {@code map} (or any of
+	 * its parents) is modified. This is for derived maps that present
+	 * bindings of another map, other than their parent.
+	 *
+	 * @param map
+	 *            the map to track.
+	 */
+	protected void trackModifications( final BehaviourMap map )
+	{
+		map.addDependent( this );
+		modified();
+	}
+
+	/**
+	 * Bump the modification count of this map and all maps that depend on it.
+	 * The modification is not specified further, so consumers of
+	 * {@link #getChangesSince(int, Collection)} have to re-read all bindings.
+	 */
+	protected void modified()
+	{
+		modified( Collections.singletonList( null ) );
+	}
+
+	private void modified( final Collection< String > changedKeys )
+	{
+		changes.recordAll( changedKeys );
+		final Object[] deps;
+		synchronized ( dependents )
 		{
-			final int m = parent.modCount();
-			if ( m != expectedParentModCount )
-			{
-				expectedParentModCount = m;
-				++modCount;
-			}
+			if ( dependents.isEmpty() )
+				return;
+			deps = dependents.toArray();
+		}
+		for ( final Object dep : deps )
+			( ( BehaviourMap ) dep ).modified( changedKeys );
+	}
+
+	private void addDependent( final BehaviourMap map )
+	{
+		synchronized ( dependents )
+		{
+			dependents.add( map );
+		}
+	}
+
+	private void removeDependent( final BehaviourMap map )
+	{
+		synchronized ( dependents )
+		{
+			dependents.remove( map );
 		}
-		return modCount;
 	}
 }
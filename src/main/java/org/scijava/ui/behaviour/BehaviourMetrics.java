@@ -0,0 +1,254 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Collects behaviour invocation counts and latencies of
+ * {@link MouseAndKeyHandler}s (see
+ * {@link MouseAndKeyHandler#setMetrics(BehaviourMetrics)}), and exposes them,
+ * together with dispatch table statistics of the handlers, as an MXBean.
+ * <p>
+ * Latency is measured from {@link java.awt.event.InputEvent#getWhen()} of the
+ * triggering event to the completion of the behaviour, and recorded in
+ * histograms with fixed buckets (four per power of two milliseconds).
+ * Recording is lock-free and does not allocate, except for the first
+ * invocation of each behaviour. It can be switched on and off at runtime with
+ * {@link #setEnabled(boolean)}.
+ */
+public class BehaviourMetrics implements BehaviourMetricsMXBean
+{
+	/**
+	 * Number of buckets in the latency histograms. The last bucket starts at
+	 * 229376 ms (ca. 4 minutes).
+	 */
+	static final int NUM_BUCKETS = 68;
+
+	private volatile boolean enabled = true;
+
+	/**
+	 * Latency histograms by behaviour key.
+	 */
+	private final ConcurrentHashMap< String, AtomicLongArray > histograms = new ConcurrentHashMap<>();
+
+	/**
+	 * Monitored handlers. Weakly referenced, so that handlers of closed
+	 * windows can be garbage-collected.
+	 */
+	private final Set< AbstractMouseAndKeyHandler > handlers = Collections.newSetFromMap( new WeakHashMap<>() );
+
+	private ObjectName objectName;
+
+	/**
+	 * Register this as a platform MXBean named
+	 * {@code org.scijava.ui.behaviour:type=BehaviourMetrics,name=<name>}.
+	 */
+	public synchronized void register( final String name ) throws JMException
+	{
+		unregister();
+		final ObjectName on = new ObjectName( "org.scijava.ui.behaviour:type=BehaviourMetrics,name=" + ObjectName.quote( name ) );
+		ManagementFactory.getPlatformMBeanServer().registerMBean( this, on );
+		objectName = on;
+	}
+
+	/**
+	 * Unregister this from the platform MBean server, if it was
+	 * {@link #register(String) registered}.
+	 */
+	public synchronized void unregister() throws JMException
+	{
+		if ( objectName != null )
+		{
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean( objectName );
+			objectName = null;
+		}
+	}
+
+	@Override
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	@Override
+	public void setEnabled( final boolean enabled )
+	{
+		this.enabled = enabled;
+	}
+
+	@Override
+	public void reset()
+	{
+		histograms.clear();
+	}
+
+	/**
+	 * Record that the behaviour with the given key completed, triggered by an
+	 * input event at time {@code when}.
+	 */
+	void invoked( final String behaviourKey, final long when )
+	{
+		if ( !enabled )
+			return;
+		final String key = behaviourKey == null ? "" : behaviourKey;
+		AtomicLongArray histogram = histograms.get( key );
+		if ( histogram == null )
+			histogram = histograms.computeIfAbsent( key, k -> new AtomicLongArray( NUM_BUCKETS ) );
+		histogram.incrementAndGet( bucket( System.currentTimeMillis() - when ) );
+	}
+
+	void addHandler( final AbstractMouseAndKeyHandler handler )
+	{
+		synchronized ( handlers )
+		{
+			handlers.add( handler );
+		}
+	}
+
+	void removeHandler( final AbstractMouseAndKeyHandler handler )
+	{
+		synchronized ( handlers )
+		{
+			handlers.remove( handler );
+		}
+	}
+
+	@Override
+	public Map< String, Long > getInvocationCounts()
+	{
+		final Map< String, Long > counts = new TreeMap<>();
+		histograms.forEach( ( key, histogram ) -> {
+			long count = 0;
+			for ( int i = 0; i < NUM_BUCKETS; ++i )
+				count += histogram.get( i );
+			counts.put( key, count );
+		} );
+		return counts;
+	}
+
+	@Override
+	public long[] getLatencyBucketBounds()
+	{
+		final long[] bounds = new long[ NUM_BUCKETS ];
+		for ( int i = 0; i < NUM_BUCKETS; ++i )
+			bounds[ i ] = lowerBound( i );
+		return bounds;
+	}
+
+	@Override
+	public long[] getLatencyHistogram()
+	{
+		final long[] sum = new long[ NUM_BUCKETS ];
+		for ( final AtomicLongArray histogram : histograms.values() )
+			for ( int i = 0; i < NUM_BUCKETS; ++i )
+				sum[ i ] += histogram.get( i );
+		return sum;
+	}
+
+	@Override
+	public Map< String, long[] > getLatencyHistograms()
+	{
+		final Map< String, long[] > result = new TreeMap<>();
+		histograms.forEach( ( key, histogram ) -> {
+			final long[] counts = new long[ NUM_BUCKETS ];
+			for ( int i = 0; i < NUM_BUCKETS; ++i )
+				counts[ i ] = histogram.get( i );
+			result.put( key, counts );
+		} );
+		return result;
+	}
+
+	@Override
+	public Map< String, Long > getDispatchTableUpdateCounts()
+	{
+		final Map< String, Long > counts = new TreeMap<>();
+		for ( final AbstractMouseAndKeyHandler handler : handlers() )
+			counts.put( name( handler ), handler.getDispatchTableUpdateCount() );
+		return counts;
+	}
+
+	@Override
+	public Map< String, Integer > getBindingCounts()
+	{
+		final Map< String, Integer > counts = new TreeMap<>();
+		for ( final AbstractMouseAndKeyHandler handler : handlers() )
+			counts.put( name( handler ), handler.getBindingCount() );
+		return counts;
+	}
+
+	private static String name( final AbstractMouseAndKeyHandler handler )
+	{
+		return handler.getClass().getSimpleName() + "@" + Integer.toHexString( System.identityHashCode( handler ) );
+	}
+
+	private AbstractMouseAndKeyHandler[] handlers()
+	{
+		synchronized ( handlers )
+		{
+			return handlers.toArray( new AbstractMouseAndKeyHandler[ 0 ] );
+		}
+	}
+
+	/**
+	 * Get the histogram bucket for a latency of {@code millis}. Latencies
+	 * below 4 ms have one bucket each, above that each power of two is split
+	 * into four buckets.
+	 */
+	static int bucket( final long millis )
+	{
+		if ( millis < 4 )
+			return millis < 0 ? 0 : ( int ) millis;
+		final int e = 63 - Long.numberOfLeadingZeros( millis );
+		final int i = 4 * ( e - 1 ) + ( int ) ( ( millis >>> ( e - 2 ) ) & 3 );
+		return Math.min( i, NUM_BUCKETS - 1 );
+	}
+
+	/**
+	 * Get the smallest latency in bucket {@code i}.
+	 */
+	static long lowerBound( final int i )
+	{
+		if ( i < 4 )
+			return i;
+		final int e = i / 4 + 1;
+		return ( long ) ( 4 + i % 4 ) << ( e - 2 );
+	}
+}
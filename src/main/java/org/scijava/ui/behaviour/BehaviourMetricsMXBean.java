@@ -0,0 +1,82 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link BehaviourMetrics}.
+ */
+public interface BehaviourMetricsMXBean
+{
+	boolean isEnabled();
+
+	void setEnabled( boolean enabled );
+
+	/**
+	 * Discard all invocation counts and latencies.
+	 */
+	void reset();
+
+	/**
+	 * Get the number of invocations of each behaviour, by behaviour key.
+	 */
+	Map< String, Long > getInvocationCounts();
+
+	/**
+	 * Get the lower bounds (in milliseconds) of the latency histogram buckets.
+	 * Bucket {@code i} counts latencies {@code l} with
+	 * {@code bounds[i] <= l < bounds[i+1]}. The last bucket is unbounded.
+	 */
+	long[] getLatencyBucketBounds();
+
+	/**
+	 * Get the histogram of latencies from input event to behaviour completion,
+	 * over all behaviours.
+	 */
+	long[] getLatencyHistogram();
+
+	/**
+	 * Get the histogram of latencies from input event to behaviour completion,
+	 * by behaviour key.
+	 */
+	Map< String, long[] > getLatencyHistograms();
+
+	/**
+	 * Get the number of dispatch table updates of each monitored handler.
+	 */
+	Map< String, Long > getDispatchTableUpdateCounts();
+
+	/**
+	 * Get the number of bindings in the current dispatch table of each
+	 * monitored handler.
+	 */
+	Map< String, Integer > getBindingCounts();
+}
@@ -0,0 +1,304 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.listeners.Listeners;
+
+/**
+ * Measures {@link Behaviour} invocations in a {@link MouseAndKeyHandler} (see
+ * {@link MouseAndKeyHandler#setWatchdog(BehaviourWatchdog)}), and records
+ * {@link Stall}s for invocations that take longer than a given budget.
+ * <p>
+ * While an invocation is running, a background thread samples the stack of
+ * the invoking thread once the budget is exceeded, so the {@link Stall}
+ * shows where the behaviour was stuck.
+ * <p>
+ * The most recent stalls can be queried with {@link #getStalls()}, and
+ * {@link #stallListeners() listeners} are notified of every stall (on the
+ * invoking thread, i.e., usually the event dispatch thread).
+ */
+public class BehaviourWatchdog implements AutoCloseable
+{
+	public static final int DEFAULT_CAPACITY = 100;
+
+	/**
+	 * A {@link Behaviour} invocation that exceeded the budget.
+	 */
+	public static final class Stall
+	{
+		private final String behaviourKey;
+
+		private final InputTrigger trigger;
+
+		private final String method;
+
+		private final long durationNanos;
+
+		private final StackTraceElement[] stackTrace;
+
+		Stall( final String behaviourKey, final InputTrigger trigger, final String method, final long durationNanos, final StackTraceElement[] stackTrace )
+		{
+			this.behaviourKey = behaviourKey;
+			this.trigger = trigger;
+			this.method = method;
+			this.durationNanos = durationNanos;
+			this.stackTrace = stackTrace;
+		}
+
+		/**
+		 * The key of the behaviour in the {@link BehaviourMap}.
+		 */
+		public String behaviourKey()
+		{
+			return behaviourKey;
+		}
+
+		/**
+		 * The trigger that caused the invocation.
+		 */
+		public InputTrigger trigger()
+		{
+			return trigger;
+		}
+
+		/**
+		 * The invoked method, e.g., {@code "click"} or {@code "drag"}.
+		 */
+		public String method()
+		{
+			return method;
+		}
+
+		public long durationNanos()
+		{
+			return durationNanos;
+		}
+
+		/**
+		 * The stack of the invoking thread, sampled while the invocation was
+		 * over budget, or an empty array if no sample was taken (e.g., because
+		 * the invocation ended shortly after exceeding the budget).
+		 */
+		public StackTraceElement[] stackTrace()
+		{
+			return stackTrace.clone();
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder sb = new StringBuilder();
+			sb.append( behaviourKey ).append( '.' ).append( method ).append( "()" );
+			sb.append( " triggered by \"" ).append( trigger ).append( "\"" );
+			sb.append( " took " ).append( TimeUnit.NANOSECONDS.toMillis( durationNanos ) ).append( " ms" );
+			for ( final StackTraceElement element : stackTrace )
+				sb.append( "\n\tat " ).append( element );
+			return sb.toString();
+		}
+	}
+
+	public interface StallListener
+	{
+		void stalled( Stall stall );
+	}
+
+	private final long budgetNanos;
+
+	private final int capacity;
+
+	private final ArrayDeque< Stall > stalls;
+
+	private final Listeners.List< StallListener > stallListeners = new Listeners.SynchronizedList<>();
+
+	private final Thread sampler;
+
+	private volatile boolean closed;
+
+	/*
+	 * State of the current outermost invocation. Written by the invoking
+	 * thread, read by the sampler.
+	 */
+
+	private int depth;
+
+	private volatile int generation;
+
+	private volatile Thread invoker;
+
+	private volatile long start;
+
+	private volatile int sampledGeneration = -1;
+
+	private volatile StackTraceElement[] sample;
+
+	/**
+	 * Create a watchdog that records invocations longer than
+	 * {@code budgetMillis}, keeping the {@link #DEFAULT_CAPACITY} most recent.
+	 */
+	public BehaviourWatchdog( final long budgetMillis )
+	{
+		this( budgetMillis, DEFAULT_CAPACITY );
+	}
+
+	/**
+	 * Create a watchdog that records invocations longer than
+	 * {@code budgetMillis}, keeping the {@code capacity} most recent.
+	 */
+	public BehaviourWatchdog( final long budgetMillis, final int capacity )
+	{
+		if ( budgetMillis <= 0 || capacity <= 0 )
+			throw new IllegalArgumentException();
+		this.budgetNanos = TimeUnit.MILLISECONDS.toNanos( budgetMillis );
+		this.capacity = capacity;
+		this.stalls = new ArrayDeque<>( capacity );
+		final long period = Math.max( 1, budgetMillis / 2 );
+		sampler = new Thread( () -> sample( period ), "behaviour-watchdog" );
+		sampler.setDaemon( true );
+		sampler.start();
+	}
+
+	public long getBudgetMillis()
+	{
+		return TimeUnit.NANOSECONDS.toMillis( budgetNanos );
+	}
+
+	/**
+	 * Get the most recent stalls, oldest first.
+	 */
+	public synchronized List< Stall > getStalls()
+	{
+		return new ArrayList<>( stalls );
+	}
+
+	public synchronized void clearStalls()
+	{
+		stalls.clear();
+	}
+
+	public Listeners< StallListener > stallListeners()
+	{
+		return stallListeners;
+	}
+
+	/**
+	 * Stop the sampling thread. Invocations are still measured after closing,
+	 * but stalls have no stack trace.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		sampler.interrupt();
+	}
+
+	/**
+	 * Called before an invocation.
+	 *
+	 * @return start time, to be passed to
+	 *         {@link #end(long, String, InputTrigger, String)}.
+	 */
+	long begin()
+	{
+		final long t = System.nanoTime();
+		if ( depth++ == 0 )
+		{
+			invoker = Thread.currentThread();
+			start = t;
+			generation = generation + 1;
+		}
+		return t;
+	}
+
+	/**
+	 * Called after an invocation that started at {@code t}.
+	 */
+	void end( final long t, final String method, final InputTrigger trigger, final String behaviourKey )
+	{
+		final long duration = System.nanoTime() - t;
+		if ( --depth == 0 )
+			invoker = null;
+		if ( duration > budgetNanos )
+		{
+			final StackTraceElement[] stack = sampledGeneration == generation ? sample : null;
+			stalled( new Stall( behaviourKey, trigger, method, duration, stack == null ? new StackTraceElement[ 0 ] : stack ) );
+		}
+	}
+
+	private void stalled( final Stall stall )
+	{
+		synchronized ( this )
+		{
+			if ( stalls.size() == capacity )
+				stalls.removeFirst();
+			stalls.addLast( stall );
+		}
+		stallListeners.list.forEach( l -> l.stalled( stall ) );
+	}
+
+	private void sample( final long periodMillis )
+	{
+		while ( !closed )
+		{
+			try
+			{
+				Thread.sleep( periodMillis );
+			}
+			catch ( final InterruptedException e )
+			{
+				return;
+			}
+			final int g = generation;
+			final Thread thread = invoker;
+			if ( thread == null || sampledGeneration == g || System.nanoTime() - start <= budgetNanos )
+				continue;
+			final StackTraceElement[] stack = thread.getStackTrace();
+			if ( generation == g && invoker == thread )
+			{
+				// keep only the frames above the handler, i.e., the behaviour
+				sample = trimStack( stack );
+				sampledGeneration = g;
+			}
+		}
+	}
+
+	private static StackTraceElement[] trimStack( final StackTraceElement[] stack )
+	{
+		for ( int i = 0; i < stack.length; ++i )
+			if ( stack[ i ].getClassName().equals( MouseAndKeyHandler.class.getName() ) )
+				return Arrays.copyOf( stack, i );
+		return stack;
+	}
+}
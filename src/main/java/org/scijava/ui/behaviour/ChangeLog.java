@@ -0,0 +1,163 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.util.Collection;
+
+/**
+ * Modification counter with a bounded log of the most recent changes. Used by
+ * {@link InputTriggerMap} and {@link BehaviourMap} to let consumers catch up
+ * with modifications incrementally.
+ * <p>
+ * Every call to {@link #record(Object)} or {@link #recordAll(Collection)}
+ * increments the {@link #version()}. The changes recorded since version
+ * {@code v} can be retrieved as long as they are among the last
+ * {@link #CAPACITY} recorded changes, and no unspecified ({@code null})
+ * change has been recorded since.
+ *
+ * @param <T>
+ *            change type
+ */
+final class ChangeLog< T >
+{
+	static final int CAPACITY = 256;
+
+	private static final int MASK = CAPACITY - 1;
+
+	/**
+	 * Ring buffer of recorded changes, indexed by {@code entry & MASK}.
+	 */
+	private final Object[] changes = new Object[ CAPACITY ];
+
+	/**
+	 * The version in which each change in {@link #changes} was recorded.
+	 */
+	private final int[] versions = new int[ CAPACITY ];
+
+	private volatile int version;
+
+	/**
+	 * Total number of recorded changes. The latest change is at
+	 * {@code entries - 1}.
+	 */
+	private int entries;
+
+	/**
+	 * How many of the latest changes are retrievable.
+	 */
+	private int size;
+
+	/**
+	 * All changes after this version are retrievable.
+	 */
+	private int complete;
+
+	public int version()
+	{
+		return version;
+	}
+
+	/**
+	 * Increment the version and record the given {@code change}. If
+	 * {@code change == null}, the change is unspecified, and all earlier
+	 * changes are forgotten.
+	 *
+	 * @return the new version.
+	 */
+	public synchronized int record( final T change )
+	{
+		final int v = version + 1;
+		if ( change == null )
+			forget( v );
+		else
+			add( change, v );
+		version = v;
+		return v;
+	}
+
+	/**
+	 * Increment the version once and record all given {@code changes} for the
+	 * new version. If any of the changes is {@code null}, or there are more
+	 * than {@link #CAPACITY} changes, they are unspecified, and all earlier
+	 * changes are forgotten.
+	 *
+	 * @return the new version.
+	 */
+	public synchronized int recordAll( final Collection< ? extends T > changes )
+	{
+		final int v = version + 1;
+		if ( changes.size() > CAPACITY || changes.contains( null ) )
+			forget( v );
+		else
+			for ( final T change : changes )
+				add( change, v );
+		version = v;
+		return v;
+	}
+
+	private void forget( final int v )
+	{
+		size = 0;
+		complete = v;
+	}
+
+	private void add( final T change, final int v )
+	{
+		final int i = entries & MASK;
+		if ( size == CAPACITY )
+			// the change recorded in version versions[ i ] is forgotten
+			complete = Math.max( complete, versions[ i ] );
+		changes[ i ] = change;
+		versions[ i ] = v;
+		++entries;
+		size = Math.min( size + 1, CAPACITY );
+	}
+
+	/**
+	 * Add all changes recorded after version {@code since} to {@code out}, in
+	 * the order in which they were recorded.
+	 *
+	 * @return {@code true} if successful, {@code false} if the log does not
+	 *         reach back to {@code since}. In that case, nothing is added to
+	 *         {@code out}.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized boolean changesSince( final int since, final Collection< ? super T > out )
+	{
+		if ( since - complete < 0 || version - since < 0 )
+			return false;
+		int n = 0;
+		while ( n < size && versions[ ( entries - n - 1 ) & MASK ] - since > 0 )
+			++n;
+		for ( int e = entries - n; e < entries; ++e )
+			out.add( ( T ) changes[ e & MASK ] );
+		return true;
+	}
+}
@@ -0,0 +1,76 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+/**
+ * A {@link DragBehaviour} that does not need to see every intermediate mouse
+ * position. {@link MouseAndKeyHandler} coalesces mouse motion for such
+ * behaviours: {@link #drag(int, int)} is called with the latest position at
+ * most once per frame (see
+ * {@link MouseAndKeyHandler#setFrameInterval(int)} and
+ * {@link MouseAndKeyHandler#frameTick()}). {@link #init(int, int)} and
+ * {@link #end(int, int)} are still delivered exactly, and pending positions
+ * are delivered before {@link #end(int, int)}.
+ * <p>
+ * Use this for drags that trigger expensive work (e.g., re-rendering) on every
+ * {@link #drag(int, int)}.
+ */
+public interface CoalescedDragBehaviour extends DragBehaviour
+{
+	/**
+	 * Wrap a {@link DragBehaviour} such that its drags are coalesced.
+	 */
+	public static CoalescedDragBehaviour coalesced( final DragBehaviour behaviour )
+	{
+		if ( behaviour instanceof CoalescedDragBehaviour )
+			return ( CoalescedDragBehaviour ) behaviour;
+
+		return new CoalescedDragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				behaviour.init( x, y );
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				behaviour.drag( x, y );
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				behaviour.end( x, y );
+			}
+		};
+	}
+}
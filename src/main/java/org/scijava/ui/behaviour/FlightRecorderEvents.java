@@ -0,0 +1,350 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDK Flight Recorder events for input dispatch:
+ * <ul>
+ * <li>{@code org.scijava.ui.behaviour.InputDispatched}: an input event was
+ * looked up in the dispatch table (event type, modifier mask, number of
+ * entries checked, matched behaviour keys).</li>
+ * <li>{@code org.scijava.ui.behaviour.BehaviourInvoked}: a behaviour method
+ * was invoked (behaviour key, method, trigger, and duration).</li>
+ * <li>{@code org.scijava.ui.behaviour.DispatchTableRebuilt}: a dispatch table
+ * was built or patched (binding count, and duration).</li>
+ * </ul>
+ * <p>
+ * This library is compiled for Java 8, so the {@code jdk.jfr} API is accessed
+ * reflectively, and the event types are defined with
+ * {@code jdk.jfr.EventFactory}. If the API is not available, nothing is
+ * recorded. A {@code jdk.jfr.FlightRecorderListener} keeps track of whether
+ * any recording is active, so that without a recording each event costs only
+ * a volatile read. With a recording, events are only committed if
+ * {@code shouldCommit()}.
+ */
+final class FlightRecorderEvents
+{
+	private static final String PREFIX = "org.scijava.ui.behaviour.";
+
+	/**
+	 * Whether any flight recording may be active.
+	 */
+	private static volatile boolean recording;
+
+	/*
+	 * Reflective access to jdk.jfr. All null if not available.
+	 */
+
+	private static Method isInitialized;
+
+	private static Method getFlightRecorder;
+
+	private static Method getRecordings;
+
+	private static Method getState;
+
+	private static Method newEvent;
+
+	private static Method begin;
+
+	private static Method end;
+
+	private static Method shouldCommit;
+
+	private static Method commit;
+
+	private static Method set;
+
+	/*
+	 * jdk.jfr.EventFactory for each event type. Created when the first
+	 * recording starts.
+	 */
+
+	private static Object inputDispatched;
+
+	private static Object behaviourInvoked;
+
+	private static Object tableRebuilt;
+
+	static
+	{
+		try
+		{
+			final Class< ? > recorderClass = Class.forName( "jdk.jfr.FlightRecorder" );
+			final Class< ? > listenerClass = Class.forName( "jdk.jfr.FlightRecorderListener" );
+			final Class< ? > eventClass = Class.forName( "jdk.jfr.Event" );
+			isInitialized = recorderClass.getMethod( "isInitialized" );
+			getFlightRecorder = recorderClass.getMethod( "getFlightRecorder" );
+			getRecordings = recorderClass.getMethod( "getRecordings" );
+			getState = Class.forName( "jdk.jfr.Recording" ).getMethod( "getState" );
+			newEvent = Class.forName( "jdk.jfr.EventFactory" ).getMethod( "newEvent" );
+			begin = eventClass.getMethod( "begin" );
+			end = eventClass.getMethod( "end" );
+			shouldCommit = eventClass.getMethod( "shouldCommit" );
+			commit = eventClass.getMethod( "commit" );
+			set = eventClass.getMethod( "set", int.class, Object.class );
+
+			final Object listener = Proxy.newProxyInstance( FlightRecorderEvents.class.getClassLoader(), new Class< ? >[] { listenerClass }, ( proxy, method, args ) -> {
+				switch ( method.getName() )
+				{
+				case "recorderInitialized":
+				case "recordingStateChanged":
+					updateRecording();
+					return null;
+				case "equals":
+					return proxy == args[ 0 ];
+				case "hashCode":
+					return System.identityHashCode( proxy );
+				case "toString":
+					return FlightRecorderEvents.class.getName();
+				default:
+					return null;
+				}
+			} );
+			recorderClass.getMethod( "addListener", listenerClass ).invoke( null, listener );
+			updateRecording();
+		}
+		catch ( final ReflectiveOperationException | LinkageError | SecurityException e )
+		{
+			disable();
+		}
+	}
+
+	private static synchronized void disable()
+	{
+		recording = false;
+		isInitialized = null;
+	}
+
+	/**
+	 * Check whether any recording is running (or about to run). Event types
+	 * are registered before {@link #recording} is first set.
+	 */
+	private static synchronized void updateRecording()
+	{
+		if ( isInitialized == null )
+			return;
+		try
+		{
+			boolean active = false;
+			if ( ( Boolean ) isInitialized.invoke( null ) )
+			{
+				final Object recorder = getFlightRecorder.invoke( null );
+				for ( final Object r : ( List< ? > ) getRecordings.invoke( recorder ) )
+				{
+					final String state = String.valueOf( getState.invoke( r ) );
+					if ( state.equals( "NEW" ) || state.equals( "DELAYED" ) || state.equals( "RUNNING" ) )
+						active = true;
+				}
+			}
+			if ( active && inputDispatched == null )
+				createEventTypes();
+			recording = active;
+		}
+		catch ( final ReflectiveOperationException | RuntimeException | LinkageError e )
+		{
+			disable();
+		}
+	}
+
+	private static void createEventTypes() throws ReflectiveOperationException
+	{
+		inputDispatched = eventType( "InputDispatched", "Input Dispatched",
+				"An input event was looked up in the dispatch table of a MouseAndKeyHandler",
+				new String[] { "eventType", "mask", "scanned", "behaviourKeys" },
+				new String[] { "Event Type", "Modifier Mask", "Entries Checked", "Matched Behaviour Keys" },
+				new Class< ? >[] { String.class, int.class, int.class, String.class } );
+		behaviourInvoked = eventType( "BehaviourInvoked", "Behaviour Invoked",
+				"A behaviour was invoked by a MouseAndKeyHandler",
+				new String[] { "behaviourKey", "method", "trigger" },
+				new String[] { "Behaviour Key", "Method", "Trigger" },
+				new Class< ? >[] { String.class, String.class, String.class } );
+		tableRebuilt = eventType( "DispatchTableRebuilt", "Dispatch Table Rebuilt",
+				"The dispatch table for an InputTriggerMap and BehaviourMap was rebuilt or patched",
+				new String[] { "bindings", "patched" },
+				new String[] { "Binding Count", "Patched" },
+				new Class< ? >[] { int.class, boolean.class } );
+	}
+
+	private static Object eventType( final String name, final String label, final String description, final String[] fieldNames, final String[] fieldLabels, final Class< ? >[] fieldTypes ) throws ReflectiveOperationException
+	{
+		final Class< ? > annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+		final Constructor< ? > annotation = annotationElementClass.getConstructor( Class.class, Object.class );
+		final Class< ? > nameClass = Class.forName( "jdk.jfr.Name" );
+		final Class< ? > labelClass = Class.forName( "jdk.jfr.Label" );
+		final Class< ? > descriptionClass = Class.forName( "jdk.jfr.Description" );
+		final Class< ? > categoryClass = Class.forName( "jdk.jfr.Category" );
+
+		final List< Object > annotations = Arrays.asList(
+				annotation.newInstance( nameClass, PREFIX + name ),
+				annotation.newInstance( labelClass, label ),
+				annotation.newInstance( descriptionClass, description ),
+				annotation.newInstance( categoryClass, new String[] { "SciJava", "UI Behaviour" } ) );
+
+		final Constructor< ? > valueDescriptor = Class.forName( "jdk.jfr.ValueDescriptor" ).getConstructor( Class.class, String.class, List.class );
+		final Object[] fields = new Object[ fieldNames.length ];
+		for ( int i = 0; i < fields.length; ++i )
+			fields[ i ] = valueDescriptor.newInstance( fieldTypes[ i ], fieldNames[ i ],
+					Collections.singletonList( annotation.newInstance( labelClass, fieldLabels[ i ] ) ) );
+
+		return Class.forName( "jdk.jfr.EventFactory" ).getMethod( "create", List.class, List.class )
+				.invoke( null, annotations, Arrays.asList( fields ) );
+	}
+
+	/**
+	 * Emit an {@code InputDispatched} event, if recording.
+	 */
+	static void inputDispatched( final String eventType, final int mask, final int scanned, final List< ? extends AbstractMouseAndKeyHandler.BehaviourEntry< ? > > matches )
+	{
+		if ( recording )
+			inputDispatched( eventType, mask, scanned, matches, Collections.emptyList() );
+	}
+
+	/**
+	 * Emit an {@code InputDispatched} event, if recording.
+	 */
+	static void inputDispatched( final String eventType, final int mask, final int scanned, final List< ? extends AbstractMouseAndKeyHandler.BehaviourEntry< ? > > matches, final List< ? extends AbstractMouseAndKeyHandler.BehaviourEntry< ? > > moreMatches )
+	{
+		if ( !recording )
+			return;
+		try
+		{
+			final Object event = newEvent.invoke( inputDispatched );
+			if ( ( Boolean ) shouldCommit.invoke( event ) )
+			{
+				final StringBuilder keys = new StringBuilder();
+				for ( final List< ? extends AbstractMouseAndKeyHandler.BehaviourEntry< ? > > list : Arrays.asList( matches, moreMatches ) )
+				{
+					for ( final AbstractMouseAndKeyHandler.BehaviourEntry< ? > entry : list )
+					{
+						if ( keys.length() > 0 )
+							keys.append( ", " );
+						keys.append( entry.behaviourKey() );
+					}
+				}
+				set.invoke( event, 0, eventType );
+				set.invoke( event, 1, mask );
+				set.invoke( event, 2, scanned );
+				set.invoke( event, 3, keys.toString() );
+				commit.invoke( event );
+			}
+		}
+		catch ( final ReflectiveOperationException | RuntimeException e )
+		{
+			disable();
+		}
+	}
+
+	/**
+	 * Start a {@code BehaviourInvoked} event, if recording.
+	 *
+	 * @return the event, to be passed to
+	 *         {@link #endBehaviourInvoked(Object, String, String, InputTrigger)},
+	 *         or {@code null} if not recording.
+	 */
+	static Object beginBehaviourInvoked()
+	{
+		return recording ? beginEvent( behaviourInvoked ) : null;
+	}
+
+	static void endBehaviourInvoked( final Object event, final String behaviourKey, final String method, final InputTrigger trigger )
+	{
+		try
+		{
+			end.invoke( event );
+			if ( ( Boolean ) shouldCommit.invoke( event ) )
+			{
+				set.invoke( event, 0, behaviourKey );
+				set.invoke( event, 1, method );
+				set.invoke( event, 2, trigger == null ? null : trigger.toString() );
+				commit.invoke( event );
+			}
+		}
+		catch ( final ReflectiveOperationException | RuntimeException e )
+		{
+			disable();
+		}
+	}
+
+	/**
+	 * Start a {@code DispatchTableRebuilt} event, if recording.
+	 *
+	 * @return the event, to be passed to
+	 *         {@link #endTableRebuilt(Object, int, boolean)}, or {@code null}
+	 *         if not recording.
+	 */
+	static Object beginTableRebuilt()
+	{
+		return recording ? beginEvent( tableRebuilt ) : null;
+	}
+
+	static void endTableRebuilt( final Object event, final int bindings, final boolean patched )
+	{
+		try
+		{
+			end.invoke( event );
+			if ( ( Boolean ) shouldCommit.invoke( event ) )
+			{
+				set.invoke( event, 0, bindings );
+				set.invoke( event, 1, patched );
+				commit.invoke( event );
+			}
+		}
+		catch ( final ReflectiveOperationException | RuntimeException e )
+		{
+			disable();
+		}
+	}
+
+	private static Object beginEvent( final Object factory )
+	{
+		try
+		{
+			final Object event = newEvent.invoke( factory );
+			begin.invoke( event );
+			return event;
+		}
+		catch ( final ReflectiveOperationException | RuntimeException e )
+		{
+			disable();
+			return null;
+		}
+	}
+
+	private FlightRecorderEvents()
+	{}
+}
@@ -35,9 +35,9 @@ import java.awt.KeyboardFocusManager;
 import java.awt.event.KeyEvent;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
+import java.util.Arrays;
 
 import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 
 /**
  * Global {@link KeyEventDispatcher} hook that allows to share state of modifier
@@ -55,10 +55,43 @@ public class GlobalKeyEventDispatcher implements KeyEventDispatcher
 	}
 
 	/**
-	 * Which keys are currently pressed. This does not include modifier keys
-	 * Control, Shift, Alt, AltGr, Meta.
+	 * Which keys are currently pressed, as a bitmap for key codes
+	 * {@code 0 <= k < 256}. Bit {@code k & 63} of word {@code k >> 6} is set if
+	 * key {@code k} is pressed. This does not include modifier keys Control,
+	 * Shift, Alt, AltGr, Meta. Only modified on the EDT.
 	 */
-	private final TIntSet pressedKeys = new TIntHashSet( 5, 0.5f, -1 );
+	private final long[] pressedWords = new long[ 4 ];
+
+	/**
+	 * Sorted key codes of pressed keys that don't fit into
+	 * {@link #pressedWords}. Only modified on the EDT, and replaced (not
+	 * modified) on every change, because it is shared with
+	 * {@link #pressedKeys} snapshots.
+	 */
+	private int[] pressedOverflow = new int[ 0 ];
+
+	/**
+	 * An immutable snapshot of the pressed keys, and its version.
+	 */
+	private static final class PressedKeys
+	{
+		final KeySet keys;
+
+		final long version;
+
+		PressedKeys( final KeySet keys, final long version )
+		{
+			this.keys = keys;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * Snapshot of the currently pressed keys. Replaced whenever
+	 * {@link #pressedWords} or {@link #pressedOverflow} change. Keys and
+	 * version are published together, so readers always see matching ones.
+	 */
+	private volatile PressedKeys pressedKeys = new PressedKeys( KeySet.EMPTY, 0 );
 
 	/**
 	 * Whether the SHIFT key is currently pressed. We need this, because for
@@ -66,23 +99,48 @@ public class GlobalKeyEventDispatcher implements KeyEventDispatcher
 	 * scrolling. We keep track of whether the SHIFT key was actually pressed
 	 * for disambiguation.
 	 */
-	private boolean shiftPressed = false;
+	private volatile boolean shiftPressed = false;
 
 	/**
 	 * Whether the META key is currently pressed. We need this, because on OS X
 	 * AWT sets the META_DOWN_MASK to for right clicks. We keep track of whether
 	 * the META key was actually pressed for disambiguation.
 	 */
-	private boolean metaPressed = false;
+	private volatile boolean metaPressed = false;
 
 	/**
 	 * Whether the WINDOWS key is currently pressed.
 	 */
-	private boolean winPressed = false;
+	private volatile boolean winPressed = false;
 
+	/**
+	 * Get an immutable snapshot of the currently pressed keys. This does not
+	 * include modifier keys Control, Shift, Alt, AltGr, Meta, Win.
+	 * <p>
+	 * The returned set is a {@link KeySet}. It does not change when keys are
+	 * pressed or released later, and its mutators throw
+	 * {@link UnsupportedOperationException}. To see the current state, call
+	 * {@code pressedKeys()} again. This is cheap and can be called from any
+	 * thread.
+	 *
+	 * @return the currently pressed keys.
+	 */
 	public TIntSet pressedKeys()
 	{
-		return pressedKeys;
+		return pressedKeys.keys;
+	}
+
+	/**
+	 * Get the version of the pressed keys. The version increases whenever a
+	 * key is pressed or released. If it is the same before and after a call
+	 * to {@link #pressedKeys()}, then that call returned the snapshot of this
+	 * version. This is cheap and can be called from any thread.
+	 *
+	 * @return the current pressed keys version.
+	 */
+	public long pressedKeysVersion()
+	{
+		return pressedKeys.version;
 	}
 
 	public boolean shiftPressed()
@@ -139,7 +197,7 @@ public class GlobalKeyEventDispatcher implements KeyEventDispatcher
 				e.getKeyCode() != KeyEvent.VK_CONTROL &&
 				e.getKeyCode() != KeyEvent.VK_ALT_GRAPH )
 		{
-			pressedKeys.add( e.getKeyCode() );
+			setPressed( e.getKeyCode(), true );
 		}
 	}
 
@@ -163,8 +221,56 @@ public class GlobalKeyEventDispatcher implements KeyEventDispatcher
 				e.getKeyCode() != KeyEvent.VK_CONTROL &&
 				e.getKeyCode() != KeyEvent.VK_ALT_GRAPH )
 		{
-			pressedKeys.remove( e.getKeyCode() );
+			setPressed( e.getKeyCode(), false );
+		}
+	}
+
+	private void setPressed( final int key, final boolean pressed )
+	{
+		if ( key >= 0 && key < 256 )
+		{
+			final int i = key >> 6;
+			final long bit = 1L << ( key & 63 );
+			final long word = pressed ? pressedWords[ i ] | bit : pressedWords[ i ] & ~bit;
+			if ( word == pressedWords[ i ] )
+				return;
+			pressedWords[ i ] = word;
+		}
+		else
+		{
+			final int i = Arrays.binarySearch( pressedOverflow, key );
+			if ( pressed == ( i >= 0 ) )
+				return;
+			final int[] overflow;
+			if ( pressed )
+			{
+				final int pos = -i - 1;
+				overflow = new int[ pressedOverflow.length + 1 ];
+				System.arraycopy( pressedOverflow, 0, overflow, 0, pos );
+				overflow[ pos ] = key;
+				System.arraycopy( pressedOverflow, pos, overflow, pos + 1, pressedOverflow.length - pos );
+			}
+			else
+			{
+				overflow = new int[ pressedOverflow.length - 1 ];
+				System.arraycopy( pressedOverflow, 0, overflow, 0, i );
+				System.arraycopy( pressedOverflow, i + 1, overflow, i, overflow.length - i );
+			}
+			pressedOverflow = overflow;
 		}
+		publishPressedKeys();
+	}
+
+	private void clearPressed()
+	{
+		Arrays.fill( pressedWords, 0 );
+		pressedOverflow = new int[ 0 ];
+		publishPressedKeys();
+	}
+
+	private void publishPressedKeys()
+	{
+		pressedKeys = new PressedKeys( KeySet.fromWords( pressedWords, pressedOverflow ), pressedKeys.version + 1 );
 	}
 
 	private GlobalKeyEventDispatcher()
@@ -196,7 +302,7 @@ public class GlobalKeyEventDispatcher implements KeyEventDispatcher
 				instance.shiftPressed = false;
 				instance.metaPressed = false;
 				instance.winPressed = false;
-				instance.pressedKeys.clear();
+				instance.clearPressed();
 			}
 		}
 	};
@@ -31,17 +31,23 @@ package org.scijava.ui.behaviour;
 
 import java.awt.AWTKeyStroke;
 import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.KeyStroke;
 
 import gnu.trove.TIntCollection;
 import gnu.trove.iterator.TIntIterator;
 import gnu.trove.set.TIntSet;
-import gnu.trove.set.hash.TIntHashSet;
 
 /**
  * A combination of keys, mouse buttons, and/or mouse scrolling that can trigger a {@link Behaviour}.
@@ -68,9 +74,7 @@ public class InputTrigger
 
 	public static final int IGNORE_MASK = -1;
 
-	private static final TIntSet emptySet = new TIntHashSet();
-
-	public static final InputTrigger NOT_MAPPED = new InputTrigger( IGNORE_MASK, emptySet, null, false, IGNORE_MASK, emptySet );
+	public static final InputTrigger NOT_MAPPED = new InputTrigger( IGNORE_MASK, KeySet.EMPTY, null, false, IGNORE_MASK, KeySet.EMPTY );
 
 	/**
 	 * Word to use to specify a double-click modifier.
@@ -97,7 +101,7 @@ public class InputTrigger
 
 	private final int mask;
 
-	private final TIntSet pressedKeys;
+	private final KeySet pressedKeys;
 
 	private final KeyStroke keyStroke;
 
@@ -123,12 +127,12 @@ public class InputTrigger
 	 * Additional keys that may be pressed when matching this trigger. Only
 	 * considered if {@code ignoreAll == false} and {@code ignoreNone == false}.
 	 */
-	private final TIntSet ignoreKeys;
+	private final KeySet ignoreKeys;
 
 	/**
 	 * {@code effectiveIgnoreKeys == ignoreKeys \ pressedKeys}
 	 */
-	private final TIntSet effectiveIgnoreKeys;
+	private final KeySet effectiveIgnoreKeys;
 
 	private final int hashcode;
 
@@ -142,46 +146,8 @@ public class InputTrigger
 
 		try
 		{
-			final String[] split = splitAndTrim( s );
-			final String triggerdef = split[ 0 ];
-			final String ignoredef = split.length > 1 ? split[ 1 ] : null;
-
-			MaskAndKeys mak = getMaskAndKeysFromString( triggerdef );
-			final int mask = mak.mask;
-			final TIntSet pressedKeys = mak.pressedKeys;
-
-			/*
-			 * TODO: KeyStroke only if no ignore keys are given????
-			 */
-			KeyStroke keyStroke = null;
-			if ( ( mask & ( DOUBLE_CLICK_MASK | BUTTON1_DOWN_MASK | BUTTON2_DOWN_MASK | BUTTON3_DOWN_MASK ) ) == 0 )
-			{
-				// no mouse keys, no double-click -- pure keystroke
-				// This might still fail if for example "win" modifier is present.
-				// In that case KeyStroke.getKeyStroke( s ) == null.
-				keyStroke = KeyStroke.getKeyStroke( triggerdef );
-			}
-
-			// is there a definition of keys to ignore?
-			int ignoreMask = 0;
-			TIntSet ignoreKeys = emptySet;
-			boolean ignoreAll = false;
-			if ( ignoredef != null )
-			{
-				if ( ignoredef.equals( IGNORE_ALL_TEXT ) )
-				{
-					ignoreAll = true;
-				}
-				else
-				{
-					mak = getMaskAndKeysFromString( ignoredef );
-					ignoreMask = mak.mask;
-					ignoreKeys = mak.pressedKeys;
-				}
-			}
-
 			// don't keep identical (wrt. equals()) InputTrigger instance around.
-			return getCached( new InputTrigger( mask, pressedKeys, keyStroke, ignoreAll, ignoreMask, ignoreKeys ) );
+			return getCached( parse( s ) );
 		}
 		catch ( final IllegalArgumentException e )
 		{
@@ -189,82 +155,248 @@ public class InputTrigger
 		}
 	}
 
-	private static String[] splitAndTrim( final String s ) throws IllegalArgumentException
+	/**
+	 * Parse a (non-empty) trigger definition, without caching.
+	 * <p>
+	 * This is a single pass over {@code s}, splitting at {@code '|'} like
+	 * {@code s.split("\\|")} (dropping trailing empty parts), and splitting
+	 * parts into tokens at {@code ' '} like {@code StringTokenizer}. Key names
+	 * are looked up in {@link KeyCodes}, which has the same names as
+	 * {@link KeyStroke#getKeyStroke(String)}.
+	 */
+	static InputTrigger parse( final String s ) throws IllegalArgumentException
 	{
-		final String[] split = s.split( "\\|" );
-		if ( split.length < 1 || split.length > 2 )
+		// drop trailing empty parts
+		int end = s.length();
+		while ( end > 0 && s.charAt( end - 1 ) == '|' )
+			--end;
+		if ( end == 0 )
 			throw new IllegalArgumentException();
-		for ( int i = 0; i < split.length; ++i )
+
+		// at most two parts: trigger and ignore
+		final int bar = s.indexOf( '|' );
+		final int triggerEnd = bar < 0 || bar >= end ? end : bar;
+		if ( triggerEnd < end )
 		{
-			split[ i ] = split[ i ].trim();
-			if ( split[ i ].length() == 0 )
+			final int bar2 = s.indexOf( '|', triggerEnd + 1 );
+			if ( bar2 >= 0 && bar2 < end )
 				throw new IllegalArgumentException();
 		}
-		return split;
-	}
 
-	private static class MaskAndKeys
-	{
-		int mask;
+		final Parser trigger = new Parser( s, 0, triggerEnd );
+		trigger.parse();
+		final int mask = trigger.mask;
+		final KeySet pressedKeys = trigger.keys();
 
-		TIntSet pressedKeys;
+		/*
+		 * TODO: KeyStroke only if no ignore keys are given????
+		 */
+		KeyStroke keyStroke = null;
+		if ( ( mask & ( DOUBLE_CLICK_MASK | BUTTON1_DOWN_MASK | BUTTON2_DOWN_MASK | BUTTON3_DOWN_MASK ) ) == 0 )
+		{
+			// no mouse keys, no double-click -- pure keystroke
+			// This might still fail if for example "win" modifier is present.
+			// In that case keyStroke == null.
+			keyStroke = trigger.keyStroke();
+		}
 
-		public MaskAndKeys( final int mask, final TIntSet pressedKeys )
+		// is there a definition of keys to ignore?
+		int ignoreMask = 0;
+		KeySet ignoreKeys = KeySet.EMPTY;
+		boolean ignoreAll = false;
+		if ( triggerEnd < end )
 		{
-			this.mask = mask;
-			this.pressedKeys = pressedKeys;
+			final Parser ignore = new Parser( s, triggerEnd + 1, end );
+			if ( ignore.is( IGNORE_ALL_TEXT ) )
+			{
+				ignoreAll = true;
+			}
+			else
+			{
+				ignore.parse();
+				ignoreMask = ignore.mask;
+				ignoreKeys = ignore.keys();
+			}
 		}
+
+		return new InputTrigger( mask, pressedKeys, keyStroke, ignoreAll, ignoreMask, ignoreKeys );
 	}
 
-	private static MaskAndKeys getMaskAndKeysFromString( final String s ) throws IllegalArgumentException
+	/**
+	 * Parses the space-separated modifiers and keys in one part of a trigger
+	 * definition.
+	 */
+	private static final class Parser
 	{
-		if ( s == null || s.length() == 0 )
-			return null;
+		private final String s;
+
+		/**
+		 * Trimmed range of the part in {@link #s}.
+		 */
+		private final int from, to;
+
+		int mask;
+
+		private int[] keys = new int[ 4 ];
+
+		private int numKeys;
+
+		/**
+		 * Number of tokens that are keys (including repeated keys).
+		 */
+		private int numKeyTokens;
 
-		final StringTokenizer st = new StringTokenizer( s, " " );
-		final Map< String, Integer > modifierKeywords = getModifierKeywords();
+		/**
+		 * Whether the last token is a key.
+		 */
+		private boolean lastIsKey;
 
-		int mask = 0;
-		final TIntSet pressedKeys = new TIntHashSet();
+		/**
+		 * Whether one of {@code "pressed"}, {@code "released"}, {@code "typed"}
+		 * occurs.
+		 */
+		private boolean hasEventType;
 
-		final int count = st.countTokens();
+		/**
+		 * Whether a modifier occurs that {@link KeyStroke} doesn't know.
+		 */
+		private boolean hasNonKeyStrokeModifier;
 
-		for ( int i = 1; i <= count; i++ )
+		Parser( final String s, final int from, final int to )
 		{
-			final String token = st.nextToken();
-			if ( token.equals( "released" ) )
-			{}
-			else if ( token.equals( "pressed" ) )
-			{}
-			else if ( token.equals( "typed" ) )
-			{}
-			else
+			int f = from;
+			int t = to;
+			while ( f < t && s.charAt( f ) <= ' ' )
+				++f;
+			while ( t > f && s.charAt( t - 1 ) <= ' ' )
+				--t;
+			if ( f == t )
+				throw new IllegalArgumentException();
+			this.s = s;
+			this.from = f;
+			this.to = t;
+		}
+
+		boolean is( final String text )
+		{
+			return to - from == text.length() && s.startsWith( text, from );
+		}
+
+		void parse()
+		{
+			int i = from;
+			while ( i < to )
 			{
-				final Integer tokenMask = modifierKeywords.get( token );
-				if ( tokenMask != null )
+				if ( s.charAt( i ) == ' ' )
 				{
-					mask |= tokenMask.intValue();
+					++i;
+					continue;
 				}
-				else
+				int j = s.indexOf( ' ', i );
+				if ( j < 0 || j > to )
+					j = to;
+				token( s.substring( i, j ) );
+				i = j;
+			}
+		}
+
+		private void token( final String token )
+		{
+			lastIsKey = false;
+			if ( token.equals( "released" ) || token.equals( "pressed" ) || token.equals( "typed" ) )
+			{
+				hasEventType = true;
+				return;
+			}
+
+			final Integer tokenMask = MODIFIER_KEYWORDS.get( token );
+			if ( tokenMask != null )
+			{
+				mask |= tokenMask.intValue();
+				if ( ( tokenMask & ( SCROLL_MASK | WIN_DOWN_MASK | DOUBLE_CLICK_MASK ) ) != 0 )
+					hasNonKeyStrokeModifier = true;
+				return;
+			}
+
+			final int keyCode = KeyCodes.get( token );
+			if ( keyCode == 0 )
+				throw new IllegalArgumentException();
+			if ( numKeys == keys.length )
+				keys = Arrays.copyOf( keys, 2 * numKeys );
+			keys[ numKeys++ ] = keyCode;
+			++numKeyTokens;
+			lastIsKey = true;
+		}
+
+		KeySet keys()
+		{
+			return numKeys == 0 ? KeySet.EMPTY : KeySet.of( Arrays.copyOf( keys, numKeys ) );
+		}
+
+		/**
+		 * Get the {@link KeyStroke} for this part, like
+		 * {@link KeyStroke#getKeyStroke(String)}, or {@code null} if the part
+		 * is not a valid {@code KeyStroke} definition.
+		 */
+		KeyStroke keyStroke()
+		{
+			if ( hasEventType )
+				// rare, leave the details to AWT
+				return KeyStroke.getKeyStroke( s.substring( from, to ) );
+			if ( hasNonKeyStrokeModifier || numKeyTokens != 1 || !lastIsKey )
+				return null;
+			return KeyStroke.getKeyStroke( keys[ 0 ], mask );
+		}
+	}
+
+	/**
+	 * Key codes by name. The names are those of the {@code VK_} constants in
+	 * {@link KeyEvent} without the prefix, as understood by
+	 * {@link KeyStroke#getKeyStroke(String)}.
+	 */
+	static final class KeyCodes
+	{
+		private static final Map< String, Integer > codes;
+
+		static
+		{
+			final Map< String, Integer > map = new HashMap<>();
+			for ( final Field field : KeyEvent.class.getFields() )
+			{
+				final int modifiers = field.getModifiers();
+				if ( field.getName().startsWith( "VK_" ) && field.getType() == int.class
+						&& Modifier.isStatic( modifiers ) && Modifier.isFinal( modifiers ) )
 				{
-					final KeyStroke ks = KeyStroke.getKeyStroke( token );
-					if ( ks == null || ks.getKeyCode() == 0 )
-						throw new IllegalArgumentException();
-					pressedKeys.add( ks.getKeyCode() );
+					try
+					{
+						map.put( field.getName().substring( 3 ), field.getInt( null ) );
+					}
+					catch ( final IllegalAccessException e )
+					{
+						// public, cannot happen
+					}
 				}
 			}
+			codes = Collections.unmodifiableMap( map );
 		}
 
-		return new MaskAndKeys( mask, pressedKeys );
+		/**
+		 * Get the key code for {@code name}, or 0 if there is no such key.
+		 */
+		static int get( final String name )
+		{
+			final Integer code = codes.get( name );
+			return code == null ? 0 : code;
+		}
 	}
 
 	private InputTrigger(
 			final int mask,
-			final TIntSet pressedKeys,
+			final KeySet pressedKeys,
 			final KeyStroke keyStroke,
 			final boolean ignoreAll,
 			final int ignoreMask,
-			final TIntSet ignoreKeys )
+			final KeySet ignoreKeys )
 	{
 		this.mask = mask;
 		this.pressedKeys = pressedKeys;
@@ -276,15 +408,7 @@ public class InputTrigger
 
 		// TODO add flag that says: nothing is ignored and then only do the default check in matches()
 
-		if ( ignoreAll )
-		{
-			effectiveIgnoreKeys = null;
-		}
-		else
-		{
-			effectiveIgnoreKeys = new TIntHashSet( ignoreKeys );
-			effectiveIgnoreKeys.removeAll( pressedKeys );
-		}
+		effectiveIgnoreKeys = ignoreAll ? null : ignoreKeys.minus( pressedKeys );
 
 		int value = 17;
 		value = 31 * value + mask;
@@ -333,6 +457,12 @@ public class InputTrigger
 		return mask;
 	}
 
+	/**
+	 * Get the keys (other than modifiers) that must be pressed for this
+	 * trigger. The returned collection is read-only.
+	 *
+	 * @return pressed keys of this trigger.
+	 */
 	public TIntCollection getPressedKeys()
 	{
 		return pressedKeys;
@@ -343,6 +473,16 @@ public class InputTrigger
 		return ( mask & ( BUTTON1_DOWN_MASK |  BUTTON2_DOWN_MASK | BUTTON3_DOWN_MASK | SCROLL_MASK ) ) == 0;
 	}
 
+	/**
+	 * Whether this trigger ignores no additional modifiers or keys, that is,
+	 * it matches only the exact combination of {@link #getMask() mask} and
+	 * {@link #getPressedKeys() pressed keys}.
+	 */
+	boolean ignoreNone()
+	{
+		return ignoreNone;
+	}
+
 	public boolean isKeyStroke()
 	{
 		return keyStroke != null;
@@ -353,12 +493,19 @@ public class InputTrigger
 		return keyStroke;
 	}
 
+	/**
+	 * Check whether this trigger matches the given modifier {@code mask} and
+	 * set of pressed {@code keys}, taking into account ignored modifiers and
+	 * keys. If {@code keys} is a {@link KeySet}, this reduces to bitwise
+	 * comparisons. This does not allocate.
+	 *
+	 * @param mask
+	 *            current modifier mask.
+	 * @param keys
+	 *            currently pressed keys.
+	 * @return {@code true} if this trigger matches.
+	 */
 	public boolean matches( final int mask, final TIntSet keys )
-	{
-		return matches( mask, keys, new TIntHashSet() );
-	}
-
-	public boolean matches( final int mask, final TIntSet keys, final TIntSet tmp )
 	{
 		// C = currently pressed keys
 		// T = trigger keys (expected to be pressed)
@@ -376,7 +523,7 @@ public class InputTrigger
 			if ( this.mask != mask )
 				return false;
 			else
-				return keys.equals( pressedKeys );
+				return pressedKeys.equals( keys );
 		}
 		if ( ignoreAll )
 		{
@@ -387,22 +534,33 @@ public class InputTrigger
 			if ( this.mask != ( mask & ( ~this.ignoreMask | this.mask ) ) )
 				return false;
 			else
-			{
-				final TIntSet effectiveKeys = tmp;
-				effectiveKeys.clear();
-				effectiveKeys.addAll( keys );
-				effectiveKeys.removeAll( effectiveIgnoreKeys );
-				return pressedKeys.equals( effectiveKeys );
-			}
+				return pressedKeys.equalsDifference( keys, effectiveIgnoreKeys );
 		}
 	}
 
-	public boolean matchesSubset( final int mask, final TIntSet keys )
+	/**
+	 * @deprecated {@code tmp} is not needed anymore. Use
+	 *             {@link #matches(int, TIntSet)}.
+	 */
+	@Deprecated
+	public boolean matches( final int mask, final TIntSet keys, final TIntSet tmp )
 	{
-		return matchesSubset( mask, keys, new TIntHashSet() );
+		return matches( mask, keys );
 	}
 
-	public boolean matchesSubset( final int mask, final TIntSet keys, final TIntSet tmp )
+	/**
+	 * Check whether the modifiers and keys of this trigger are a subset of the
+	 * given modifier {@code mask} and set of pressed {@code keys}. This does
+	 * not allocate.
+	 *
+	 * @param mask
+	 *            current modifier mask.
+	 * @param keys
+	 *            currently pressed keys.
+	 * @return {@code true} if all modifiers and keys of this trigger are
+	 *         present.
+	 */
+	public boolean matchesSubset( final int mask, final TIntSet keys )
 	{
 		// C = currently pressed keys
 		// T = trigger keys (expected to be pressed)
@@ -415,13 +573,17 @@ public class InputTrigger
 		if ( this.mask != ( mask & this.mask ) )
 			return false;
 		else
-		{
-			final TIntSet effectiveKeys = tmp;
-			effectiveKeys.clear();
-			effectiveKeys.addAll( keys );
-			effectiveKeys.retainAll( pressedKeys );
-			return pressedKeys.equals( effectiveKeys );
-		}
+			return pressedKeys.isSubsetOf( keys );
+	}
+
+	/**
+	 * @deprecated {@code tmp} is not needed anymore. Use
+	 *             {@link #matchesSubset(int, TIntSet)}.
+	 */
+	@Deprecated
+	public boolean matchesSubset( final int mask, final TIntSet keys, final TIntSet tmp )
+	{
+		return matchesSubset( mask, keys );
 	}
 
 	@Override
@@ -521,57 +683,98 @@ public class InputTrigger
 	 * Caching
 	 */
 
-	private static Map< String, Integer > modifierKeywords;
+	private static final Map< String, Integer > MODIFIER_KEYWORDS;
 
-    private synchronized static Map<String, Integer> getModifierKeywords()
-    {
-		if ( modifierKeywords == null )
+	static
+	{
+		final Map< String, Integer > map = new HashMap<>( 16 );
+		map.put( "shift", SHIFT_DOWN_MASK );
+		map.put( "control", CTRL_DOWN_MASK );
+		map.put( "ctrl", CTRL_DOWN_MASK );
+		map.put( "meta", META_DOWN_MASK );
+		map.put( "alt", ALT_DOWN_MASK );
+		map.put( "altGraph", ALT_GRAPH_DOWN_MASK );
+		map.put( "button1", BUTTON1_DOWN_MASK );
+		map.put( "button2", BUTTON2_DOWN_MASK );
+		map.put( "button3", BUTTON3_DOWN_MASK );
+		map.put( DOUBLE_CLICK_TEXT, DOUBLE_CLICK_MASK );
+		map.put( SCROLL_TEXT, SCROLL_MASK );
+		map.put( WINDOWS_TEXT, WIN_DOWN_MASK );
+		MODIFIER_KEYWORDS = Collections.unmodifiableMap( map );
+	}
+
+	/**
+	 * Canonical instances of all {@link InputTrigger}s that are currently
+	 * reachable. Keys and values are the same {@link PoolKey}.
+	 */
+	private static final ConcurrentHashMap< PoolKey, PoolKey > pool = new ConcurrentHashMap<>();
+
+	/**
+	 * {@link PoolKey}s of garbage-collected triggers, to be removed from
+	 * {@link #pool}.
+	 */
+	private static final ReferenceQueue< InputTrigger > poolQueue = new ReferenceQueue<>();
+
+	/**
+	 * Weakly references an {@link InputTrigger} in the {@link #pool}. Two keys
+	 * are equal if they are the same, or if their triggers are equal. A
+	 * cleared key is only equal to itself.
+	 */
+	private static final class PoolKey extends WeakReference< InputTrigger >
+	{
+		private final int hashcode;
+
+		PoolKey( final InputTrigger trigger, final ReferenceQueue< InputTrigger > queue )
 		{
-			final Map< String, Integer > uninitializedMap = new HashMap<>( 8, 1.0f );
-			uninitializedMap.put( "shift",
-					SHIFT_DOWN_MASK );
-			uninitializedMap.put( "control",
-					CTRL_DOWN_MASK );
-			uninitializedMap.put( "ctrl",
-					CTRL_DOWN_MASK );
-			uninitializedMap.put( "meta",
-					META_DOWN_MASK );
-			uninitializedMap.put( "alt",
-					ALT_DOWN_MASK );
-			uninitializedMap.put( "altGraph",
-					ALT_GRAPH_DOWN_MASK );
-			uninitializedMap.put( "button1",
-					BUTTON1_DOWN_MASK );
-			uninitializedMap.put( "button2",
-					BUTTON2_DOWN_MASK );
-			uninitializedMap.put( "button3",
-					BUTTON3_DOWN_MASK );
-			uninitializedMap.put( DOUBLE_CLICK_TEXT,
-					DOUBLE_CLICK_MASK );
-			uninitializedMap.put( SCROLL_TEXT,
-					SCROLL_MASK );
-			uninitializedMap.put( WINDOWS_TEXT,
-					WIN_DOWN_MASK );
-			modifierKeywords =
-					Collections.synchronizedMap( uninitializedMap );
+			super( trigger, queue );
+			hashcode = trigger.hashCode();
 		}
-		return modifierKeywords;
-    }
 
-	private static Map< InputTrigger, InputTrigger > cache;
+		@Override
+		public int hashCode()
+		{
+			return hashcode;
+		}
 
-	private synchronized static InputTrigger getCached( final InputTrigger buttonsAndKeys )
+		@Override
+		public boolean equals( final Object obj )
+		{
+			if ( obj == this )
+				return true;
+			if ( !( obj instanceof PoolKey ) )
+				return false;
+			final InputTrigger trigger = get();
+			return trigger != null && trigger.equals( ( ( PoolKey ) obj ).get() );
+		}
+	}
+
+	/**
+	 * Get the canonical instance of {@code buttonsAndKeys}: the first instance
+	 * equal to {@code buttonsAndKeys} that is still reachable, or
+	 * {@code buttonsAndKeys} itself.
+	 */
+	private static InputTrigger getCached( final InputTrigger buttonsAndKeys )
 	{
-		if ( cache == null )
-			cache = new HashMap<>();
+		Reference< ? extends InputTrigger > cleared;
+		while ( ( cleared = poolQueue.poll() ) != null )
+			pool.remove( cleared, cleared );
 
-		final InputTrigger b = cache.get( buttonsAndKeys );
-		if ( b == null )
+		final PoolKey key = new PoolKey( buttonsAndKeys, poolQueue );
+		while ( true )
 		{
-			cache.put( buttonsAndKeys, buttonsAndKeys );
-			return buttonsAndKeys;
+			final PoolKey existing = pool.putIfAbsent( key, key );
+			if ( existing == null )
+				return buttonsAndKeys;
+
+			final InputTrigger b = existing.get();
+			if ( b != null )
+			{
+				key.clear();
+				return b;
+			}
+
+			// garbage-collected, but not yet removed
+			pool.remove( existing, existing );
 		}
-		else
-			return b;
 	}
 }
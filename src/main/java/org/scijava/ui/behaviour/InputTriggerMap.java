@@ -29,11 +29,15 @@
  */
 package org.scijava.ui.behaviour;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.WeakHashMap;
 
 import javax.swing.InputMap;
 
@@ -46,34 +50,94 @@ import javax.swing.InputMap;
  * <p>
  * In contrast to {@code InputMap}, one {@link InputTrigger} can map to multiple
  * {@link Behaviour} keys.
+ * <p>
+ * Reading bindings does not lock. Modifications are serialized, and publish a
+ * new copy of the bindings, so readers always see a consistent state.
+ * Several modifications can be published at once with {@link #beginBatch()}
+ * and {@link #commit()}.
+ * <p>
+ * The copies share most of their structure, so a modification costs
+ * {@code O(log n)} for {@code n} bindings, and adding {@code n} bindings one
+ * by one costs {@code O(n log n)}.
+ * <p>
+ * A {@code null} trigger or behaviour key is never bound.
+ * {@code get(null)} returns the bindings of the parent, and {@code put} and
+ * {@code removeAll} with {@code null} arguments leave the bindings unchanged.
+ * Like every other modification, they increment the {@link #modCount()}.
  *
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
  */
 public class InputTriggerMap
 {
 	/**
-	 * Maps {@link InputTrigger} to a set of {@link Behaviour} keys.
+	 * The current bindings. Published states are never modified. Writers
+	 * (synchronized on this map) modify a copy, and then replace the state,
+	 * so that readers never block and always see a consistent state.
+	 */
+	private volatile State state;
+
+	/**
+	 * The thread that has a batch open (see {@link #beginBatch()}), or
+	 * {@code null}. Other writers wait until the batch is committed. Readers
+	 * check it to see the unpublished {@link #batchState} of their own batch.
 	 */
-	private final Map< InputTrigger, Set< String > > triggerToKeys;
+	private volatile Thread batchOwner;
+
+	/**
+	 * Nesting depth of {@link #beginBatch()}.
+	 */
+	private int batchDepth;
+
+	/**
+	 * Modified copy of {@link #state} that is not published yet, or
+	 * {@code null}. Only accessed by the thread that holds the monitor of this
+	 * map, or by the {@link #batchOwner}.
+	 */
+	private State batchState;
+
+	/**
+	 * Changes in {@link #batchState} that are not published yet.
+	 */
+	private final ArrayList< Change > batchChanges = new ArrayList<>();
 
 	/**
 	 * Parent that handles any bindings we don't contain.
 	 */
-	private InputTriggerMap parent;
+	private volatile InputTriggerMap parent;
+
+	/**
+	 * Maps that depend on this one, i.e., children (see
+	 * {@link #setParent(InputTriggerMap)}) and maps registered with
+	 * {@link #trackModifications(InputTriggerMap)} or
+	 * {@link #trackLocalModifications(InputTriggerMap)}, and how they depend
+	 * on it. Modifications of this map are pushed to them. Weakly referenced,
+	 * so that discarded children can be garbage-collected.
+	 */
+	private final Map< InputTriggerMap, Dependency > dependents = new WeakHashMap<>();
+
+	private enum Dependency
+	{
+		CHILD, TRACKER, LOCAL_TRACKER
+	}
 
-	private int expectedParentModCount;
+	/**
+	 * Modification count and log of recent changes of this map and the maps it
+	 * depends on.
+	 */
+	private final ChangeLog< Change > changes = new ChangeLog<>();
 
-	private int modCount;
+	/**
+	 * Cached result of {@link #getAllBindingsSnapshot()}, or {@code null}.
+	 */
+	private volatile AllBindings allBindings;
 
 	/**
 	 * Creates an {@link InputTriggerMap} with no parent and no mappings.
 	 */
 	public InputTriggerMap()
 	{
-		triggerToKeys = new HashMap<>();
+		state = new State();
 		parent = null;
-		expectedParentModCount = 0;
-		modCount = 0;
 	}
 
 	/**
@@ -82,12 +146,15 @@ public class InputTriggerMap
 	 * @param map
 	 *            the map that is the parent of this one
 	 */
-	public void setParent( final InputTriggerMap map )
+	public synchronized void setParent( final InputTriggerMap map )
 	{
+		if ( parent != null )
+			parent.removeDependent( this );
 		this.parent = map;
 		if ( map != null )
-			expectedParentModCount = parent.modCount();
-		++modCount;
+			map.addDependent( this, Dependency.CHILD );
+		// the local bindings of this map are unchanged
+		modified( Collections.singletonList( null ), false );
 	}
 
 	/**
@@ -109,33 +176,73 @@ public class InputTriggerMap
 	 */
 	public synchronized void put( final InputTrigger inputTrigger, final String behaviourKey )
 	{
-		Set< String > behaviourKeys = triggerToKeys.get( inputTrigger );
-		if ( behaviourKeys == null )
+		awaitBatch();
+		if ( inputTrigger == null || behaviourKey == null )
 		{
-			behaviourKeys = new HashSet<>();
-			triggerToKeys.put( inputTrigger, behaviourKeys );
+			changed( null );
+			return;
 		}
-
-		behaviourKeys.add( behaviourKey );
-		++modCount;
+		if ( !current().triggerToKeys.getOrDefault( inputTrigger, Collections.emptySet() ).contains( behaviourKey ) )
+			edit().put( inputTrigger, behaviourKey );
+		changed( new Change( inputTrigger, behaviourKey ) );
 	}
 
 	/**
 	 * Get the set of all bindings for {@code inputTrigger} defined in this map
 	 * and its parents.
+	 * <p>
+	 * The returned set is unmodifiable and does not reflect later changes. It
+	 * is not copied, unless bindings for {@code inputTrigger} are defined at
+	 * several levels of the parent chain.
 	 *
 	 * @param inputTrigger
 	 * @return bindings for {@code inputTrigger}.
 	 */
-	public synchronized Set< String > get( final InputTrigger inputTrigger )
+	public Set< String > get( final InputTrigger inputTrigger )
 	{
-		Set< String > keys = null;
-		if ( parent != null )
-			keys = parent.get( inputTrigger );
-		else
-			keys = new HashSet<>();
-		keys.addAll( triggerToKeys.get( inputTrigger ) );
-		return keys;
+		final Set< String > localKeys = getLocalKeys( inputTrigger );
+		final InputTriggerMap parent = this.parent;
+		return parent == null ? localKeys : union( parent.get( inputTrigger ), localKeys );
+	}
+
+	/**
+	 * Get the set of all {@link InputTrigger}s bound to {@code behaviourKey} in
+	 * this map and its parents.
+	 * <p>
+	 * The returned set is unmodifiable and does not reflect later changes. It
+	 * is not copied, unless {@code behaviourKey} is bound at several levels of
+	 * the parent chain.
+	 *
+	 * @param behaviourKey
+	 * @return triggers bound to {@code behaviourKey}.
+	 */
+	public Set< InputTrigger > getTriggers( final String behaviourKey )
+	{
+		final Set< InputTrigger > localTriggers = getLocalTriggers( behaviourKey );
+		final InputTriggerMap parent = this.parent;
+		return parent == null ? localTriggers : union( parent.getTriggers( behaviourKey ), localTriggers );
+	}
+
+	/**
+	 * Get the {@link Behaviour} keys that this map binds to
+	 * {@code inputTrigger}, in addition to the bindings of its parent.
+	 *
+	 * @return unmodifiable set of behaviour keys.
+	 */
+	protected Set< String > getLocalKeys( final InputTrigger inputTrigger )
+	{
+		return readState().triggerToKeys.getOrDefault( inputTrigger, Collections.emptySet() );
+	}
+
+	/**
+	 * Get the {@link InputTrigger}s that this map binds to
+	 * {@code behaviourKey}, in addition to the bindings of its parent.
+	 *
+	 * @return unmodifiable set of triggers.
+	 */
+	protected Set< InputTrigger > getLocalTriggers( final String behaviourKey )
+	{
+		return readState().keyToTriggers.getOrDefault( behaviourKey, Collections.emptySet() );
 	}
 
 	/**
@@ -146,15 +253,14 @@ public class InputTriggerMap
 	 */
 	public synchronized void remove( final InputTrigger inputTrigger, final String behaviourKey )
 	{
-		final Set< String > behaviourKeys = triggerToKeys.get( inputTrigger );
+		awaitBatch();
+		final Set< String > behaviourKeys = current().triggerToKeys.get( inputTrigger );
 		if ( behaviourKeys == null )
 			return;
 
-		behaviourKeys.remove( behaviourKey );
-
-		if ( behaviourKeys.isEmpty() )
-			triggerToKeys.remove( behaviourKeys );
-		++modCount;
+		if ( behaviourKeys.contains( behaviourKey ) )
+			edit().remove( inputTrigger, behaviourKey );
+		changed( new Change( inputTrigger, behaviourKey ) );
 	}
 
 	/**
@@ -163,8 +269,15 @@ public class InputTriggerMap
 	 */
 	public synchronized void removeAll( final InputTrigger inputTrigger )
 	{
-		triggerToKeys.remove( inputTrigger );
-		++modCount;
+		awaitBatch();
+		if ( inputTrigger == null )
+		{
+			changed( null );
+			return;
+		}
+		if ( current().triggerToKeys.containsKey( inputTrigger ) )
+			edit().removeAll( inputTrigger );
+		changed( new Change( inputTrigger, null ) );
 	}
 
 	/**
@@ -172,8 +285,161 @@ public class InputTriggerMap
 	 */
 	public synchronized void clear()
 	{
-		triggerToKeys.clear();
-		++modCount;
+		awaitBatch();
+		batchState = new State();
+		changed( null );
+	}
+
+	/**
+	 * Start a batch of modifications. Modifications until the matching
+	 * {@link #commit()} are not visible to other threads. They are published
+	 * together, with a single increment of {@link #modCount()}. Batches can be
+	 * nested. Only the outermost {@code commit()} publishes.
+	 * <p>
+	 * A batch belongs to the thread that started it. This thread reads its own
+	 * unpublished modifications. Other threads that modify the map, or start a
+	 * batch, wait until the batch is committed. So a batch must always be
+	 * committed, otherwise other writers block forever:
+	 * <p>
+	 * Use as
+	 *
+	 * <pre>
+	 * map.beginBatch();
+	 * try
+	 * {
+	 * 	...
+	 * }
+	 * finally
+	 * {
+	 * 	map.commit();
+	 * }
+	 * </pre>
+	 * <p>
+	 * To batch this map together with a {@link BehaviourMap}, start the batch
+	 * of the {@code InputTriggerMap} first and commit it last (as
+	 * {@link org.scijava.ui.behaviour.util.Behaviours#beginBatch()} does).
+	 * Threads that open the two batches in different orders can deadlock, each
+	 * waiting for the batch held by the other.
+	 */
+	public synchronized void beginBatch()
+	{
+		awaitBatch();
+		if ( batchDepth++ == 0 )
+		{
+			batchOwner = Thread.currentThread();
+			++ThreadBatchState.current().openBatches;
+		}
+	}
+
+	/**
+	 * End a batch of modifications started with {@link #beginBatch()}. If this
+	 * ends the outermost batch, all modifications made during the batch are
+	 * published.
+	 *
+	 * @throws IllegalStateException
+	 *             if the current thread has no batch to commit.
+	 */
+	public synchronized void commit()
+	{
+		if ( batchOwner != Thread.currentThread() )
+			throw new IllegalStateException( "commit() without beginBatch()" );
+		if ( --batchDepth == 0 )
+		{
+			try
+			{
+				publish();
+			}
+			finally
+			{
+				batchOwner = null;
+				--ThreadBatchState.current().openBatches;
+				notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Wait until no other thread has a batch open. Must be called while
+	 * holding the monitor of this map.
+	 */
+	private void awaitBatch()
+	{
+		final Thread self = Thread.currentThread();
+		boolean interrupted = false;
+		while ( batchOwner != null && batchOwner != self )
+		{
+			try
+			{
+				wait();
+			}
+			catch ( final InterruptedException e )
+			{
+				interrupted = true;
+			}
+		}
+		if ( interrupted )
+			self.interrupt();
+	}
+
+	/**
+	 * Get the state that the current thread reads. This is the published
+	 * state, or the unpublished {@link #batchState} if the current thread has
+	 * a batch open (and does not read
+	 * {@link ThreadBatchState#publishedOnly published bindings only}).
+	 */
+	private State readState()
+	{
+		if ( batchOwner == Thread.currentThread() && ThreadBatchState.current().publishedOnly == 0 )
+		{
+			final State s = batchState;
+			if ( s != null )
+				return s;
+		}
+		return state;
+	}
+
+	/**
+	 * Get the current state including unpublished modifications.
+	 */
+	private State current()
+	{
+		return batchState != null ? batchState : state;
+	}
+
+	/**
+	 * Get a modifiable copy of the current state. Copying is cheap, because
+	 * the copy shares the persistent maps of the current state.
+	 */
+	private State edit()
+	{
+		if ( batchState == null )
+			batchState = new State( state );
+		return batchState;
+	}
+
+	/**
+	 * Record {@code change}, and publish it unless in a batch. A {@code null}
+	 * change is unspecified.
+	 */
+	private void changed( final Change change )
+	{
+		batchChanges.add( change );
+		if ( batchDepth == 0 )
+			publish();
+	}
+
+	private void publish()
+	{
+		if ( batchState != null )
+		{
+			state = batchState;
+			batchState = null;
+		}
+		if ( !batchChanges.isEmpty() )
+		{
+			modified( batchChanges, true );
+			batchChanges.clear();
+		}
 	}
 
 	/**
@@ -183,21 +449,151 @@ public class InputTriggerMap
 	 * <p>
 	 * This differs from {@code getBindings()} in that this method includes the
 	 * bindings defined in the parent.
+	 * <p>
+	 * The returned map is a new copy that the caller may modify. Use
+	 * {@link #getAllBindingsSnapshot()} to avoid copying.
+	 * <p>
+	 * A thread that has a batch open (see {@link #beginBatch()}) sees its own
+	 * unpublished modifications.
 	 *
 	 * @return all bindings (trigger to set of behaviour keys) defined in this
 	 *         map and its parents.
 	 */
-	public synchronized Map< InputTrigger, Set< String > > getAllBindings()
+	public Map< InputTrigger, Set< String > > getAllBindings()
 	{
-		final Map< InputTrigger, Set< String > > allBindings;
-		if ( parent != null )
-			allBindings = parent.getAllBindings();
-		else
-			allBindings = new HashMap<>();
+		final Map< InputTrigger, Set< String > > snapshot = getAllBindingsSnapshot();
+		final Map< InputTrigger, Set< String > > bindings = new HashMap<>( snapshot.size() * 2 );
+		for ( final Entry< InputTrigger, Set< String > > entry : snapshot.entrySet() )
+			bindings.put( entry.getKey(), new HashSet<>( entry.getValue() ) );
+		return bindings;
+	}
+
+	/**
+	 * Get all bindings defined in this map and its parents, like
+	 * {@link #getAllBindings()}, as an unmodifiable snapshot. The map and its
+	 * sets of behaviour keys cannot be modified. The snapshot is cached, and
+	 * returned again to subsequent callers until the {@link #modCount()} of
+	 * this map changes.
+	 *
+	 * @return all bindings (trigger to set of behaviour keys) defined in this
+	 *         map and its parents.
+	 */
+	public Map< InputTrigger, Set< String > > getAllBindingsSnapshot()
+	{
+		// a thread with open batches may see unpublished bindings, which are
+		// neither taken from nor put into the cache
+		final boolean inBatch = ThreadBatchState.current().readsUnpublished();
+		final AllBindings cached = allBindings;
+		final int modCount = modCount();
+		if ( !inBatch && cached != null && cached.modCount == modCount )
+			return cached.bindings;
+
+		final InputTriggerMap parent = getParent();
+		final Map< InputTrigger, Set< String > > bindings = parent == null
+				? new HashMap<>()
+				: new HashMap<>( parent.getAllBindingsSnapshot() );
+		for ( final Entry< InputTrigger, Set< String > > entry : getLocalBindings().entrySet() )
+		{
+			if ( entry.getValue() == null || entry.getValue().isEmpty() )
+				continue;
+			final Set< String > behaviourKeys = new HashSet<>( entry.getValue() );
+			final Set< String > parentKeys = bindings.get( entry.getKey() );
+			if ( parentKeys != null )
+				behaviourKeys.addAll( parentKeys );
+			bindings.put( entry.getKey(), Collections.unmodifiableSet( behaviourKeys ) );
+		}
+		final Map< InputTrigger, Set< String > > snapshot = Collections.unmodifiableMap( bindings );
+		if ( !inBatch )
+			allBindings = new AllBindings( modCount, snapshot );
+		return snapshot;
+	}
+
+	/**
+	 * Get the bindings that this map adds to the bindings of its parent (used
+	 * by {@link #getAllBindingsSnapshot()}).
+	 *
+	 * @return unmodifiable bindings (trigger to set of behaviour keys) defined
+	 *         in this map.
+	 */
+	protected Map< InputTrigger, Set< String > > getLocalBindings()
+	{
+		return Collections.unmodifiableMap( readState().triggerToKeys );
+	}
+
+	/**
+	 * Get the map that handlers dispatch events from, when this map is their
+	 * input map. This is usually this map itself. A map that switches between
+	 * different sets of bindings (see
+	 * {@link org.scijava.ui.behaviour.util.TriggerBehaviourBindings#setMode(String)})
+	 * returns the map of the current set. Handlers keep a dispatch table for
+	 * each such map, so that switching back and forth does not require
+	 * rebuilding.
+	 *
+	 * @return the map to dispatch from.
+	 */
+	public InputTriggerMap getDispatchMap()
+	{
+		return this;
+	}
+
+	/**
+	 * Check whether {@code map} is, or can become again,
+	 * {@link #getDispatchMap() the map to dispatch from}. Handlers drop the
+	 * dispatch tables they keep for maps for which this is {@code false}.
+	 *
+	 * @param map
+	 *            a previous dispatch map of this map.
+	 * @return whether {@code map} can be the dispatch map of this map.
+	 */
+	public boolean isDispatchMap( final InputTriggerMap map )
+	{
+		return map == this;
+	}
+
+	/**
+	 * Get {@link #getLocalKeys(InputTrigger)} of {@code map}. For subclasses
+	 * that present the bindings of another map.
+	 */
+	protected static Set< String > localKeysOf( final InputTriggerMap map, final InputTrigger inputTrigger )
+	{
+		return map.getLocalKeys( inputTrigger );
+	}
+
+	/**
+	 * Get {@link #getLocalTriggers(String)} of {@code map}. For subclasses
+	 * that present the bindings of another map.
+	 */
+	protected static Set< InputTrigger > localTriggersOf( final InputTriggerMap map, final String behaviourKey )
+	{
+		return map.getLocalTriggers( behaviourKey );
+	}
+
+	/**
+	 * Get {@link #getLocalBindings()} of {@code map}. For subclasses that
+	 * present the bindings of another map.
+	 */
+	protected static Map< InputTrigger, Set< String > > localBindingsOf( final InputTriggerMap map )
+	{
+		return map.getLocalBindings();
+	}
+
+	/**
+	 * Cached result of {@link #getAllBindingsSnapshot()}.
+	 */
+	private static final class AllBindings
+	{
+		/**
+		 * The {@link #modCount()} for which {@link #bindings} was computed.
+		 */
+		final int modCount;
 
-		addBindings( allBindings );
+		final Map< InputTrigger, Set< String > > bindings;
 
-		return allBindings;
+		AllBindings( final int modCount, final Map< InputTrigger, Set< String > > bindings )
+		{
+			this.modCount = modCount;
+			this.bindings = bindings;
+		}
 	}
 
 	/**
@@ -208,7 +604,7 @@ public class InputTriggerMap
 	 * @return all bindings (trigger to set of behaviour keys) defined in this
 	 *         map.
 	 */
-	public synchronized Map< InputTrigger, Set< String > > getBindings()
+	public Map< InputTrigger, Set< String > > getBindings()
 	{
 		final Map< InputTrigger, Set< String > > bindings = new HashMap<>();
 		addBindings( bindings );
@@ -217,7 +613,7 @@ public class InputTriggerMap
 
 	private void addBindings( final Map< InputTrigger, Set< String > > bindings )
 	{
-		for ( final Entry< InputTrigger, Set< String > > entry : triggerToKeys.entrySet() )
+		for ( final Entry< InputTrigger, Set< String > > entry : readState().triggerToKeys.entrySet() )
 		{
 			final InputTrigger inputTrigger = entry.getKey();
 			if ( entry.getValue() == null || entry.getValue().isEmpty() )
@@ -233,17 +629,299 @@ public class InputTriggerMap
 		}
 	}
 
+	/**
+	 * The bindings of an {@link InputTriggerMap}, in both directions. The maps
+	 * are persistent, and the sets are unmodifiable. Both are replaced when
+	 * bindings change, so a copy of a {@code State} can share them.
+	 */
+	private static final class State
+	{
+		/**
+		 * Maps {@link InputTrigger} to a set of {@link Behaviour} keys.
+		 */
+		PersistentMap< InputTrigger, Set< String > > triggerToKeys;
+
+		/**
+		 * Maps {@link Behaviour} keys to the set of {@link InputTrigger}s
+		 * bound to them. Reverse of {@link #triggerToKeys}.
+		 */
+		PersistentMap< String, Set< InputTrigger > > keyToTriggers;
+
+		State()
+		{
+			triggerToKeys = PersistentMap.empty();
+			keyToTriggers = PersistentMap.empty();
+		}
+
+		State( final State state )
+		{
+			triggerToKeys = state.triggerToKeys;
+			keyToTriggers = state.keyToTriggers;
+		}
+
+		void put( final InputTrigger inputTrigger, final String behaviourKey )
+		{
+			final Set< String > behaviourKeys = triggerToKeys.getOrDefault( inputTrigger, Collections.emptySet() );
+			if ( !behaviourKeys.contains( behaviourKey ) )
+			{
+				triggerToKeys = triggerToKeys.plus( inputTrigger, with( behaviourKeys, behaviourKey ) );
+				keyToTriggers = keyToTriggers.plus( behaviourKey, with( keyToTriggers.getOrDefault( behaviourKey, Collections.emptySet() ), inputTrigger ) );
+			}
+		}
+
+		void remove( final InputTrigger inputTrigger, final String behaviourKey )
+		{
+			final Set< String > behaviourKeys = triggerToKeys.get( inputTrigger );
+			if ( behaviourKeys != null && behaviourKeys.contains( behaviourKey ) )
+			{
+				triggerToKeys = putOrRemove( triggerToKeys, inputTrigger, without( behaviourKeys, behaviourKey ) );
+				keyToTriggers = putOrRemove( keyToTriggers, behaviourKey, without( keyToTriggers.get( behaviourKey ), inputTrigger ) );
+			}
+		}
+
+		void removeAll( final InputTrigger inputTrigger )
+		{
+			final Set< String > behaviourKeys = triggerToKeys.get( inputTrigger );
+			if ( behaviourKeys != null )
+			{
+				triggerToKeys = triggerToKeys.minus( inputTrigger );
+				for ( final String behaviourKey : behaviourKeys )
+					keyToTriggers = putOrRemove( keyToTriggers, behaviourKey, without( keyToTriggers.get( behaviourKey ), inputTrigger ) );
+			}
+		}
+	}
+
+	/**
+	 * Get an unmodifiable set containing the elements of {@code set} and
+	 * {@code element}.
+	 */
+	private static < T > Set< T > with( final Set< T > set, final T element )
+	{
+		if ( set.isEmpty() )
+			return Collections.singleton( element );
+		final Set< T > s = new HashSet<>( set );
+		s.add( element );
+		return Collections.unmodifiableSet( s );
+	}
+
+	/**
+	 * Get an unmodifiable set containing the elements of {@code set} except
+	 * {@code element}, or {@code null} if that is empty.
+	 */
+	private static < T > Set< T > without( final Set< T > set, final T element )
+	{
+		if ( set.size() <= 1 )
+			return null;
+		final Set< T > s = new HashSet<>( set );
+		s.remove( element );
+		return Collections.unmodifiableSet( s );
+	}
+
+	private static < K, V > PersistentMap< K, V > putOrRemove( final PersistentMap< K, V > map, final K key, final V value )
+	{
+		return value == null ? map.minus( key ) : map.plus( key, value );
+	}
+
+	/**
+	 * Get the union of the unmodifiable sets {@code a} and {@code b}. Returns
+	 * one of them if the other is empty.
+	 */
+	private static < T > Set< T > union( final Set< T > a, final Set< T > b )
+	{
+		if ( b.isEmpty() )
+			return a;
+		if ( a.isEmpty() )
+			return b;
+		final Set< T > s = new HashSet<>( a );
+		s.addAll( b );
+		return Collections.unmodifiableSet( s );
+	}
+
+	/**
+	 * Get the modification count of this map. The count changes whenever this
+	 * map, any of its parents, or any map registered with
+	 * {@link #trackModifications(InputTriggerMap)} is modified. Modifications
+	 * are pushed from parents to children, so this is a single volatile read,
+	 * independent of the depth of the parent chain.
+	 *
+	 * @return the modification count.
+	 */
 	public int modCount()
 	{
-		if ( parent != null )
+		return changes.version();
+	}
+
+	/**
+	 * Get the bindings that changed since the map had modification count
+	 * {@code modCount}. This includes changes of the parents and tracked maps.
+	 * A {@link Change} only says which binding was touched, the current state
+	 * of the binding must be queried with {@link #get(InputTrigger)}.
+	 * <p>
+	 * Only a limited number of recent changes is kept. Re-parenting and
+	 * {@link #clear()} are not recorded as individual changes and invalidate
+	 * all earlier changes.
+	 *
+	 * @param modCount
+	 *            a previous {@link #modCount()} of this map.
+	 * @param changes
+	 *            changes since {@code modCount} are appended to this
+	 *            collection, oldest first.
+	 * @return {@code true} if successful, or {@code false} if the changes since
+	 *         {@code modCount} are not known. In that case nothing is
+	 *         appended to {@code changes}, and the consumer must re-read all
+	 *         bindings.
+	 */
+	public boolean getChangesSince( final int modCount, final Collection< ? super Change > changes )
+	{
+		return this.changes.changesSince( modCount, changes );
+	}
+
+	/**
+	 * A modification of the bindings of an {@link InputTriggerMap}: the binding
+	 * from {@link #trigger()} to {@link #behaviourKey()} was added or removed.
+	 * If {@link #behaviourKey()} is {@code null}, all bindings of
+	 * {@link #trigger()} were removed.
+	 */
+	public static final class Change
+	{
+		private final InputTrigger trigger;
+
+		private final String behaviourKey;
+
+		public Change( final InputTrigger trigger, final String behaviourKey )
+		{
+			this.trigger = trigger;
+			this.behaviourKey = behaviourKey;
+		}
+
+		public InputTrigger trigger()
+		{
+			return trigger;
+		}
+
+		public String behaviourKey()
+		{
+			return behaviourKey;
+		}
+
+		@Override
+		public String toString()
+		{
+			return trigger + " -> " + ( behaviourKey == null ? "*" : behaviourKey );
+		}
+	}
+
+	/**
+	 * Bump the {@link #modCount()} of this map whenever {@code map} (or any of
+	 * its parents) is modified. This is for derived maps that present
+	 * bindings of another map, other than their parent.
+	 *
+	 * @param map
+	 *            the map to track.
+	 */
+	protected void trackModifications( final InputTriggerMap map )
+	{
+		map.addDependent( this, Dependency.TRACKER );
+		modified();
+	}
+
+	/**
+	 * Bump the {@link #modCount()} of this map whenever the local bindings of
+	 * {@code map} are modified, but not when its parents are modified or it
+	 * is re-parented. This is for derived maps that present only the local
+	 * bindings of another map (see {@link #localBindingsOf(InputTriggerMap)}).
+	 *
+	 * @param map
+	 *            the map to track.
+	 */
+	protected void trackLocalModifications( final InputTriggerMap map )
+	{
+		map.addDependent( this, Dependency.LOCAL_TRACKER );
+		modified();
+	}
+
+	/**
+	 * Stop tracking {@code map}, which was registered with
+	 * {@link #trackModifications(InputTriggerMap)} or
+	 * {@link #trackLocalModifications(InputTriggerMap)}.
+	 *
+	 * @param map
+	 *            the map to stop tracking.
+	 */
+	protected void untrackModifications( final InputTriggerMap map )
+	{
+		map.removeTracker( this );
+		modified();
+	}
+
+	/**
+	 * Bump the modification count of this map and all maps that depend on it.
+	 * The modification is not specified further, so consumers of
+	 * {@link #getChangesSince(int, Collection)} have to re-read all bindings.
+	 */
+	protected void modified()
+	{
+		modified( Collections.singletonList( null ), true );
+	}
+
+	/**
+	 * @param local
+	 *            whether the local bindings of this map changed, or only the
+	 *            bindings inherited from its parents.
+	 */
+	private void modified( final Collection< Change > changes, final boolean local )
+	{
+		this.changes.recordAll( changes );
+		final InputTriggerMap[] deps;
+		final Dependency[] kinds;
+		int n = 0;
+		synchronized ( dependents )
 		{
-			final int m = parent.modCount();
-			if ( m != expectedParentModCount )
+			if ( dependents.isEmpty() )
+				return;
+			deps = new InputTriggerMap[ dependents.size() ];
+			kinds = new Dependency[ deps.length ];
+			for ( final Entry< InputTriggerMap, Dependency > entry : dependents.entrySet() )
 			{
-				expectedParentModCount = m;
-				++modCount;
+				if ( n == deps.length )
+					break;
+				deps[ n ] = entry.getKey();
+				kinds[ n ] = entry.getValue();
+				++n;
 			}
 		}
-		return modCount;
+		for ( int i = 0; i < n; ++i )
+		{
+			if ( kinds[ i ] == Dependency.CHILD )
+				deps[ i ].modified( changes, false );
+			else if ( kinds[ i ] == Dependency.TRACKER || local )
+				// everything a tracker presents of this map is local to it
+				deps[ i ].modified( changes, true );
+		}
+	}
+
+	private void addDependent( final InputTriggerMap map, final Dependency dependency )
+	{
+		synchronized ( dependents )
+		{
+			dependents.put( map, dependency );
+		}
+	}
+
+	private void removeDependent( final InputTriggerMap map )
+	{
+		synchronized ( dependents )
+		{
+			dependents.remove( map );
+		}
+	}
+
+	private void removeTracker( final InputTriggerMap map )
+	{
+		synchronized ( dependents )
+		{
+			if ( dependents.get( map ) != Dependency.CHILD )
+				dependents.remove( map );
+		}
 	}
 }
@@ -0,0 +1,555 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.NoSuchElementException;
+
+import gnu.trove.TIntCollection;
+import gnu.trove.iterator.TIntIterator;
+import gnu.trove.procedure.TIntProcedure;
+import gnu.trove.set.TIntSet;
+
+/**
+ * An immutable set of key codes. Key codes {@code 0 <= k < 256} (which covers
+ * almost all {@code VK_*} constants) are stored as bits in four inline
+ * {@code long} words. Other key codes are stored in a sorted overflow array.
+ * <p>
+ * This is the representation used for the pressed and ignored keys of
+ * {@link InputTrigger}s, and matching triggers against a {@code KeySet} of
+ * currently pressed keys reduces to a few bitwise word comparisons.
+ * <p>
+ * {@code KeySet} implements the read-only part of the {@link TIntSet}
+ * interface. All methods that would modify the set throw
+ * {@link UnsupportedOperationException}.
+ */
+public final class KeySet implements TIntSet
+{
+	public static final KeySet EMPTY = new KeySet( 0, 0, 0, 0, new int[ 0 ] );
+
+	private final long w0;
+
+	private final long w1;
+
+	private final long w2;
+
+	private final long w3;
+
+	/**
+	 * Sorted key codes that don't fit into the bit words.
+	 */
+	private final int[] overflow;
+
+	private final int size;
+
+	private final int hashcode;
+
+	/**
+	 * @param overflow
+	 *            sorted key codes {@code < 0} or {@code >= 256}, without
+	 *            duplicates. The array is not copied and must not be modified
+	 *            afterwards.
+	 */
+	KeySet( final long w0, final long w1, final long w2, final long w3, final int[] overflow )
+	{
+		this.w0 = w0;
+		this.w1 = w1;
+		this.w2 = w2;
+		this.w3 = w3;
+		this.overflow = overflow;
+
+		size = Long.bitCount( w0 ) + Long.bitCount( w1 ) + Long.bitCount( w2 ) + Long.bitCount( w3 ) + overflow.length;
+
+		// TIntSet.hashCode() is defined as the sum of the elements
+		int value = sum( w0, 0 ) + sum( w1, 64 ) + sum( w2, 128 ) + sum( w3, 192 );
+		for ( final int key : overflow )
+			value += key;
+		hashcode = value;
+	}
+
+	/**
+	 * Create a {@code KeySet} from the given bit words (for key codes
+	 * {@code 0 <= k < 256}) and overflow key codes.
+	 *
+	 * @param words
+	 *            array of (at least) 4 bit words. Bit {@code k & 63} of word
+	 *            {@code k >> 6} is set if key {@code k} is contained.
+	 * @param overflow
+	 *            sorted key codes {@code < 0} or {@code >= 256}, without
+	 *            duplicates. The array is not copied and must not be modified
+	 *            afterwards.
+	 */
+	static KeySet fromWords( final long[] words, final int[] overflow )
+	{
+		if ( words[ 0 ] == 0 && words[ 1 ] == 0 && words[ 2 ] == 0 && words[ 3 ] == 0 && overflow.length == 0 )
+			return EMPTY;
+		return new KeySet( words[ 0 ], words[ 1 ], words[ 2 ], words[ 3 ], overflow );
+	}
+
+	private static int sum( long word, final int offset )
+	{
+		int sum = 0;
+		while ( word != 0 )
+		{
+			sum += offset + Long.numberOfTrailingZeros( word );
+			word &= word - 1;
+		}
+		return sum;
+	}
+
+	/**
+	 * Create a {@code KeySet} containing the given key codes.
+	 */
+	public static KeySet of( final int... keys )
+	{
+		long w0 = 0, w1 = 0, w2 = 0, w3 = 0;
+		int[] overflow = new int[ keys.length ];
+		int n = 0;
+		for ( final int key : keys )
+		{
+			if ( key >= 0 && key < 256 )
+			{
+				final long bit = 1L << ( key & 63 );
+				switch ( key >> 6 )
+				{
+				case 0:
+					w0 |= bit;
+					break;
+				case 1:
+					w1 |= bit;
+					break;
+				case 2:
+					w2 |= bit;
+					break;
+				default:
+					w3 |= bit;
+					break;
+				}
+			}
+			else
+				overflow[ n++ ] = key;
+		}
+		overflow = Arrays.copyOf( overflow, n );
+		Arrays.sort( overflow );
+		overflow = distinct( overflow );
+		if ( w0 == 0 && w1 == 0 && w2 == 0 && w3 == 0 && overflow.length == 0 )
+			return EMPTY;
+		return new KeySet( w0, w1, w2, w3, overflow );
+	}
+
+	/**
+	 * Create a {@code KeySet} containing the key codes in {@code keys}.
+	 */
+	public static KeySet of( final TIntCollection keys )
+	{
+		if ( keys instanceof KeySet )
+			return ( KeySet ) keys;
+		return of( keys.toArray() );
+	}
+
+	/**
+	 * Get the set of keys in this set but not in {@code other}.
+	 */
+	public KeySet minus( final KeySet other )
+	{
+		final int[] o = new int[ overflow.length ];
+		int n = 0;
+		for ( final int key : overflow )
+			if ( Arrays.binarySearch( other.overflow, key ) < 0 )
+				o[ n++ ] = key;
+		return new KeySet( w0 & ~other.w0, w1 & ~other.w1, w2 & ~other.w2, w3 & ~other.w3, Arrays.copyOf( o, n ) );
+	}
+
+	/**
+	 * Check whether all keys in this set are contained in {@code keys}. This
+	 * is a bitwise comparison if {@code keys} is a {@code KeySet}. Does not
+	 * allocate.
+	 */
+	public boolean isSubsetOf( final TIntSet keys )
+	{
+		if ( keys instanceof KeySet )
+		{
+			final KeySet k = ( KeySet ) keys;
+			if ( ( w0 & ~k.w0 ) != 0 || ( w1 & ~k.w1 ) != 0 || ( w2 & ~k.w2 ) != 0 || ( w3 & ~k.w3 ) != 0 )
+				return false;
+			if ( overflow.length == 0 )
+				return true;
+			if ( overflow.length > k.overflow.length )
+				return false;
+			for ( final int key : overflow )
+				if ( Arrays.binarySearch( k.overflow, key ) < 0 )
+					return false;
+			return true;
+		}
+		else
+		{
+			if ( size > keys.size() )
+				return false;
+			return countContainedIn( keys ) == size;
+		}
+	}
+
+	/**
+	 * Check whether this set is equal to {@code keys \ ignored}. This is a
+	 * bitwise comparison if {@code keys} is a {@code KeySet}. Does not
+	 * allocate.
+	 */
+	public boolean equalsDifference( final TIntSet keys, final KeySet ignored )
+	{
+		if ( keys instanceof KeySet )
+		{
+			final KeySet k = ( KeySet ) keys;
+			if ( w0 != ( k.w0 & ~ignored.w0 ) || w1 != ( k.w1 & ~ignored.w1 ) || w2 != ( k.w2 & ~ignored.w2 ) || w3 != ( k.w3 & ~ignored.w3 ) )
+				return false;
+			int i = 0;
+			for ( final int key : k.overflow )
+			{
+				if ( Arrays.binarySearch( ignored.overflow, key ) >= 0 )
+					continue;
+				if ( i >= overflow.length || overflow[ i ] != key )
+					return false;
+				++i;
+			}
+			return i == overflow.length;
+		}
+		else
+		{
+			// this == keys \ ignored
+			// <==> this is a subset of (keys \ ignored), and |keys \ ignored| == |this|
+			if ( ignored.countContainedIn( this ) != 0 || !isSubsetOf( keys ) )
+				return false;
+			return keys.size() - ignored.countContainedIn( keys ) == size;
+		}
+	}
+
+	/**
+	 * Count how many keys of this set are contained in {@code keys}. Does not
+	 * allocate.
+	 */
+	private int countContainedIn( final TIntSet keys )
+	{
+		int count = 0;
+		count += countContainedIn( w0, 0, keys );
+		count += countContainedIn( w1, 64, keys );
+		count += countContainedIn( w2, 128, keys );
+		count += countContainedIn( w3, 192, keys );
+		for ( final int key : overflow )
+			if ( keys.contains( key ) )
+				++count;
+		return count;
+	}
+
+	private static int countContainedIn( long word, final int offset, final TIntSet keys )
+	{
+		int count = 0;
+		while ( word != 0 )
+		{
+			if ( keys.contains( offset + Long.numberOfTrailingZeros( word ) ) )
+				++count;
+			word &= word - 1;
+		}
+		return count;
+	}
+
+	private boolean containsWordBit( final int key )
+	{
+		final long bit = 1L << ( key & 63 );
+		switch ( key >> 6 )
+		{
+		case 0:
+			return ( w0 & bit ) != 0;
+		case 1:
+			return ( w1 & bit ) != 0;
+		case 2:
+			return ( w2 & bit ) != 0;
+		default:
+			return ( w3 & bit ) != 0;
+		}
+	}
+
+	private static int[] distinct( final int[] sorted )
+	{
+		int n = 0;
+		for ( int i = 0; i < sorted.length; ++i )
+			if ( i == 0 || sorted[ i ] != sorted[ i - 1 ] )
+				sorted[ n++ ] = sorted[ i ];
+		return n == sorted.length ? sorted : Arrays.copyOf( sorted, n );
+	}
+
+	/*
+	 * TIntSet, read-only.
+	 */
+
+	@Override
+	public int getNoEntryValue()
+	{
+		return 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	@Override
+	public boolean contains( final int key )
+	{
+		if ( key >= 0 && key < 256 )
+			return containsWordBit( key );
+		else
+			return overflow.length != 0 && Arrays.binarySearch( overflow, key ) >= 0;
+	}
+
+	/**
+	 * Iterates key codes {@code 0 <= k < 256} in ascending order, then the
+	 * remaining key codes in ascending order.
+	 */
+	@Override
+	public TIntIterator iterator()
+	{
+		return new TIntIterator()
+		{
+			private int next = advance( 0 );
+
+			private int advance( int i )
+			{
+				while ( i < 256 && !containsWordBit( i ) )
+					++i;
+				return i;
+			}
+
+			@Override
+			public boolean hasNext()
+			{
+				return next < 256 + overflow.length;
+			}
+
+			@Override
+			public int next()
+			{
+				if ( !hasNext() )
+					throw new NoSuchElementException();
+				final int i = next;
+				if ( i < 256 )
+				{
+					next = advance( i + 1 );
+					return i;
+				}
+				++next;
+				return overflow[ i - 256 ];
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	@Override
+	public int[] toArray()
+	{
+		return toArray( new int[ size ] );
+	}
+
+	@Override
+	public int[] toArray( final int[] dest )
+	{
+		final int[] array = dest.length < size ? new int[ size ] : dest;
+		int n = 0;
+		for ( int i = 0; i < 256; ++i )
+			if ( containsWordBit( i ) )
+				array[ n++ ] = i;
+		for ( final int key : overflow )
+			array[ n++ ] = key;
+		if ( array.length > size )
+			array[ size ] = getNoEntryValue();
+		return array;
+	}
+
+	@Override
+	public boolean containsAll( final Collection< ? > collection )
+	{
+		for ( final Object element : collection )
+			if ( !( element instanceof Integer ) || !contains( ( Integer ) element ) )
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean containsAll( final TIntCollection collection )
+	{
+		if ( collection instanceof KeySet )
+			return ( ( KeySet ) collection ).isSubsetOf( this );
+		return collection.forEach( this::contains );
+	}
+
+	@Override
+	public boolean containsAll( final int[] array )
+	{
+		for ( final int key : array )
+			if ( !contains( key ) )
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean forEach( final TIntProcedure procedure )
+	{
+		for ( int i = 0; i < 256; ++i )
+			if ( containsWordBit( i ) && !procedure.execute( i ) )
+				return false;
+		for ( final int key : overflow )
+			if ( !procedure.execute( key ) )
+				return false;
+		return true;
+	}
+
+	@Override
+	public boolean add( final int key )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean remove( final int key )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean addAll( final Collection< ? extends Integer > collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean addAll( final TIntCollection collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean addAll( final int[] array )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll( final Collection< ? > collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll( final TIntCollection collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean retainAll( final int[] array )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll( final Collection< ? > collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll( final TIntCollection collection )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean removeAll( final int[] array )
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void clear()
+	{
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return hashcode;
+	}
+
+	@Override
+	public boolean equals( final Object obj )
+	{
+		if ( obj == this )
+			return true;
+
+		if ( obj instanceof KeySet )
+		{
+			final KeySet o = ( KeySet ) obj;
+			return w0 == o.w0 && w1 == o.w1 && w2 == o.w2 && w3 == o.w3 && Arrays.equals( overflow, o.overflow );
+		}
+
+		if ( obj instanceof TIntSet )
+		{
+			final TIntSet o = ( TIntSet ) obj;
+			return o.size() == size && isSubsetOf( o );
+		}
+
+		return false;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder buf = new StringBuilder( "{" );
+		forEach( key -> {
+			if ( buf.length() > 1 )
+				buf.append( "," );
+			buf.append( key );
+			return true;
+		} );
+		return buf.append( "}" ).toString();
+	}
+}
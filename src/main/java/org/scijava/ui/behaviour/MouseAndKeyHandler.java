@@ -30,6 +30,7 @@
 package org.scijava.ui.behaviour;
 
 import java.awt.Component;
+import java.awt.EventQueue;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.awt.event.InputEvent;
@@ -41,6 +42,9 @@ import java.awt.event.MouseMotionListener;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.util.ArrayList;
+import java.util.Arrays;
+
+import javax.swing.Timer;
 
 import org.scijava.ui.behaviour.KeyPressedManager.KeyPressedReceiver;
 
@@ -94,7 +98,195 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	 */
 	private final ArrayList< BehaviourEntry< DragBehaviour > > activeKeyDrags = new ArrayList<>();
 
-	private int getMask( final InputEvent e )
+	/**
+	 * Measures behaviour invocations, if not {@code null}.
+	 */
+	private BehaviourWatchdog watchdog;
+
+	/**
+	 * Records behaviour invocations, if not {@code null}.
+	 */
+	private BehaviourMetrics metrics;
+
+	/*
+	 * Deferred drags for CoalescedDragBehaviours and BatchedDragBehaviours,
+	 * and deferred scrolls for AccumulatedScrollBehaviours.
+	 */
+
+	public static final int DEFAULT_FRAME_INTERVAL = 16;
+
+	/**
+	 * Interval (in milliseconds) in which pending positions are delivered to
+	 * active {@link CoalescedDragBehaviour}s and {@link BatchedDragBehaviour}s,
+	 * and accumulated rotations to {@link AccumulatedScrollBehaviour}s. If 0,
+	 * they are only delivered by {@link #frameTick()}.
+	 */
+	private int frameInterval = DEFAULT_FRAME_INTERVAL;
+
+	/**
+	 * Fires {@link #frameTick()} once, {@link #frameInterval} after the
+	 * first deferred drag or scroll. Created lazily.
+	 */
+	private Timer frameTimer;
+
+	/**
+	 * Positions not yet delivered to deferred drags in
+	 * {@link #activeButtonDrags}.
+	 */
+	private final PendingDrags pendingButtonDrags = new PendingDrags();
+
+	/**
+	 * Positions not yet delivered to deferred drags in {@link #activeKeyDrags}.
+	 */
+	private final PendingDrags pendingKeyDrags = new PendingDrags();
+
+	public static final double DEFAULT_SCROLL_THRESHOLD = 1;
+
+	/**
+	 * Accumulated rotations of {@link AccumulatedScrollBehaviour}s are
+	 * delivered immediately when their magnitude reaches this threshold.
+	 */
+	private double scrollThreshold = DEFAULT_SCROLL_THRESHOLD;
+
+	/**
+	 * Accumulated rotations not yet delivered to
+	 * {@link AccumulatedScrollBehaviour}s. Only the first
+	 * {@link #numPendingScrolls} elements are in use, the others are kept for
+	 * re-use.
+	 */
+	private final ArrayList< PendingScroll > pendingScrolls = new ArrayList<>();
+
+	private int numPendingScrolls;
+
+	/**
+	 * Wheel rotation accumulated for one {@link AccumulatedScrollBehaviour},
+	 * trigger, and direction.
+	 */
+	private static final class PendingScroll
+	{
+		InputTrigger trigger;
+
+		String behaviourKey;
+
+		ScrollBehaviour behaviour;
+
+		boolean isHorizontal;
+
+		double wheelRotation;
+
+		/**
+		 * Time of the first event accumulated in {@link #wheelRotation}.
+		 */
+		long when;
+
+		int x;
+
+		int y;
+	}
+
+	/**
+	 * Mouse positions of drag events that were not yet delivered to
+	 * {@link CoalescedDragBehaviour}s (which only need to know whether there
+	 * are any) and {@link BatchedDragBehaviour}s (which get all of them). The
+	 * buffers grow as needed and are re-used.
+	 */
+	private static final class PendingDrags
+	{
+		boolean pending;
+
+		/**
+		 * Time of the first pending drag event.
+		 */
+		long firstWhen;
+
+		int[] x = new int[ 64 ];
+
+		int[] y = new int[ 64 ];
+
+		long[] when = new long[ 64 ];
+
+		int size;
+
+		void add( final int px, final int py, final long pwhen )
+		{
+			if ( size == x.length )
+			{
+				final int capacity = 2 * size;
+				x = Arrays.copyOf( x, capacity );
+				y = Arrays.copyOf( y, capacity );
+				when = Arrays.copyOf( when, capacity );
+			}
+			x[ size ] = px;
+			y[ size ] = py;
+			when[ size ] = pwhen;
+			++size;
+		}
+
+		void clear()
+		{
+			pending = false;
+			size = 0;
+		}
+	}
+
+	/**
+	 * Re-used buffers for collecting the matching behaviours of one event.
+	 */
+	private static final class Matches
+	{
+		final ArrayList< BehaviourEntry< DragBehaviour > > drags = new ArrayList<>();
+
+		final ArrayList< BehaviourEntry< ClickBehaviour > > clicks = new ArrayList<>();
+
+		final ArrayList< BehaviourEntry< ScrollBehaviour > > scrolls = new ArrayList<>();
+
+		void clear()
+		{
+			drags.clear();
+			clicks.clear();
+			scrolls.clear();
+		}
+	}
+
+	/**
+	 * One {@link Matches} per dispatch nesting depth. A behaviour may pump
+	 * events into this handler while it is invoked (e.g., by showing a modal
+	 * dialog), and the nested dispatch must not touch the matches the outer
+	 * dispatch is iterating.
+	 */
+	private final ArrayList< Matches > matches = new ArrayList<>();
+
+	private int matchesDepth = 0;
+
+	/**
+	 * Get empty match buffers for the current dispatch. Must be paired with
+	 * {@link #releaseMatches(Matches)} in a {@code finally} block.
+	 */
+	private Matches acquireMatches()
+	{
+		if ( matchesDepth == matches.size() )
+			matches.add( new Matches() );
+		final Matches m = matches.get( matchesDepth++ );
+		m.clear();
+		return m;
+	}
+
+	/**
+	 * Clear and return match buffers obtained by {@link #acquireMatches()},
+	 * also if a behaviour threw.
+	 */
+	private void releaseMatches( final Matches m )
+	{
+		m.clear();
+		--matchesDepth;
+	}
+
+	/**
+	 * Get the {@link InputTrigger} mask of an event: its modifiers, corrected
+	 * for the modifier keys actually pressed and for AWT quirks, plus the
+	 * double-click and scroll flags.
+	 */
+	protected int getMask( final InputEvent e )
 	{
 		final int modifiers = e.getModifiers();
 		final int modifiersEx = e.getModifiersEx();
@@ -192,26 +384,152 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseDragged()" );
 //		System.out.println( e );
-		update();
-
 		mouseX = e.getX();
 		mouseY = e.getY();
 
-		for ( final BehaviourEntry< DragBehaviour > drag : activeButtonDrags )
-			drag.behaviour().drag( mouseX, mouseY );
+		if ( dragActive( activeButtonDrags, pendingButtonDrags, e.getWhen() ) )
+			scheduleFrameTick();
 	}
 
 	@Override
 	public void mouseMoved( final MouseEvent e )
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseMoved()" );
-		update();
-
 		mouseX = e.getX();
 		mouseY = e.getY();
 
-		for ( final BehaviourEntry< DragBehaviour > drag : activeKeyDrags )
-			drag.behaviour().drag( mouseX, mouseY );
+		if ( dragActive( activeKeyDrags, pendingKeyDrags, e.getWhen() ) )
+			scheduleFrameTick();
+	}
+
+	/**
+	 * Call {@link DragBehaviour#drag(int, int)} on all {@code activeDrags},
+	 * except {@link CoalescedDragBehaviour}s and {@link BatchedDragBehaviour}s.
+	 * For these, the position is added to {@code pendingDrags}.
+	 *
+	 * @return whether positions are pending, which must be delivered later.
+	 */
+	private boolean dragActive( final ArrayList< BehaviourEntry< DragBehaviour > > activeDrags, final PendingDrags pendingDrags, final long when )
+	{
+		boolean coalesced = false;
+		boolean batched = false;
+		for ( int i = 0; i < activeDrags.size(); ++i )
+		{
+			final BehaviourEntry< DragBehaviour > drag = activeDrags.get( i );
+			if ( drag.behaviour() instanceof BatchedDragBehaviour )
+				batched = true;
+			else if ( drag.behaviour() instanceof CoalescedDragBehaviour )
+				coalesced = true;
+			else
+				drag( drag, mouseX, mouseY, when );
+		}
+		if ( batched )
+			pendingDrags.add( mouseX, mouseY, when );
+		if ( ( batched || coalesced ) && !pendingDrags.pending )
+		{
+			pendingDrags.pending = true;
+			pendingDrags.firstWhen = when;
+		}
+		return pendingDrags.pending;
+	}
+
+	/**
+	 * Set the interval in which pending mouse positions are delivered to active
+	 * {@link CoalescedDragBehaviour}s and {@link BatchedDragBehaviour}s while
+	 * the mouse is dragged, and accumulated wheel rotations to
+	 * {@link AccumulatedScrollBehaviour}s. If {@code 0}, they are only
+	 * delivered when {@link #frameTick()} is called. The default is
+	 * {@link #DEFAULT_FRAME_INTERVAL}.
+	 *
+	 * @param millis
+	 *            frame interval in milliseconds.
+	 */
+	public void setFrameInterval( final int millis )
+	{
+		if ( millis < 0 )
+			throw new IllegalArgumentException();
+		frameInterval = millis;
+		if ( frameTimer != null )
+		{
+			frameTimer.stop();
+			frameTimer.setInitialDelay( millis );
+			if ( millis > 0 && ( pendingButtonDrags.pending || pendingKeyDrags.pending || numPendingScrolls > 0 ) )
+				frameTimer.start();
+		}
+	}
+
+	public int getFrameInterval()
+	{
+		return frameInterval;
+	}
+
+	/**
+	 * Deliver the latest mouse position to active
+	 * {@link CoalescedDragBehaviour}s, and all positions since they were last
+	 * notified to active {@link BatchedDragBehaviour}s, if the mouse moved
+	 * since. Deliver accumulated wheel rotations to
+	 * {@link AccumulatedScrollBehaviour}s. This is called automatically every
+	 * {@link #setFrameInterval(int) frame interval} while dragging or
+	 * scrolling. It can also be called from a frame clock (e.g., before
+	 * painting) to align drags and scrolls with rendering. Must be called on
+	 * the event dispatch thread.
+	 */
+	public void frameTick()
+	{
+		if ( pendingButtonDrags.pending )
+			dragPending( activeButtonDrags, pendingButtonDrags );
+		if ( pendingKeyDrags.pending )
+			dragPending( activeKeyDrags, pendingKeyDrags );
+		if ( numPendingScrolls > 0 )
+			scrollPending();
+	}
+
+	private void scrollPending()
+	{
+		final int size = numPendingScrolls;
+		numPendingScrolls = 0;
+		for ( int i = 0; i < size; ++i )
+		{
+			final PendingScroll pending = pendingScrolls.get( i );
+			final InputTrigger trigger = pending.trigger;
+			final String behaviourKey = pending.behaviourKey;
+			final ScrollBehaviour behaviour = pending.behaviour;
+			final double rotation = pending.wheelRotation;
+			pending.trigger = null;
+			pending.behaviourKey = null;
+			pending.behaviour = null;
+			if ( rotation != 0 )
+				scroll( trigger, behaviourKey, behaviour, rotation, pending.isHorizontal, pending.x, pending.y, pending.when );
+		}
+	}
+
+	private void dragPending( final ArrayList< BehaviourEntry< DragBehaviour > > activeDrags, final PendingDrags pendingDrags )
+	{
+		for ( int i = 0; i < activeDrags.size(); ++i )
+		{
+			final BehaviourEntry< DragBehaviour > drag = activeDrags.get( i );
+			if ( drag.behaviour() instanceof BatchedDragBehaviour )
+			{
+				if ( pendingDrags.size > 0 )
+					dragBatch( drag, pendingDrags, pendingDrags.firstWhen );
+			}
+			else if ( drag.behaviour() instanceof CoalescedDragBehaviour )
+				drag( drag, mouseX, mouseY, pendingDrags.firstWhen );
+		}
+		pendingDrags.clear();
+	}
+
+	private void scheduleFrameTick()
+	{
+		if ( frameInterval <= 0 )
+			return;
+		if ( frameTimer == null )
+		{
+			frameTimer = new Timer( frameInterval, e -> frameTick() );
+			frameTimer.setRepeats( false );
+		}
+		if ( !frameTimer.isRunning() )
+			frameTimer.start();
 	}
 
 	@Override
@@ -219,7 +537,7 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseWheelMoved()" );
 //		System.out.println( e );
-		update();
+		final DispatchTable table = update();
 
 		final int mask = getMask( e );
 		final int x = e.getX();
@@ -236,13 +554,105 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 		final boolean exShiftMask = ( e.getModifiersEx() & InputTrigger.SHIFT_DOWN_MASK ) != 0;
 		final boolean isHorizontal = !globalKeys.shiftPressed() && exShiftMask;
 
-		for ( final BehaviourEntry< ScrollBehaviour > scroll : scrolls )
+		final Matches m = acquireMatches();
+		try
+		{
+			final ArrayList< BehaviourEntry< ScrollBehaviour > > scrollMatches = m.scrolls;
+			final int scanned = table.scrolls().collectMatches( mask, mask, globalKeys.pressedKeys(), scrollMatches );
+			FlightRecorderEvents.inputDispatched( "mouseWheelMoved", mask, scanned, scrollMatches );
+			for ( int i = 0; i < scrollMatches.size(); ++i )
+			{
+				final BehaviourEntry< ScrollBehaviour > scroll = scrollMatches.get( i );
+				if ( scroll.behaviour() instanceof AccumulatedScrollBehaviour )
+					accumulateScroll( scroll, wheelRotation, isHorizontal, x, y, e.getWhen() );
+				else
+					scroll( scroll.buttons(), scroll.behaviourKey(), scroll.behaviour(), wheelRotation, isHorizontal, x, y, e.getWhen() );
+			}
+		}
+		finally
+		{
+			releaseMatches( m );
+		}
+	}
+
+	/**
+	 * Add {@code wheelRotation} to the pending scroll of the given
+	 * {@link AccumulatedScrollBehaviour} in the given direction. Deliver it
+	 * immediately if it reaches the {@link #setScrollThreshold(double)
+	 * threshold}, otherwise schedule delivery with the next frame.
+	 */
+	private void accumulateScroll( final BehaviourEntry< ScrollBehaviour > scroll, final double wheelRotation, final boolean isHorizontal, final int x, final int y, final long when )
+	{
+		PendingScroll pending = null;
+		int index = 0;
+		for ( ; index < numPendingScrolls; ++index )
 		{
-			if ( scroll.buttons().matches( mask, globalKeys.pressedKeys() ) )
+			final PendingScroll p = pendingScrolls.get( index );
+			if ( p.behaviour == scroll.behaviour() && p.isHorizontal == isHorizontal && p.trigger.equals( scroll.buttons() ) )
 			{
-				scroll.behaviour().scroll( wheelRotation, isHorizontal, x, y );
+				pending = p;
+				break;
 			}
 		}
+		if ( pending == null )
+		{
+			if ( numPendingScrolls == pendingScrolls.size() )
+				pendingScrolls.add( new PendingScroll() );
+			pending = pendingScrolls.get( numPendingScrolls++ );
+			pending.trigger = scroll.buttons();
+			pending.behaviourKey = scroll.behaviourKey();
+			pending.behaviour = scroll.behaviour();
+			pending.isHorizontal = isHorizontal;
+			pending.wheelRotation = 0;
+		}
+		if ( pending.wheelRotation == 0 )
+			pending.when = when;
+		pending.wheelRotation += wheelRotation;
+		pending.x = x;
+		pending.y = y;
+
+		if ( Math.abs( pending.wheelRotation ) >= scrollThreshold )
+		{
+			final InputTrigger trigger = pending.trigger;
+			final String behaviourKey = pending.behaviourKey;
+			final ScrollBehaviour behaviour = pending.behaviour;
+			final double rotation = pending.wheelRotation;
+			final long firstWhen = pending.when;
+
+			// the pending scroll is delivered, move it to the unused ones
+			pending.trigger = null;
+			pending.behaviourKey = null;
+			pending.behaviour = null;
+			pending.wheelRotation = 0;
+			pendingScrolls.remove( index );
+			pendingScrolls.add( pending );
+			--numPendingScrolls;
+
+			scroll( trigger, behaviourKey, behaviour, rotation, isHorizontal, x, y, firstWhen );
+		}
+		else
+			scheduleFrameTick();
+	}
+
+	/**
+	 * Set the magnitude of accumulated wheel rotation at which
+	 * {@link AccumulatedScrollBehaviour}s are notified immediately, instead of
+	 * with the next frame. The default is {@link #DEFAULT_SCROLL_THRESHOLD},
+	 * i.e., one "click" of a standard mouse wheel.
+	 *
+	 * @param threshold
+	 *            wheel rotation threshold.
+	 */
+	public void setScrollThreshold( final double threshold )
+	{
+		if ( !( threshold > 0 ) )
+			throw new IllegalArgumentException();
+		scrollThreshold = threshold;
+	}
+
+	public double getScrollThreshold()
+	{
+		return scrollThreshold;
 	}
 
 	@Override
@@ -250,20 +660,25 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseClicked()" );
 //		System.out.println( e );
-		update();
+		final DispatchTable table = update();
 
 		final int mask = getMask( e );
 		final int x = e.getX();
 		final int y = e.getY();
 
 		final int clickMask = mask & ~InputTrigger.DOUBLE_CLICK_MASK;
-		for ( final BehaviourEntry< ClickBehaviour > click : buttonClicks )
+		final Matches m = acquireMatches();
+		try
 		{
-			if ( click.buttons().matches( mask, globalKeys.pressedKeys() ) ||
-					( clickMask != mask && click.buttons().matches( clickMask, globalKeys.pressedKeys() ) ) )
-			{
-				click.behaviour().click( x, y );
-			}
+			final ArrayList< BehaviourEntry< ClickBehaviour > > clickMatches = m.clicks;
+			final int scanned = table.buttonClicks().collectMatches( mask, clickMask, globalKeys.pressedKeys(), clickMatches );
+			FlightRecorderEvents.inputDispatched( "mouseClicked", mask, scanned, clickMatches );
+			for ( int i = 0; i < clickMatches.size(); ++i )
+				click( clickMatches.get( i ), x, y, e.getWhen() );
+		}
+		finally
+		{
+			releaseMatches( m );
 		}
 	}
 
@@ -272,20 +687,35 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.mousePressed()" );
 //		System.out.println( e );
-		update();
+		final DispatchTable table = update();
 
 		final int mask = getMask( e );
 		final int x = e.getX();
 		final int y = e.getY();
 
-		for ( final BehaviourEntry< DragBehaviour > drag : buttonDrags )
+		final Matches m = acquireMatches();
+		try
 		{
-			if ( drag.buttons().matches( mask, globalKeys.pressedKeys() ) )
+			final ArrayList< BehaviourEntry< DragBehaviour > > dragMatches = m.drags;
+			final int scanned = table.buttonDrags().collectMatches( mask, mask, globalKeys.pressedKeys(), dragMatches );
+			FlightRecorderEvents.inputDispatched( "mousePressed", mask, scanned, dragMatches );
+			// pending positions belong to the drags that are already active
+			if ( !dragMatches.isEmpty() )
+				frameTick();
+			for ( int i = 0; i < dragMatches.size(); ++i )
 			{
-				drag.behaviour().init( x, y );
+				final BehaviourEntry< DragBehaviour > drag = dragMatches.get( i );
+				// a nested dispatch may have started this drag already
+				if ( activeButtonDrags.contains( drag ) )
+					continue;
+				init( drag, x, y, e.getWhen() );
 				activeButtonDrags.add( drag );
 			}
 		}
+		finally
+		{
+			releaseMatches( m );
+		}
 	}
 
 	@Override
@@ -293,28 +723,17 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseReleased()" );
 //		System.out.println( e );
-		update();
-
 		final int x = e.getX();
 		final int y = e.getY();
 		final int mask = getMask( e );
 
-		final ArrayList< BehaviourEntry< ? > > ended = new ArrayList<>();
-		for ( final BehaviourEntry< DragBehaviour > drag : activeButtonDrags )
-			if ( !drag.buttons().matchesSubset( mask, globalKeys.pressedKeys() ) )
-			{
-				drag.behaviour().end( x, y );
-				ended.add( drag );
-			}
-		activeButtonDrags.removeAll( ended );
-
+		endDrags( activeButtonDrags, mask, x, y, e.getWhen() );
 	}
 
 	@Override
 	public void mouseEntered( final MouseEvent e )
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseEntered()" );
-		update();
 		if ( keypressManager != null )
 			keypressManager.activate( receiver );
 	}
@@ -323,7 +742,6 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	public void mouseExited( final MouseEvent e )
 	{
 //		System.out.println( "MouseAndKeyHandler.mouseExited()" );
-		update();
 		if ( keypressManager != null )
 			keypressManager.deactivate( receiver );
 	}
@@ -333,8 +751,6 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.keyPressed()" );
 //		System.out.println( e );
-		update();
-
 		if (	e.getKeyCode() != 0 &&
 				e.getKeyCode() != KeyEvent.VK_SHIFT &&
 				e.getKeyCode() != KeyEvent.VK_META &&
@@ -364,7 +780,7 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 			if ( keypressManager != null )
 				keypressManager.handleKeyPressed( receiver, mask, doubleClick, globalKeys.pressedKeys() );
 			else
-				handleKeyPressed( mask, doubleClick, globalKeys.pressedKeys(), false );
+				handleKeyPressed( mask, doubleClick, globalKeys.pressedKeys(), null, e.getWhen() );
 		}
 	}
 
@@ -398,9 +814,9 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 			@Override
 			public void handleKeyPressed( final KeyPressedReceiver origin, final int mask, final boolean doubleClick, final TIntSet pressedKeys )
 			{
-				if ( MouseAndKeyHandler.this.handleKeyPressed( mask, doubleClick, pressedKeys, true ) )
-					focus.run();
-				MouseAndKeyHandler.this.handleKeyPressed( mask, doubleClick, pressedKeys, false );
+				// forwarded synchronously from the KeyEvent being dispatched
+				final long when = EventQueue.getMostRecentEventTime();
+				MouseAndKeyHandler.this.handleKeyPressed( mask, doubleClick, pressedKeys, focus, when );
 			}
 		};
 	}
@@ -426,41 +842,65 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 		} );
 	}
 
-	private boolean handleKeyPressed( final int mask, final boolean doubleClick, final TIntSet pressedKeys, final boolean dryRun )
+	/**
+	 * Initialize key drags and trigger key clicks matching the given key
+	 * press. Matches are collected in a single pass. If there are any, then
+	 * {@code focus} (if non-null) is run before the first behaviour is
+	 * invoked.
+	 *
+	 * @return whether any behaviour was triggered.
+	 */
+	private boolean handleKeyPressed( final int mask, final boolean doubleClick, final TIntSet pressedKeys, final Runnable focus, final long when )
 	{
-		update();
-
-		final int doubleClickMask = mask | InputTrigger.DOUBLE_CLICK_MASK;
+		final DispatchTable table = update();
 
-		boolean triggered = false;
+		final int altMask = doubleClick ? mask | InputTrigger.DOUBLE_CLICK_MASK : mask;
 
-		for ( final BehaviourEntry< DragBehaviour > drag : keyDrags )
+		final Matches m = acquireMatches();
+		try
 		{
-			if ( !activeKeyDrags.contains( drag ) &&
-					( drag.buttons().matches( mask, pressedKeys ) ||
-							( doubleClick && drag.buttons().matches( doubleClickMask, pressedKeys ) ) ) )
+			final ArrayList< BehaviourEntry< DragBehaviour > > dragMatches = m.drags;
+			final ArrayList< BehaviourEntry< ClickBehaviour > > clickMatches = m.clicks;
+			final int scanned = table.keyDrags().collectMatches( mask, altMask, pressedKeys, dragMatches )
+					+ table.keyClicks().collectMatches( mask, altMask, pressedKeys, clickMatches );
+			FlightRecorderEvents.inputDispatched( "keyPressed", altMask, scanned, dragMatches, clickMatches );
+
+			// drags that are already active are not initialized again
+			final int size = dragMatches.size();
+			int numDrags = 0;
+			for ( int i = 0; i < size; ++i )
 			{
-				if ( dryRun )
-					return true;
-				triggered = true;
-				drag.behaviour().init( mouseX, mouseY );
-				activeKeyDrags.add( drag );
+				final BehaviourEntry< DragBehaviour > drag = dragMatches.get( i );
+				if ( !activeKeyDrags.contains( drag ) )
+					dragMatches.set( numDrags++, drag );
 			}
-		}
 
-		for ( final BehaviourEntry< ClickBehaviour > click : keyClicks )
-		{
-			if ( click.buttons().matches( mask, pressedKeys ) ||
-					( doubleClick && click.buttons().matches( doubleClickMask, pressedKeys ) ) )
+			final boolean triggered = numDrags > 0 || !clickMatches.isEmpty();
+			if ( triggered && focus != null )
+				focus.run();
+
+			// pending positions belong to the drags that are already active
+			if ( numDrags > 0 )
+				frameTick();
+			for ( int i = 0; i < numDrags; ++i )
 			{
-				if ( dryRun )
-					return true;
-				triggered = true;
-				click.behaviour().click( mouseX, mouseY );
+				final BehaviourEntry< DragBehaviour > drag = dragMatches.get( i );
+				// a nested dispatch may have started this drag already
+				if ( activeKeyDrags.contains( drag ) )
+					continue;
+				init( drag, mouseX, mouseY, when );
+				activeKeyDrags.add( drag );
 			}
-		}
 
-		return triggered;
+			for ( int i = 0; i < clickMatches.size(); ++i )
+				click( clickMatches.get( i ), mouseX, mouseY, when );
+
+			return triggered;
+		}
+		finally
+		{
+			releaseMatches( m );
+		}
 	}
 
 	@Override
@@ -468,8 +908,6 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 	{
 //		System.out.println( "MouseAndKeyHandler.keyReleased()" );
 //		System.out.println( e );
-		update();
-
 		if (	e.getKeyCode() != 0 &&
 				e.getKeyCode() != KeyEvent.VK_SHIFT &&
 				e.getKeyCode() != KeyEvent.VK_META &&
@@ -481,15 +919,33 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 			pressedKeys.remove( e.getKeyCode() );
 			final int mask = getMask( e );
 
-			final ArrayList< BehaviourEntry< ? > > ended = new ArrayList<>();
-			for ( final BehaviourEntry< DragBehaviour > drag : activeKeyDrags )
-				if ( !drag.buttons().matchesSubset( mask, globalKeys.pressedKeys() ) )
-				{
-					drag.behaviour().end( mouseX, mouseY );
-					ended.add( drag );
-				}
-			activeKeyDrags.removeAll( ended );
+			endDrags( activeKeyDrags, mask, mouseX, mouseY, e.getWhen() );
+		}
+	}
+
+	/**
+	 * End and remove all {@code activeDrags} whose trigger does not match the
+	 * given {@code mask} anymore. {@link DragBehaviour#end(int, int)} is called
+	 * in the order in which drags were activated. This does not allocate.
+	 */
+	private void endDrags( final ArrayList< BehaviourEntry< DragBehaviour > > activeDrags, final int mask, final int x, final int y, final long when )
+	{
+		// deferred drags see their last positions before they end
+		frameTick();
+
+		final TIntSet keys = globalKeys.pressedKeys();
+		final int size = activeDrags.size();
+		int remaining = 0;
+		for ( int i = 0; i < size; ++i )
+		{
+			final BehaviourEntry< DragBehaviour > drag = activeDrags.get( i );
+			if ( drag.buttons().matchesSubset( mask, keys ) )
+				activeDrags.set( remaining++, drag );
+			else
+				end( drag, x, y, when );
 		}
+		for ( int i = size - 1; i >= remaining; --i )
+			activeDrags.remove( i );
 	}
 
 	@Override
@@ -507,6 +963,147 @@ public class MouseAndKeyHandler extends AbstractMouseAndKeyHandler
 		pressedKeys.addAll( globalKeys.pressedKeys() );
 	}
 
+	/**
+	 * Set a {@link BehaviourWatchdog} to measure all behaviour invocations, or
+	 * {@code null} to stop measuring. Must be called on the event dispatch
+	 * thread.
+	 */
+	public void setWatchdog( final BehaviourWatchdog watchdog )
+	{
+		this.watchdog = watchdog;
+	}
+
+	public BehaviourWatchdog getWatchdog()
+	{
+		return watchdog;
+	}
+
+	/**
+	 * Set {@link BehaviourMetrics} to record behaviour invocations and
+	 * dispatch table statistics of this handler, or {@code null} to stop
+	 * recording. Must be called on the event dispatch thread.
+	 */
+	public void setMetrics( final BehaviourMetrics metrics )
+	{
+		if ( this.metrics != null )
+			this.metrics.removeHandler( this );
+		this.metrics = metrics;
+		if ( metrics != null )
+			metrics.addHandler( this );
+	}
+
+	public BehaviourMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/*
+	 * Behaviour invocations, measured by the watchdog and metrics if set, and
+	 * by the flight recorder if it is recording. {@code when} is the time of
+	 * the triggering input event.
+	 */
+
+	private void click( final BehaviourEntry< ClickBehaviour > click, final int x, final int y, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			click.behaviour().click( x, y );
+		}
+		finally
+		{
+			invoked( w, t, event, "click", click.buttons(), click.behaviourKey(), when );
+		}
+	}
+
+	private void init( final BehaviourEntry< DragBehaviour > drag, final int x, final int y, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			drag.behaviour().init( x, y );
+		}
+		finally
+		{
+			invoked( w, t, event, "init", drag.buttons(), drag.behaviourKey(), when );
+		}
+	}
+
+	private void drag( final BehaviourEntry< DragBehaviour > drag, final int x, final int y, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			drag.behaviour().drag( x, y );
+		}
+		finally
+		{
+			invoked( w, t, event, "drag", drag.buttons(), drag.behaviourKey(), when );
+		}
+	}
+
+	private void dragBatch( final BehaviourEntry< DragBehaviour > drag, final PendingDrags points, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			( ( BatchedDragBehaviour ) drag.behaviour() ).drag( points.x, points.y, points.when, points.size );
+		}
+		finally
+		{
+			invoked( w, t, event, "drag", drag.buttons(), drag.behaviourKey(), when );
+		}
+	}
+
+	private void end( final BehaviourEntry< DragBehaviour > drag, final int x, final int y, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			drag.behaviour().end( x, y );
+		}
+		finally
+		{
+			invoked( w, t, event, "end", drag.buttons(), drag.behaviourKey(), when );
+		}
+	}
+
+	private void scroll( final InputTrigger trigger, final String behaviourKey, final ScrollBehaviour behaviour, final double wheelRotation, final boolean isHorizontal, final int x, final int y, final long when )
+	{
+		final BehaviourWatchdog w = watchdog;
+		final long t = w == null ? 0 : w.begin();
+		final Object event = FlightRecorderEvents.beginBehaviourInvoked();
+		try
+		{
+			behaviour.scroll( wheelRotation, isHorizontal, x, y );
+		}
+		finally
+		{
+			invoked( w, t, event, "scroll", trigger, behaviourKey, when );
+		}
+	}
+
+	private void invoked( final BehaviourWatchdog w, final long t, final Object event, final String method, final InputTrigger trigger, final String behaviourKey, final long when )
+	{
+		if ( w != null )
+			w.end( t, method, trigger, behaviourKey );
+		if ( event != null )
+			FlightRecorderEvents.endBehaviourInvoked( event, behaviourKey, method, trigger );
+		final BehaviourMetrics m = metrics;
+		if ( m != null )
+			m.invoked( behaviourKey, when );
+	}
+
 	@Override
 	public void focusLost( final FocusEvent e )
 	{
@@ -0,0 +1,382 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * An immutable hash map that is modified by creating modified copies (see
+ * {@link #plus(Object, Object)} and {@link #minus(Object)}). The copies share
+ * all but {@code O(log n)} of their structure with the original, so a
+ * modification costs {@code O(log n)} instead of the {@code O(n)} of copying a
+ * {@link java.util.HashMap}. Used for the copy-on-write states of
+ * {@link InputTriggerMap} and {@link BehaviourMap}.
+ * <p>
+ * Entries are stored in a trie of 32-way nodes, indexed by successive 5-bit
+ * chunks of the key hash. Keys with identical hashes are chained. Keys and
+ * values cannot be {@code null}. A {@code null} key is never contained, so
+ * {@link #get(Object) get(null)} returns {@code null} and
+ * {@link #minus(Object) minus(null)} returns this map. The {@link Map}
+ * mutators throw {@link UnsupportedOperationException}.
+ *
+ * @param <K>
+ *            key type
+ * @param <V>
+ *            value type
+ */
+final class PersistentMap< K, V > extends AbstractMap< K, V >
+{
+	private static final int BITS = 5;
+
+	private static final int WIDTH = 1 << BITS;
+
+	private static final int MASK = WIDTH - 1;
+
+	private static final PersistentMap< ?, ? > EMPTY = new PersistentMap<>( null, 0 );
+
+	/**
+	 * One entry, and the chain of other entries with the same hash.
+	 */
+	private static final class Leaf implements Map.Entry< Object, Object >
+	{
+		final int hash;
+
+		final Object key;
+
+		final Object value;
+
+		final Leaf next;
+
+		Leaf( final int hash, final Object key, final Object value, final Leaf next )
+		{
+			this.hash = hash;
+			this.key = key;
+			this.value = value;
+			this.next = next;
+		}
+
+		@Override
+		public Object getKey()
+		{
+			return key;
+		}
+
+		@Override
+		public Object getValue()
+		{
+			return value;
+		}
+
+		@Override
+		public Object setValue( final Object value )
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		@Override
+		public boolean equals( final Object o )
+		{
+			if ( !( o instanceof Map.Entry ) )
+				return false;
+			final Map.Entry< ?, ? > e = ( Map.Entry< ?, ? > ) o;
+			return key.equals( e.getKey() ) && value.equals( e.getValue() );
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return key.hashCode() ^ value.hashCode();
+		}
+
+		@Override
+		public String toString()
+		{
+			return key + "=" + value;
+		}
+	}
+
+	/**
+	 * {@code null}, a {@link Leaf}, or an {@code Object[WIDTH]} of children.
+	 */
+	private final Object root;
+
+	private final int size;
+
+	private PersistentMap( final Object root, final int size )
+	{
+		this.root = root;
+		this.size = size;
+	}
+
+	/**
+	 * Get the empty map.
+	 */
+	@SuppressWarnings( "unchecked" )
+	static < K, V > PersistentMap< K, V > empty()
+	{
+		return ( PersistentMap< K, V > ) EMPTY;
+	}
+
+	@Override
+	public int size()
+	{
+		return size;
+	}
+
+	@Override
+	@SuppressWarnings( "unchecked" )
+	public V get( final Object key )
+	{
+		if ( key == null )
+			return null;
+		final int hash = key.hashCode();
+		Object node = root;
+		for ( int shift = 0; node instanceof Object[]; shift += BITS )
+			node = ( ( Object[] ) node )[ ( hash >>> shift ) & MASK ];
+		for ( Leaf leaf = ( Leaf ) node; leaf != null; leaf = leaf.next )
+			if ( leaf.hash == hash && leaf.key.equals( key ) )
+				return ( V ) leaf.value;
+		return null;
+	}
+
+	@Override
+	public boolean containsKey( final Object key )
+	{
+		return get( key ) != null;
+	}
+
+	@Override
+	public V getOrDefault( final Object key, final V defaultValue )
+	{
+		final V value = get( key );
+		return value == null ? defaultValue : value;
+	}
+
+	/**
+	 * Get a map with the entries of this map, and {@code key} mapped to
+	 * {@code value}. Returns this map if {@code key} is already mapped to
+	 * {@code value}.
+	 *
+	 * @throws NullPointerException
+	 *             if {@code key} or {@code value} is {@code null}.
+	 */
+	PersistentMap< K, V > plus( final K key, final V value )
+	{
+		Objects.requireNonNull( key );
+		Objects.requireNonNull( value );
+		final int hash = key.hashCode();
+		final boolean contained = containsKey( key );
+		final Object r = plus( root, 0, hash, key, value );
+		return r == root ? this : new PersistentMap<>( r, contained ? size : size + 1 );
+	}
+
+	/**
+	 * Get a map with the entries of this map, except {@code key}. Returns this
+	 * map if {@code key} is not contained.
+	 */
+	PersistentMap< K, V > minus( final Object key )
+	{
+		if ( key == null )
+			return this;
+		final Object r = minus( root, 0, key.hashCode(), key );
+		return r == root ? this : new PersistentMap<>( r, size - 1 );
+	}
+
+	private static Object plus( final Object node, final int shift, final int hash, final Object key, final Object value )
+	{
+		if ( node == null )
+			return new Leaf( hash, key, value, null );
+		if ( node instanceof Leaf )
+		{
+			final Leaf leaf = ( Leaf ) node;
+			if ( leaf.hash == hash )
+			{
+				for ( Leaf l = leaf; l != null; l = l.next )
+					if ( l.key.equals( key ) )
+						return l.value == value ? leaf : new Leaf( hash, key, value, without( leaf, key ) );
+				return new Leaf( hash, key, value, leaf );
+			}
+			// split: push the leaf down, then insert next to it
+			final Object[] children = new Object[ WIDTH ];
+			children[ ( leaf.hash >>> shift ) & MASK ] = leaf;
+			return plus( children, shift, hash, key, value );
+		}
+		final Object[] children = ( Object[] ) node;
+		final int i = ( hash >>> shift ) & MASK;
+		final Object child = plus( children[ i ], shift + BITS, hash, key, value );
+		if ( child == children[ i ] )
+			return node;
+		final Object[] copy = children.clone();
+		copy[ i ] = child;
+		return copy;
+	}
+
+	private static Object minus( final Object node, final int shift, final int hash, final Object key )
+	{
+		if ( node == null )
+			return null;
+		if ( node instanceof Leaf )
+		{
+			final Leaf leaf = ( Leaf ) node;
+			if ( leaf.hash != hash )
+				return node;
+			for ( Leaf l = leaf; l != null; l = l.next )
+				if ( l.key.equals( key ) )
+					return without( leaf, key );
+			return node;
+		}
+		final Object[] children = ( Object[] ) node;
+		final int i = ( hash >>> shift ) & MASK;
+		final Object child = minus( children[ i ], shift + BITS, hash, key );
+		if ( child == children[ i ] )
+			return node;
+		final Object[] copy = children.clone();
+		copy[ i ] = child;
+
+		// collapse nodes that are left with a single leaf or nothing
+		Object single = null;
+		for ( final Object c : copy )
+		{
+			if ( c == null )
+				continue;
+			if ( single != null || !( c instanceof Leaf ) )
+				return copy;
+			single = c;
+		}
+		return single;
+	}
+
+	/**
+	 * Get the chain {@code leaf} without the entry for {@code key}, which must
+	 * be contained.
+	 */
+	private static Leaf without( final Leaf leaf, final Object key )
+	{
+		if ( leaf.key.equals( key ) )
+			return leaf.next;
+		return new Leaf( leaf.hash, leaf.key, leaf.value, without( leaf.next, key ) );
+	}
+
+	@Override
+	public Set< Map.Entry< K, V > > entrySet()
+	{
+		return new AbstractSet< Map.Entry< K, V > >()
+		{
+			@Override
+			public Iterator< Map.Entry< K, V > > iterator()
+			{
+				return new EntryIterator<>( root );
+			}
+
+			@Override
+			public int size()
+			{
+				return size;
+			}
+		};
+	}
+
+	private static final class EntryIterator< K, V > implements Iterator< Map.Entry< K, V > >
+	{
+		/**
+		 * Path of nodes to the current position. The trie depth is bounded by
+		 * the number of 5-bit chunks of an {@code int} hash.
+		 */
+		private final Object[][] nodes = new Object[ ( 32 + BITS - 1 ) / BITS + 1 ][];
+
+		private final int[] positions = new int[ nodes.length ];
+
+		private int depth = -1;
+
+		private Leaf next;
+
+		EntryIterator( final Object root )
+		{
+			if ( root instanceof Leaf )
+				next = ( Leaf ) root;
+			else if ( root != null )
+			{
+				nodes[ ++depth ] = ( Object[] ) root;
+				advance();
+			}
+		}
+
+		/**
+		 * Find the next leaf chain in the trie.
+		 */
+		private void advance()
+		{
+			next = null;
+			while ( depth >= 0 )
+			{
+				final Object[] node = nodes[ depth ];
+				if ( positions[ depth ] == WIDTH )
+				{
+					positions[ depth-- ] = 0;
+					continue;
+				}
+				final Object child = node[ positions[ depth ]++ ];
+				if ( child instanceof Leaf )
+				{
+					next = ( Leaf ) child;
+					return;
+				}
+				if ( child != null )
+					nodes[ ++depth ] = ( Object[] ) child;
+			}
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return next != null;
+		}
+
+		@Override
+		@SuppressWarnings( "unchecked" )
+		public Map.Entry< K, V > next()
+		{
+			if ( next == null )
+				throw new NoSuchElementException();
+			final Leaf leaf = next;
+			if ( leaf.next != null )
+				next = leaf.next;
+			else
+				advance();
+			return ( Map.Entry< K, V > ) ( Map.Entry< ?, ? > ) leaf;
+		}
+	}
+}
@@ -0,0 +1,73 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+/**
+ * Per-thread state of batches of modifications (see
+ * {@link InputTriggerMap#beginBatch()} and {@link BehaviourMap#beginBatch()}).
+ * A thread with an open batch reads its own unpublished modifications, unless
+ * it asks to read {@link #publishedOnly published bindings only}.
+ */
+final class ThreadBatchState
+{
+	private static final ThreadLocal< ThreadBatchState > CURRENT = ThreadLocal.withInitial( ThreadBatchState::new );
+
+	/**
+	 * Get the batch state of the current thread.
+	 */
+	static ThreadBatchState current()
+	{
+		return CURRENT.get();
+	}
+
+	/**
+	 * Number of batches that the thread has open, over all maps.
+	 */
+	int openBatches;
+
+	/**
+	 * While positive, the thread reads only published bindings, also of maps
+	 * in which it has a batch open. Used when building dispatch tables, which
+	 * are shared with other threads.
+	 */
+	int publishedOnly;
+
+	/**
+	 * Whether the thread may currently read unpublished bindings. Bindings
+	 * read while this is {@code true} must not be cached for other threads.
+	 */
+	boolean readsUnpublished()
+	{
+		return openBatches != 0 && publishedOnly == 0;
+	}
+
+	private ThreadBatchState()
+	{}
+}
@@ -498,7 +498,7 @@ public class InputTriggerConfig implements InputTriggerAdder.Factory, KeyStrokeA
 
 	void addMap( final InputTriggerMap map, final String context )
 	{
-		for ( final Entry< InputTrigger, Set< String > > entry : map.getAllBindings().entrySet() )
+		for ( final Entry< InputTrigger, Set< String > > entry : map.getAllBindingsSnapshot().entrySet() )
 		{
 			final InputTrigger trigger = entry.getKey();
 			final Set< String > behaviours = entry.getValue();
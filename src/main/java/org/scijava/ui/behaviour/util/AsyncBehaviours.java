@@ -0,0 +1,308 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.ScrollBehaviour;
+
+/**
+ * Wrappers that run {@link ClickBehaviour}s and {@link ScrollBehaviour}s off
+ * the event dispatch thread, for behaviours that do slow work (e.g., loading
+ * data) that would otherwise block input handling.
+ * <p>
+ * Invocations of one wrapped behaviour run one at a time, in the order in
+ * which they were triggered. If a click behaviour is triggered again while a
+ * previous invocation is still waiting to run, the waiting invocation is
+ * dropped (latest wins). For a scroll behaviour, the wheel rotations of all
+ * waiting invocations are summed (separately for vertical and horizontal
+ * scrolling) and delivered in one invocation, at the latest mouse position.
+ * An invocation that is already running is not interrupted, but can poll
+ * {@link #isSuperseded()} to stop early.
+ * <p>
+ * By default, invocations run on virtual threads if the JVM supports them
+ * (Java 21 and later), and on daemon platform threads otherwise.
+ */
+public final class AsyncBehaviours
+{
+	/**
+	 * Wrap {@code behaviour} to run asynchronously on the
+	 * {@link #defaultExecutor()}.
+	 */
+	public static ClickBehaviour async( final ClickBehaviour behaviour )
+	{
+		return async( behaviour, defaultExecutor() );
+	}
+
+	/**
+	 * Wrap {@code behaviour} to run asynchronously on {@code executor}.
+	 */
+	public static ClickBehaviour async( final ClickBehaviour behaviour, final Executor executor )
+	{
+		final PendingQueue queue = new PendingQueue( executor );
+		return ( x, y ) -> queue.submit( () -> behaviour.click( x, y ) );
+	}
+
+	/**
+	 * Wrap {@code behaviour} to run asynchronously on the
+	 * {@link #defaultExecutor()}.
+	 */
+	public static ScrollBehaviour async( final ScrollBehaviour behaviour )
+	{
+		return async( behaviour, defaultExecutor() );
+	}
+
+	/**
+	 * Wrap {@code behaviour} to run asynchronously on {@code executor}.
+	 * Rotations of scrolls that are triggered while a previous invocation is
+	 * still waiting to run are added to the waiting invocation.
+	 */
+	public static ScrollBehaviour async( final ScrollBehaviour behaviour, final Executor executor )
+	{
+		final PendingQueue queue = new PendingQueue( executor );
+		return ( wheelRotation, isHorizontal, x, y ) -> queue.update( pending -> pending == null
+				? new PendingScroll( behaviour ).add( wheelRotation, isHorizontal, x, y )
+				: ( ( PendingScroll ) pending ).add( wheelRotation, isHorizontal, x, y ) );
+	}
+
+	/**
+	 * Returns {@code true} if called from an asynchronous behaviour invocation
+	 * that has been superseded, i.e., the behaviour was triggered again since
+	 * the invocation started. Long-running behaviours can use this to abandon
+	 * work whose result is not needed anymore.
+	 */
+	public static boolean isSuperseded()
+	{
+		final PendingQueue queue = CURRENT.get();
+		return queue != null && queue.pending.get() != null;
+	}
+
+	/**
+	 * Get the executor used by {@link #async(ClickBehaviour)} and
+	 * {@link #async(ScrollBehaviour)}. This starts a new virtual thread per
+	 * task if available, and otherwise uses a cached pool of daemon threads.
+	 */
+	public static Executor defaultExecutor()
+	{
+		return DefaultExecutorHolder.EXECUTOR;
+	}
+
+	private static final ThreadLocal< PendingQueue > CURRENT = new ThreadLocal<>();
+
+	private static final class DefaultExecutorHolder
+	{
+		static final Executor EXECUTOR = createDefaultExecutor();
+
+		private static Executor createDefaultExecutor()
+		{
+			try
+			{
+				return ( ExecutorService ) Executors.class.getMethod( "newVirtualThreadPerTaskExecutor" ).invoke( null );
+			}
+			catch ( final ReflectiveOperationException | LinkageError e )
+			{
+				// no virtual threads before Java 21
+			}
+			final AtomicInteger count = new AtomicInteger();
+			final ThreadFactory factory = r -> {
+				final Thread thread = new Thread( r, "async-behaviour-" + count.incrementAndGet() );
+				thread.setDaemon( true );
+				return thread;
+			};
+			return Executors.newCachedThreadPool( factory );
+		}
+	}
+
+	/**
+	 * Wheel rotations of scroll invocations that have not run yet, summed per
+	 * direction, and the latest mouse position. Immutable, so that it can be
+	 * replaced atomically in {@link PendingQueue#update(UnaryOperator)}.
+	 */
+	private static final class PendingScroll implements Runnable
+	{
+		private final ScrollBehaviour behaviour;
+
+		private final double vertical;
+
+		private final double horizontal;
+
+		private final boolean hasVertical;
+
+		private final boolean hasHorizontal;
+
+		/**
+		 * Whether the first waiting scroll was horizontal. Then horizontal
+		 * rotation is delivered before vertical rotation.
+		 */
+		private final boolean horizontalFirst;
+
+		private final int x;
+
+		private final int y;
+
+		PendingScroll( final ScrollBehaviour behaviour )
+		{
+			this( behaviour, 0, 0, false, false, false, 0, 0 );
+		}
+
+		private PendingScroll(
+				final ScrollBehaviour behaviour,
+				final double vertical,
+				final double horizontal,
+				final boolean hasVertical,
+				final boolean hasHorizontal,
+				final boolean horizontalFirst,
+				final int x,
+				final int y )
+		{
+			this.behaviour = behaviour;
+			this.vertical = vertical;
+			this.horizontal = horizontal;
+			this.hasVertical = hasVertical;
+			this.hasHorizontal = hasHorizontal;
+			this.horizontalFirst = horizontalFirst;
+			this.x = x;
+			this.y = y;
+		}
+
+		PendingScroll add( final double wheelRotation, final boolean isHorizontal, final int x, final int y )
+		{
+			final boolean first = !hasVertical && !hasHorizontal;
+			return isHorizontal
+					? new PendingScroll( behaviour, vertical, horizontal + wheelRotation, hasVertical, true, first || horizontalFirst, x, y )
+					: new PendingScroll( behaviour, vertical + wheelRotation, horizontal, true, hasHorizontal, !first && horizontalFirst, x, y );
+		}
+
+		@Override
+		public void run()
+		{
+			if ( horizontalFirst )
+			{
+				if ( hasHorizontal )
+					behaviour.scroll( horizontal, true, x, y );
+				if ( hasVertical )
+					behaviour.scroll( vertical, false, x, y );
+			}
+			else
+			{
+				if ( hasVertical )
+					behaviour.scroll( vertical, false, x, y );
+				if ( hasHorizontal )
+					behaviour.scroll( horizontal, true, x, y );
+			}
+		}
+	}
+
+	/**
+	 * Runs tasks one at a time on an {@link Executor}. Tasks submitted while
+	 * a task is running are merged into one pending task, which is run
+	 * afterwards. With {@link #submit(Runnable)} the latest task replaces the
+	 * pending one, with {@link #update(UnaryOperator)} the caller decides how
+	 * to merge.
+	 */
+	private static final class PendingQueue implements Runnable
+	{
+		private final Executor executor;
+
+		private final AtomicReference< Runnable > pending = new AtomicReference<>();
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+		PendingQueue( final Executor executor )
+		{
+			this.executor = executor;
+		}
+
+		void submit( final Runnable task )
+		{
+			pending.set( task );
+			schedule();
+		}
+
+		/**
+		 * Replace the pending task (or {@code null} if there is none) by
+		 * {@code merge.apply(pending)}. {@code merge} may be called more than
+		 * once if other threads update concurrently.
+		 */
+		void update( final UnaryOperator< Runnable > merge )
+		{
+			pending.updateAndGet( merge );
+			schedule();
+		}
+
+		private void schedule()
+		{
+			if ( scheduled.compareAndSet( false, true ) )
+			{
+				try
+				{
+					executor.execute( this );
+				}
+				catch ( final RejectedExecutionException e )
+				{
+					scheduled.set( false );
+					throw e;
+				}
+			}
+		}
+
+		@Override
+		public void run()
+		{
+			CURRENT.set( this );
+			try
+			{
+				Runnable task;
+				while ( ( task = pending.getAndSet( null ) ) != null )
+					task.run();
+			}
+			finally
+			{
+				CURRENT.remove();
+				scheduled.set( false );
+				// a task may have been submitted after the last poll
+				if ( pending.get() != null )
+					schedule();
+			}
+		}
+	}
+
+	private AsyncBehaviours()
+	{}
+}
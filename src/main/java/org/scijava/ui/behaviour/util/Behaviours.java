@@ -38,11 +38,16 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 
+import org.scijava.ui.behaviour.AccumulatedScrollBehaviour;
 import org.scijava.ui.behaviour.Behaviour;
 import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.CoalescedDragBehaviour;
+import org.scijava.ui.behaviour.DragBehaviour;
 import org.scijava.ui.behaviour.InputTrigger;
 import org.scijava.ui.behaviour.InputTriggerAdder;
 import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.ScrollBehaviour;
 import org.scijava.ui.behaviour.io.InputTriggerConfig;
 
 /**
@@ -155,6 +160,68 @@ public class Behaviours
 		triggerBehaviourBindings.addBehaviourMap( name, behaviourMap );
 	}
 
+	/**
+	 * Start a batch of modifications of the {@link InputTriggerMap} and
+	 * {@link BehaviourMap}. Behaviours added until the matching
+	 * {@link #commit()} are not visible to other threads until then (see
+	 * {@link InputTriggerMap#beginBatch()}, {@link BehaviourMap#beginBatch()}).
+	 * <p>
+	 * Use as
+	 *
+	 * <pre>
+	 * behaviours.beginBatch();
+	 * try
+	 * {
+	 * 	behaviours.behaviour( ... );
+	 * 	...
+	 * }
+	 * finally
+	 * {
+	 * 	behaviours.commit();
+	 * }
+	 * </pre>
+	 * <p>
+	 * The batch of the {@link InputTriggerMap} is started before the batch of
+	 * the {@link BehaviourMap}. If the latter fails, the former is committed
+	 * before the exception is propagated, so that it does not block other
+	 * writers.
+	 */
+	public void beginBatch()
+	{
+		inputTriggerMap.beginBatch();
+		boolean started = false;
+		try
+		{
+			behaviourMap.beginBatch();
+			started = true;
+		}
+		finally
+		{
+			if ( !started )
+				inputTriggerMap.commit();
+		}
+	}
+
+	/**
+	 * End a batch of modifications started with {@link #beginBatch()}. The
+	 * {@link BehaviourMap} is published before the {@link InputTriggerMap},
+	 * each atomically, but not both together. So readers may briefly see new
+	 * behaviours that are not bound to triggers yet, but never the triggers
+	 * of new behaviours before the behaviours themselves.
+	 */
+	public void commit()
+	{
+		// publish behaviours before the triggers that refer to them
+		try
+		{
+			behaviourMap.commit();
+		}
+		finally
+		{
+			inputTriggerMap.commit();
+		}
+	}
+
 	public void behaviour( final Behaviour behaviour, final String name, final String... defaultTriggers )
 	{
 		inputTriggerAdder.put( name, defaultTriggers );
@@ -167,6 +234,44 @@ public class Behaviours
 		behaviour.put( behaviourMap );
 	}
 
+	/**
+	 * Add a {@link DragBehaviour} whose drags are coalesced to at most one
+	 * {@link DragBehaviour#drag(int, int)} per frame. See
+	 * {@link CoalescedDragBehaviour}.
+	 */
+	public void coalescedDragBehaviour( final DragBehaviour behaviour, final String name, final String... defaultTriggers )
+	{
+		behaviour( CoalescedDragBehaviour.coalesced( behaviour ), name, defaultTriggers );
+	}
+
+	/**
+	 * Add a {@link ScrollBehaviour} whose wheel rotations are accumulated to
+	 * at most one {@link ScrollBehaviour#scroll(double, boolean, int, int)}
+	 * per frame. See {@link AccumulatedScrollBehaviour}.
+	 */
+	public void accumulatedScrollBehaviour( final ScrollBehaviour behaviour, final String name, final String... defaultTriggers )
+	{
+		behaviour( AccumulatedScrollBehaviour.accumulated( behaviour ), name, defaultTriggers );
+	}
+
+	/**
+	 * Add a {@link ClickBehaviour} that runs off the event dispatch thread.
+	 * See {@link AsyncBehaviours}.
+	 */
+	public void asyncBehaviour( final ClickBehaviour behaviour, final String name, final String... defaultTriggers )
+	{
+		behaviour( AsyncBehaviours.async( behaviour ), name, defaultTriggers );
+	}
+
+	/**
+	 * Add a {@link ScrollBehaviour} that runs off the event dispatch thread.
+	 * See {@link AsyncBehaviours}.
+	 */
+	public void asyncBehaviour( final ScrollBehaviour behaviour, final String name, final String... defaultTriggers )
+	{
+		behaviour( AsyncBehaviours.async( behaviour ), name, defaultTriggers );
+	}
+
 	/**
 	 * Clears the {@link InputTriggerMap} and re-adds all behaviour keys from
 	 * {@link BehaviourMap} using the provided {@code keyConfig}.
@@ -215,10 +320,18 @@ public class Behaviours
 		}
 
 		inputTriggerAdder = keyConfig.inputTriggerAdder( inputTriggerMap, keyConfigContexts );
-		inputTriggerMap.clear();
-		for ( final String behaviourName : behaviourMap.keys() )
-			inputTriggerAdder.put( behaviourName );
+		inputTriggerMap.beginBatch();
+		try
+		{
+			inputTriggerMap.clear();
+			for ( final String behaviourName : behaviourMap.keys() )
+				inputTriggerAdder.put( behaviourName );
 
-		unassigned.forEach( ( behaviourKey, triggers ) -> triggers.forEach( trigger -> inputTriggerMap.put( trigger, behaviourKey ) ) );
+			unassigned.forEach( ( behaviourKey, triggers ) -> triggers.forEach( trigger -> inputTriggerMap.put( trigger, behaviourKey ) ) );
+		}
+		finally
+		{
+			inputTriggerMap.commit();
+		}
 	}
 }
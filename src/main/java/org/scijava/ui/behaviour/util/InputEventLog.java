@@ -0,0 +1,194 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.event.FocusEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary format of input event logs written by {@link InputEventRecorder} and
+ * read by {@link InputEventReplayer}.
+ * <p>
+ * A log starts with a header ({@link #MAGIC}, {@link #VERSION},
+ * {@link #RECORD_SIZE}), followed by fixed-size records, big-endian:
+ *
+ * <pre>
+ * short  id            AWT event id
+ * int    modifiers     getModifiers() | getModifiersEx()
+ * int    code          key code (key events) or button (mouse events)
+ * char   keyChar       key char (key events)
+ * byte   location      key location (key events)
+ * byte   clickCount    click count (mouse events)
+ * int    x, y          mouse position (mouse events)
+ * double rotation      precise wheel rotation (wheel events)
+ * long   when          getWhen(), or that of the previous event for focus events
+ * </pre>
+ */
+final class InputEventLog
+{
+	static final int MAGIC = 0x534a4945; // "SJIE"
+
+	static final short VERSION = 1;
+
+	static final short RECORD_SIZE = 38;
+
+	static final int HEADER_SIZE = 8;
+
+	static void writeHeader( final ByteBuffer buffer )
+	{
+		buffer.putInt( MAGIC );
+		buffer.putShort( VERSION );
+		buffer.putShort( RECORD_SIZE );
+	}
+
+	static void readHeader( final ByteBuffer buffer ) throws IOException
+	{
+		if ( buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC )
+			throw new IOException( "not an input event log" );
+		final short version = buffer.getShort();
+		final short recordSize = buffer.getShort();
+		if ( version != VERSION || recordSize != RECORD_SIZE )
+			throw new IOException( "unsupported input event log version " + version );
+	}
+
+	/**
+	 * Whether events with the given id are recorded.
+	 */
+	static boolean isRecorded( final int id )
+	{
+		return ( id >= KeyEvent.KEY_FIRST && id <= KeyEvent.KEY_LAST )
+				|| ( id >= MouseEvent.MOUSE_FIRST && id <= MouseEvent.MOUSE_LAST )
+				|| id == FocusEvent.FOCUS_GAINED || id == FocusEvent.FOCUS_LOST;
+	}
+
+	/**
+	 * Append a record for {@code e} to {@code buffer}.
+	 *
+	 * @param previousWhen
+	 *            timestamp of the previous record, used for events that have
+	 *            no timestamp.
+	 * @return the timestamp of the record.
+	 */
+	static long write( final AWTEvent e, final ByteBuffer buffer, final long previousWhen )
+	{
+		final int id = e.getID();
+		int modifiers = 0;
+		int code = 0;
+		char keyChar = 0;
+		int location = 0;
+		int clickCount = 0;
+		int x = 0;
+		int y = 0;
+		double rotation = 0;
+		long when = previousWhen;
+		if ( e instanceof InputEvent )
+		{
+			final InputEvent ie = ( InputEvent ) e;
+			modifiers = ie.getModifiers() | ie.getModifiersEx();
+			when = ie.getWhen();
+		}
+		if ( e instanceof KeyEvent )
+		{
+			final KeyEvent ke = ( KeyEvent ) e;
+			code = ke.getKeyCode();
+			keyChar = ke.getKeyChar();
+			location = ke.getKeyLocation();
+		}
+		else if ( e instanceof MouseEvent )
+		{
+			final MouseEvent me = ( MouseEvent ) e;
+			code = me.getButton();
+			clickCount = me.getClickCount();
+			x = me.getX();
+			y = me.getY();
+			if ( me instanceof MouseWheelEvent )
+				rotation = ( ( MouseWheelEvent ) me ).getPreciseWheelRotation();
+		}
+		buffer.putShort( ( short ) id );
+		buffer.putInt( modifiers );
+		buffer.putInt( code );
+		buffer.putChar( keyChar );
+		buffer.put( ( byte ) location );
+		buffer.put( ( byte ) Math.min( clickCount, Byte.MAX_VALUE ) );
+		buffer.putInt( x );
+		buffer.putInt( y );
+		buffer.putDouble( rotation );
+		buffer.putLong( when );
+		return when;
+	}
+
+	/**
+	 * Decode the record at the current position of {@code buffer} into an
+	 * event with the given {@code source}. The timestamp is shifted by
+	 * {@code whenOffset}.
+	 */
+	static AWTEvent read( final ByteBuffer buffer, final Component source, final long whenOffset )
+	{
+		final int id = buffer.getShort();
+		final int modifiers = buffer.getInt();
+		final int code = buffer.getInt();
+		final char keyChar = buffer.getChar();
+		final int location = buffer.get();
+		final int clickCount = buffer.get();
+		final int x = buffer.getInt();
+		final int y = buffer.getInt();
+		final double rotation = buffer.getDouble();
+		final long when = buffer.getLong() + whenOffset;
+
+		/*
+		 * Old and extended modifiers are both passed in, so the event
+		 * constructors take them as they are, instead of deriving one from
+		 * the other. Screen coordinates are not recorded, passing them avoids
+		 * querying the location of the source.
+		 */
+		if ( id >= KeyEvent.KEY_FIRST && id <= KeyEvent.KEY_LAST )
+			return new KeyEvent( source, id, when, modifiers, code, keyChar, location );
+		else if ( id == MouseEvent.MOUSE_WHEEL )
+		{
+			final int wheelRotation = ( int ) rotation;
+			return new MouseWheelEvent( source, id, when, modifiers, x, y, x, y, clickCount, false,
+					MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, wheelRotation, rotation );
+		}
+		else if ( id >= MouseEvent.MOUSE_FIRST && id <= MouseEvent.MOUSE_LAST )
+			return new MouseEvent( source, id, when, modifiers, x, y, x, y, clickCount, false, code );
+		else
+			return new FocusEvent( source, id );
+	}
+
+	private InputEventLog()
+	{}
+}
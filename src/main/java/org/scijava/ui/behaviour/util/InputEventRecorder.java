@@ -0,0 +1,267 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.event.FocusEvent;
+import java.awt.event.FocusListener;
+import java.awt.event.KeyEvent;
+import java.awt.event.KeyListener;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseListener;
+import java.awt.event.MouseMotionListener;
+import java.awt.event.MouseWheelEvent;
+import java.awt.event.MouseWheelListener;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+
+/**
+ * Records key, mouse, mouse-wheel, and focus events into a compact binary log,
+ * that can be fed back into a {@link MouseAndKeyHandler} with
+ * {@link InputEventReplayer}.
+ * <p>
+ * To record the events seen by a {@link MouseAndKeyHandler}, {@link #install}
+ * the recorder on the same component. Events can also be passed to
+ * {@link #record(AWTEvent)} directly. Events are buffered and written to the
+ * channel whenever the buffer is full, and on {@link #close()}. Recording
+ * must happen on a single thread, usually the event dispatch thread.
+ * <p>
+ * If writing fails, recording stops and {@link #close()} throws the
+ * exception.
+ */
+public class InputEventRecorder implements KeyListener, MouseListener, MouseMotionListener, MouseWheelListener, FocusListener, Closeable
+{
+	private static final int BUFFER_SIZE = 1024 * InputEventLog.RECORD_SIZE;
+
+	private final WritableByteChannel channel;
+
+	private final ByteBuffer buffer;
+
+	private int count;
+
+	private long lastWhen;
+
+	private IOException exception;
+
+	private boolean closed;
+
+	/**
+	 * Record into a new file {@code path} (or truncate an existing one).
+	 */
+	public InputEventRecorder( final Path path ) throws IOException
+	{
+		this( FileChannel.open( path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING ) );
+	}
+
+	/**
+	 * Record into {@code channel}. The channel is closed by {@link #close()}.
+	 */
+	public InputEventRecorder( final WritableByteChannel channel )
+	{
+		this.channel = channel;
+		buffer = ByteBuffer.allocateDirect( BUFFER_SIZE );
+		InputEventLog.writeHeader( buffer );
+	}
+
+	/**
+	 * Add this recorder as a listener to {@code component}.
+	 */
+	public void install( final Component component )
+	{
+		component.addKeyListener( this );
+		component.addMouseListener( this );
+		component.addMouseMotionListener( this );
+		component.addMouseWheelListener( this );
+		component.addFocusListener( this );
+	}
+
+	/**
+	 * Remove this recorder as a listener from {@code component}.
+	 */
+	public void uninstall( final Component component )
+	{
+		component.removeKeyListener( this );
+		component.removeMouseListener( this );
+		component.removeMouseMotionListener( this );
+		component.removeMouseWheelListener( this );
+		component.removeFocusListener( this );
+	}
+
+	/**
+	 * Append {@code e} to the log. Events other than key, mouse, mouse-wheel,
+	 * and focus events are ignored, as are all events after {@link #close()}
+	 * or a write error.
+	 */
+	public void record( final AWTEvent e )
+	{
+		if ( closed || exception != null || !InputEventLog.isRecorded( e.getID() ) )
+			return;
+		if ( buffer.remaining() < InputEventLog.RECORD_SIZE )
+			flush();
+		lastWhen = InputEventLog.write( e, buffer, lastWhen );
+		++count;
+	}
+
+	/**
+	 * Get the number of events recorded so far.
+	 */
+	public int getEventCount()
+	{
+		return count;
+	}
+
+	private void flush()
+	{
+		buffer.flip();
+		try
+		{
+			while ( buffer.hasRemaining() )
+				channel.write( buffer );
+		}
+		catch ( final IOException e )
+		{
+			exception = e;
+		}
+		buffer.clear();
+	}
+
+	/**
+	 * Write all buffered events and close the channel.
+	 *
+	 * @throws IOException
+	 *             if writing failed, now or while recording.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if ( closed )
+			return;
+		closed = true;
+		if ( exception == null )
+			flush();
+		try
+		{
+			channel.close();
+		}
+		catch ( final IOException e )
+		{
+			if ( exception == null )
+				exception = e;
+		}
+		if ( exception != null )
+			throw exception;
+	}
+
+	@Override
+	public void keyTyped( final KeyEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void keyPressed( final KeyEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void keyReleased( final KeyEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseClicked( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mousePressed( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseReleased( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseEntered( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseExited( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseDragged( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseMoved( final MouseEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void mouseWheelMoved( final MouseWheelEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void focusGained( final FocusEvent e )
+	{
+		record( e );
+	}
+
+	@Override
+	public void focusLost( final FocusEvent e )
+	{
+		record( e );
+	}
+}
@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+
+import org.scijava.ui.behaviour.GlobalKeyEventDispatcher;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+
+/**
+ * Feeds an input event log written by {@link InputEventRecorder} back into a
+ * {@link MouseAndKeyHandler}, with the original timing, accelerated, or as
+ * fast as possible. This does not need a display, so a recorded session can
+ * be used as a repeatable (benchmark) workload.
+ * <p>
+ * Key events are also passed to the {@link GlobalKeyEventDispatcher}, as AWT
+ * would do, so that the handler sees the recorded modifier and pressed-key
+ * state.
+ */
+public class InputEventReplayer
+{
+	/**
+	 * The records, without the header.
+	 */
+	private final ByteBuffer records;
+
+	private final int size;
+
+	/**
+	 * Source of the replayed events.
+	 */
+	private final Component source = new Component()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Read the log in file {@code path}. The file is memory-mapped.
+	 */
+	public InputEventReplayer( final Path path ) throws IOException
+	{
+		this( map( path ) );
+	}
+
+	/**
+	 * Read the log in {@code log}, from its current position to its limit.
+	 */
+	public InputEventReplayer( final ByteBuffer log ) throws IOException
+	{
+		final ByteBuffer buffer = log.duplicate();
+		InputEventLog.readHeader( buffer );
+		records = buffer.slice();
+		size = records.remaining() / InputEventLog.RECORD_SIZE;
+	}
+
+	private static ByteBuffer map( final Path path ) throws IOException
+	{
+		try (final FileChannel channel = FileChannel.open( path, StandardOpenOption.READ ))
+		{
+			return channel.map( FileChannel.MapMode.READ_ONLY, 0, channel.size() );
+		}
+	}
+
+	/**
+	 * Get the number of events in the log.
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Get the time between the first and the last event in the log.
+	 */
+	public long getDurationMillis()
+	{
+		return size == 0 ? 0 : when( size - 1 ) - when( 0 );
+	}
+
+	/**
+	 * Decode all events, with original timestamps. Pre-decoded events can be
+	 * replayed repeatedly with {@link #dispatch(AWTEvent, MouseAndKeyHandler)},
+	 * without the cost of decoding.
+	 */
+	public AWTEvent[] events( final Component source )
+	{
+		final ByteBuffer buffer = records.duplicate();
+		final AWTEvent[] events = new AWTEvent[ size ];
+		for ( int i = 0; i < size; ++i )
+			events[ i ] = InputEventLog.read( buffer, source, 0 );
+		return events;
+	}
+
+	/**
+	 * Feed all events to {@code handler}, as fast as possible.
+	 */
+	public void replay( final MouseAndKeyHandler handler )
+	{
+		try
+		{
+			replay( handler, Double.POSITIVE_INFINITY );
+		}
+		catch ( final InterruptedException e )
+		{
+			// does not wait, so cannot be interrupted
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * Feed all events to {@code handler}, {@code speed} times faster than
+	 * recorded. Timestamps of the events are shifted to the time of the replay
+	 * (but not scaled, so that double-click detection works as recorded).
+	 *
+	 * @param speed
+	 *            1 for the original timing, larger to accelerate, or
+	 *            {@link Double#POSITIVE_INFINITY} to replay as fast as
+	 *            possible.
+	 */
+	public void replay( final MouseAndKeyHandler handler, final double speed ) throws InterruptedException
+	{
+		if ( !( speed > 0 ) )
+			throw new IllegalArgumentException();
+		if ( size == 0 )
+			return;
+
+		final long firstWhen = when( 0 );
+		final long startNanos = System.nanoTime();
+		final long whenOffset = System.currentTimeMillis() - firstWhen;
+		final boolean wait = speed != Double.POSITIVE_INFINITY;
+		final ByteBuffer buffer = records.duplicate();
+		for ( int i = 0; i < size; ++i )
+		{
+			if ( wait )
+			{
+				final long due = startNanos + ( long ) ( TimeUnit.MILLISECONDS.toNanos( when( i ) - firstWhen ) / speed );
+				final long delay = due - System.nanoTime();
+				if ( delay > 0 )
+					TimeUnit.NANOSECONDS.sleep( delay );
+			}
+			dispatch( InputEventLog.read( buffer, source, whenOffset ), handler );
+		}
+	}
+
+	/**
+	 * Feed {@code e} to {@code handler}. Key events are passed to the
+	 * {@link GlobalKeyEventDispatcher} first.
+	 */
+	public static void dispatch( final AWTEvent e, final MouseAndKeyHandler handler )
+	{
+		switch ( e.getID() )
+		{
+		case KeyEvent.KEY_PRESSED:
+			GlobalKeyEventDispatcher.getInstance().dispatchKeyEvent( ( KeyEvent ) e );
+			handler.keyPressed( ( KeyEvent ) e );
+			break;
+		case KeyEvent.KEY_RELEASED:
+			GlobalKeyEventDispatcher.getInstance().dispatchKeyEvent( ( KeyEvent ) e );
+			handler.keyReleased( ( KeyEvent ) e );
+			break;
+		case KeyEvent.KEY_TYPED:
+			handler.keyTyped( ( KeyEvent ) e );
+			break;
+		case MouseEvent.MOUSE_CLICKED:
+			handler.mouseClicked( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_PRESSED:
+			handler.mousePressed( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_RELEASED:
+			handler.mouseReleased( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_ENTERED:
+			handler.mouseEntered( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_EXITED:
+			handler.mouseExited( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_MOVED:
+			handler.mouseMoved( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_DRAGGED:
+			handler.mouseDragged( ( MouseEvent ) e );
+			break;
+		case MouseEvent.MOUSE_WHEEL:
+			handler.mouseWheelMoved( ( MouseWheelEvent ) e );
+			break;
+		case FocusEvent.FOCUS_GAINED:
+			handler.focusGained( ( FocusEvent ) e );
+			break;
+		case FocusEvent.FOCUS_LOST:
+			handler.focusLost( ( FocusEvent ) e );
+			break;
+		}
+	}
+
+	/**
+	 * Get the timestamp of the {@code i}-th record.
+	 */
+	private long when( final int i )
+	{
+		return records.getLong( ( i + 1 ) * InputEventLog.RECORD_SIZE - Long.BYTES );
+	}
+}
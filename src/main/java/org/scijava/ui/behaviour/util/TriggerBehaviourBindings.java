@@ -32,12 +32,17 @@ package org.scijava.ui.behaviour.util;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.ListIterator;
+import java.util.Map;
 import java.util.Set;
 
 import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.InputTrigger;
 import org.scijava.ui.behaviour.InputTriggerMap;
 
 /**
@@ -48,6 +53,12 @@ import org.scijava.ui.behaviour.InputTriggerMap;
  * addition, that is, the last added map overrides all previous ones. For
  * {@link InputTriggerMap}s it is possible to block maps that were added
  * earlier.
+ * <p>
+ * Named modes (see {@link #addMode(String, String...)}) enable only a subset
+ * of the {@link InputTriggerMap}s. The chain of each mode is built in advance,
+ * and handlers keep a dispatch table for each mode, so that
+ * {@link #setMode(String) switching} between modes takes constant time and
+ * does not require rebuilding dispatch tables.
  *
  * @author Tobias Pietzsch &lt;tobias.pietzsch@gmail.com&gt;
  */
@@ -56,7 +67,7 @@ public final class TriggerBehaviourBindings
 	/**
 	 * the root of the {@link InputTriggerMap} chain.
 	 */
-	private final InputTriggerMap theInputTriggerMap;
+	private final ConcatenatedInputTriggerMap theInputTriggerMap;
 
 	/**
 	 * the root of the {@link BehaviourMap} chain.
@@ -68,10 +79,13 @@ public final class TriggerBehaviourBindings
 	 */
 	public TriggerBehaviourBindings()
 	{
-		theInputTriggerMap = new InputTriggerMap();
+		theInputTriggerMap = new ConcatenatedInputTriggerMap();
 		theBehaviourMap = new BehaviourMap();
 		behaviours = new ArrayList<>();
 		triggers= new ArrayList<>();
+		modes = new HashMap<>();
+		updateRoots();
+		linkTheInputTriggerMap();
 	}
 
 	/**
@@ -138,7 +152,7 @@ public final class TriggerBehaviourBindings
 		removeId( triggers, id );
 		if ( inputTriggerMap != null )
 			triggers.add( new Triggers( id, inputTriggerMap, idsToBlock ) );
-		updateTheInputTriggerMap();
+		updateTheInputTriggerMap( id );
 	}
 
 	/**
@@ -147,7 +161,115 @@ public final class TriggerBehaviourBindings
 	public void removeInputTriggerMap( final String id )
 	{
 		if ( removeId( triggers, id ) )
-			updateTheInputTriggerMap();
+			updateTheInputTriggerMap( id );
+	}
+
+	/**
+	 * Define a mode with the specified name, in which only the
+	 * {@link InputTriggerMap}s with the given ids are enabled. Within a mode,
+	 * maps are chained and blocked as described in
+	 * {@link #addInputTriggerMap(String, InputTriggerMap, String...)},
+	 * considering only the maps of the mode. Maps that are added later with one
+	 * of the ids become part of the mode. If a mode with the specified name
+	 * already exists, it is replaced.
+	 *
+	 * @param name
+	 *            name of the mode
+	 * @param ids
+	 *            ids of the {@link InputTriggerMap}s that are enabled in the
+	 *            mode.
+	 */
+	public void addMode( final String name, final String... ids )
+	{
+		addMode( name, Arrays.asList( ids ) );
+	}
+
+	/**
+	 * Define a mode with the specified name, in which only the
+	 * {@link InputTriggerMap}s with the given ids are enabled. Within a mode,
+	 * maps are chained and blocked as described in
+	 * {@link #addInputTriggerMap(String, InputTriggerMap, Collection)},
+	 * considering only the maps of the mode. Maps that are added later with one
+	 * of the ids become part of the mode. If a mode with the specified name
+	 * already exists, it is replaced.
+	 *
+	 * @param name
+	 *            name of the mode
+	 * @param ids
+	 *            ids of the {@link InputTriggerMap}s that are enabled in the
+	 *            mode.
+	 */
+	public void addMode( final String name, final Collection< String > ids )
+	{
+		// a replaced mode keeps its root, so that handlers patch its dispatch
+		// table instead of building a new one
+		Mode m = modes.get( name );
+		if ( m == null )
+		{
+			m = new Mode( name );
+			modes.put( name, m );
+			updateRoots();
+		}
+		m.ids.clear();
+		m.ids.addAll( ids );
+		linkMode( m );
+	}
+
+	/**
+	 * Remove the mode with the specified name. If it is the current mode, all
+	 * {@link InputTriggerMap}s are enabled again.
+	 */
+	public void removeMode( final String name )
+	{
+		final Mode removed = modes.remove( name );
+		updateRoots();
+		if ( mode != null && mode.name.equals( name ) )
+		{
+			mode = null;
+			linkTheInputTriggerMap();
+		}
+		if ( removed != null )
+		{
+			removed.root.setParent( null );
+			for ( final ModeLayer layer : removed.layers.values() )
+				layer.detach();
+		}
+	}
+
+	/**
+	 * Switch to the mode with the specified name. This only replaces the
+	 * parent of the {@link #getConcatenatedInputTriggerMap() concatenated
+	 * InputTriggerMap}. Handlers that use it switch to the dispatch table of
+	 * the mode (or of all maps, for {@code null}), which is only rebuilt if
+	 * it was never used before, or its maps were modified since.
+	 *
+	 * @param name
+	 *            name of the mode, or {@code null} to enable all
+	 *            {@link InputTriggerMap}s.
+	 * @throws IllegalArgumentException
+	 *             if there is no mode with the specified name.
+	 */
+	public void setMode( final String name )
+	{
+		final Mode m = name == null ? null : modes.get( name );
+		if ( name != null && m == null )
+			throw new IllegalArgumentException( "unknown mode \"" + name + "\"" );
+		if ( m != mode )
+		{
+			mode = m;
+			linkTheInputTriggerMap();
+		}
+	}
+
+	/**
+	 * Get the name of the current mode.
+	 *
+	 * @return the name of the current mode, or {@code null} if all
+	 *         {@link InputTriggerMap}s are enabled.
+	 */
+	public String getMode()
+	{
+		return mode == null ? null : mode.name;
 	}
 
 	/**
@@ -229,10 +351,165 @@ public final class TriggerBehaviourBindings
 		}
 	}
 
+	private static class Mode
+	{
+		private final String name;
+
+		private final HashSet< String > ids;
+
+		/**
+		 * Root of the chain of the {@link InputTriggerMap}s of this mode.
+		 */
+		private final InputTriggerMap root;
+
+		/**
+		 * The {@link ModeLayer}s in the chain, by the map they present. Layers
+		 * are re-used when the chain is re-linked, so that only the links
+		 * that actually change are modified.
+		 */
+		private IdentityHashMap< InputTriggerMap, ModeLayer > layers;
+
+		public Mode( final String name )
+		{
+			this.name = name;
+			this.ids = new HashSet<>();
+			this.root = new InputTriggerMap();
+			this.layers = new IdentityHashMap<>();
+		}
+	}
+
+	/**
+	 * Presents the bindings of an {@link InputTriggerMap} in the chain of a
+	 * {@link Mode}. The map itself cannot be put into several chains, because
+	 * it has only one parent.
+	 */
+	private static class ModeLayer extends InputTriggerMap
+	{
+		private final InputTriggerMap inputTriggerMap;
+
+		public ModeLayer( final InputTriggerMap inputTriggerMap )
+		{
+			this.inputTriggerMap = inputTriggerMap;
+			trackLocalModifications( inputTriggerMap );
+		}
+
+		@Override
+		protected Set< String > getLocalKeys( final InputTrigger inputTrigger )
+		{
+			return localKeysOf( inputTriggerMap, inputTrigger );
+		}
+
+		@Override
+		protected Set< InputTrigger > getLocalTriggers( final String behaviourKey )
+		{
+			return localTriggersOf( inputTriggerMap, behaviourKey );
+		}
+
+		@Override
+		protected Map< InputTrigger, Set< String > > getLocalBindings()
+		{
+			return localBindingsOf( inputTriggerMap );
+		}
+
+		/**
+		 * Unlink this layer from its chain and stop tracking the map it
+		 * presents, after it was dropped from the chain.
+		 */
+		void detach()
+		{
+			setParent( null );
+			untrackModifications( inputTriggerMap );
+		}
+	}
+
+	/**
+	 * The {@link #getConcatenatedInputTriggerMap() concatenated
+	 * InputTriggerMap}. Its parent is the root of the chain of all (not
+	 * blocked) maps, or the root of the chain of the current mode. Handlers
+	 * dispatch from that root directly, so that they keep a dispatch table per
+	 * mode, and re-parenting this map does not invalidate them.
+	 * <p>
+	 * Bindings can still be put into this map directly. As long as it has any,
+	 * handlers dispatch from this map instead, so that these bindings are not
+	 * skipped. Its dispatch table is then rebuilt on every mode switch.
+	 */
+	private static class ConcatenatedInputTriggerMap extends InputTriggerMap
+	{
+		private volatile InputTriggerMap dispatchMap = this;
+
+		/**
+		 * The roots of the chain of all maps and of the chains of all modes,
+		 * i.e., the maps that {@link #dispatchMap} can be set to. Replaced
+		 * when modes are added or removed.
+		 */
+		private volatile Set< InputTriggerMap > roots = Collections.emptySet();
+
+		/**
+		 * Whether bindings were put into this map directly. Updated by writers
+		 * from the local bindings, which are a view of the current state, so
+		 * this takes constant time.
+		 */
+		private volatile boolean hasLocalBindings = false;
+
+		@Override
+		public InputTriggerMap getDispatchMap()
+		{
+			return hasLocalBindings ? this : dispatchMap;
+		}
+
+		@Override
+		public boolean isDispatchMap( final InputTriggerMap map )
+		{
+			return map == this || roots.contains( map );
+		}
+
+		@Override
+		public synchronized void put( final InputTrigger inputTrigger, final String behaviourKey )
+		{
+			super.put( inputTrigger, behaviourKey );
+			hasLocalBindings = !getLocalBindings().isEmpty();
+		}
+
+		@Override
+		public synchronized void remove( final InputTrigger inputTrigger, final String behaviourKey )
+		{
+			super.remove( inputTrigger, behaviourKey );
+			hasLocalBindings = !getLocalBindings().isEmpty();
+		}
+
+		@Override
+		public synchronized void removeAll( final InputTrigger inputTrigger )
+		{
+			super.removeAll( inputTrigger );
+			hasLocalBindings = !getLocalBindings().isEmpty();
+		}
+
+		@Override
+		public synchronized void clear()
+		{
+			super.clear();
+			hasLocalBindings = false;
+		}
+	}
+
 	private final List< Behaviours > behaviours;
 
 	private final List< Triggers > triggers;
 
+	private final Map< String, Mode > modes;
+
+	/**
+	 * The current mode, or {@code null} if all maps are enabled.
+	 */
+	private Mode mode;
+
+	/**
+	 * Root of the chain of all (not blocked) maps. Like the {@link Mode#root}
+	 * of a mode, this is never replaced, so that handlers keep its dispatch
+	 * table while a mode is active.
+	 */
+	private final InputTriggerMap allRoot = new InputTriggerMap();
+
 	private static boolean removeId( final List< ? extends WithId > list, final String id )
 	{
 		for ( int i = 0; i < list.size(); ++i )
@@ -261,10 +538,15 @@ public final class TriggerBehaviourBindings
 		root.setParent( null );
 	}
 
-	private void updateTheInputTriggerMap()
+	/**
+	 * Re-link the chain of all maps, and the chains of the modes that include
+	 * the map with the given {@code id}, after it was added or removed.
+	 */
+	private void updateTheInputTriggerMap( final String id )
 	{
 		final ListIterator< Triggers > iter = triggers.listIterator( triggers.size() );
-		InputTriggerMap root = theInputTriggerMap;
+		final List< InputTriggerMap > chain = new ArrayList<>();
+		chain.add( allRoot );
 		final HashSet< String > blocked = new HashSet<>();
 		while ( iter.hasPrevious() )
 		{
@@ -275,16 +557,103 @@ public final class TriggerBehaviourBindings
 
 			final InputTriggerMap map = keys.getInputTriggerMap();
 			if ( map != null )
-			{
-				map.setParent( null );
-				root.setParent( map );
-				root = map;
-			}
+				chain.add( map );
 
 			blocked.addAll( keys.getKeysIdsToBlock() );
 			if ( blocked.contains( "all" ) )
 				break;
 		}
-		root.setParent( null );
+		link( chain );
+
+		for ( final Mode m : modes.values() )
+			if ( m.ids.contains( id ) )
+				linkMode( m );
+	}
+
+	/**
+	 * Chain the {@link InputTriggerMap}s of {@code mode} to its root. Layers
+	 * of maps that were already in the chain are re-used.
+	 */
+	private void linkMode( final Mode mode )
+	{
+		final ListIterator< Triggers > iter = triggers.listIterator( triggers.size() );
+		final List< InputTriggerMap > chain = new ArrayList<>();
+		chain.add( mode.root );
+		final HashSet< String > blocked = new HashSet<>();
+		final IdentityHashMap< InputTriggerMap, ModeLayer > layers = new IdentityHashMap<>();
+		while ( iter.hasPrevious() )
+		{
+			final Triggers keys = iter.previous();
+
+			if ( !mode.ids.contains( keys.getId() ) || blocked.contains( keys.getId() ) )
+				continue;
+
+			final InputTriggerMap map = keys.getInputTriggerMap();
+			ModeLayer layer = mode.layers.get( map );
+			if ( layer == null )
+				layer = new ModeLayer( map );
+			layers.put( map, layer );
+			chain.add( layer );
+
+			blocked.addAll( keys.getKeysIdsToBlock() );
+			if ( blocked.contains( "all" ) )
+				break;
+		}
+		link( chain );
+		for ( final Map.Entry< InputTriggerMap, ModeLayer > entry : mode.layers.entrySet() )
+			if ( !layers.containsKey( entry.getKey() ) )
+				entry.getValue().detach();
+		mode.layers = layers;
+	}
+
+	/**
+	 * Make each map in {@code chain} the parent of the map before it, and
+	 * give the last map no parent. Setting the parent invalidates the dispatch
+	 * tables of a map and the maps that depend on it, so only links that
+	 * actually change are set. Maps whose parent changes are detached first,
+	 * so that re-ordering the chain never creates a cycle.
+	 */
+	private static void link( final List< InputTriggerMap > chain )
+	{
+		final int n = chain.size();
+		for ( int i = 0; i < n; ++i )
+		{
+			final InputTriggerMap map = chain.get( i );
+			final InputTriggerMap parent = i + 1 < n ? chain.get( i + 1 ) : null;
+			if ( map.getParent() != parent && map.getParent() != null )
+				map.setParent( null );
+		}
+		for ( int i = 0; i < n - 1; ++i )
+			link( chain.get( i ), chain.get( i + 1 ) );
+	}
+
+	/**
+	 * Set the parent of {@code map} to {@code parent}, unless it is already.
+	 */
+	private static void link( final InputTriggerMap map, final InputTriggerMap parent )
+	{
+		if ( map.getParent() != parent )
+			map.setParent( parent );
+	}
+
+	/**
+	 * Update the {@link ConcatenatedInputTriggerMap#roots roots} of the
+	 * concatenated map after modes were added or removed.
+	 */
+	private void updateRoots()
+	{
+		final Set< InputTriggerMap > roots = Collections.newSetFromMap( new IdentityHashMap<>() );
+		roots.add( allRoot );
+		for ( final Mode m : modes.values() )
+			roots.add( m.root );
+		theInputTriggerMap.roots = roots;
+	}
+
+	private void linkTheInputTriggerMap()
+	{
+		final Mode m = mode;
+		final InputTriggerMap root = m == null ? allRoot : m.root;
+		theInputTriggerMap.dispatchMap = root;
+		link( theInputTriggerMap, root );
 	}
 }
@@ -29,7 +29,6 @@
  */
 package org.scijava.ui.behaviour.util;
 
-import java.util.HashMap;
 import java.util.Map;
 
 import org.scijava.ui.behaviour.Behaviour;
@@ -43,29 +42,10 @@ public class WrappedBehaviourMap extends BehaviourMap
 {
 	private final BehaviourMap behaviourMap;
 
-	private BehaviourMap parent;
-
-	private int expectedParentModCount;
-
 	public WrappedBehaviourMap( final BehaviourMap behaviourMap )
 	{
 		this.behaviourMap = behaviourMap;
-		parent = null;
-		expectedParentModCount = 0;
-	}
-
-	@Override
-	public void setParent( final BehaviourMap map )
-	{
-		parent = map;
-		if ( map != null )
-			expectedParentModCount = parent.modCount();
-	}
-
-	@Override
-	public BehaviourMap getParent()
-	{
-		return parent;
+		trackModifications( behaviourMap );
 	}
 
 	@Override
@@ -75,9 +55,10 @@ public class WrappedBehaviourMap extends BehaviourMap
 	}
 
 	@Override
-	public synchronized Behaviour get( final String key )
+	public Behaviour get( final String key )
 	{
 		final Behaviour behaviour = behaviourMap.get( key );
+		final BehaviourMap parent = getParent();
 		if ( behaviour == null && parent != null )
 			return parent.get( key );
 		else
@@ -97,29 +78,8 @@ public class WrappedBehaviourMap extends BehaviourMap
 	}
 
 	@Override
-	public synchronized Map< String, Behaviour > getAllBindings()
-	{
-		final Map< String, Behaviour > allBindings = ( parent == null ) ? new HashMap<>() : parent.getAllBindings();
-
-		for ( final Map.Entry< String, Behaviour > entry : behaviourMap.getAllBindings().entrySet() )
-			allBindings.put( entry.getKey(), entry.getValue() );
-
-		return allBindings;
-	}
-
-	@Override
-	public int modCount()
+	protected Map< String, Behaviour > getLocalBindings()
 	{
-		if ( parent != null )
-		{
-			final int m = parent.modCount();
-			if ( m != expectedParentModCount )
-			{
-				expectedParentModCount = m;
-				behaviourMap.remove( null ); // hack to bump
-												// behaviourMap.modCount
-			}
-		}
-		return behaviourMap.modCount();
+		return behaviourMap.getAllBindingsSnapshot();
 	}
 }
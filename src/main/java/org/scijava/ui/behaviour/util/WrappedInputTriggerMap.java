@@ -29,8 +29,6 @@
  */
 package org.scijava.ui.behaviour.util;
 
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -45,47 +43,28 @@ public class WrappedInputTriggerMap extends InputTriggerMap
 {
 	private final InputTriggerMap inputTriggerMap;
 
-	private InputTriggerMap parent;
-
-	private int expectedParentModCount;
-
 	public WrappedInputTriggerMap( final InputTriggerMap inputTriggerMap )
 	{
 		this.inputTriggerMap = inputTriggerMap;
-		parent = null;
-		expectedParentModCount = 0;
+		trackModifications( inputTriggerMap );
 	}
 
 	@Override
-	public void setParent( final InputTriggerMap map )
+	public synchronized void put( final InputTrigger inputTrigger, final String behaviourKey )
 	{
-		parent = map;
-		if ( map != null )
-			expectedParentModCount = parent.modCount();
+		throw new UnsupportedOperationException( getClass().getSimpleName() + " cannot be modified." );
 	}
 
 	@Override
-	public InputTriggerMap getParent()
+	protected Set< String > getLocalKeys( final InputTrigger inputTrigger )
 	{
-		return parent;
+		return inputTriggerMap.get( inputTrigger );
 	}
 
 	@Override
-	public synchronized void put( final InputTrigger inputTrigger, final String behaviourKey )
+	protected Set< InputTrigger > getLocalTriggers( final String behaviourKey )
 	{
-		throw new UnsupportedOperationException( getClass().getSimpleName() + " cannot be modified." );
-	}
-
-	@Override
-	public synchronized Set< String > get( final InputTrigger inputTrigger )
-	{
-		Set< String > keys = null;
-		if ( parent != null )
-			keys = parent.get( inputTrigger );
-		else
-			keys = new HashSet<>();
-		keys.addAll( inputTriggerMap.get( inputTrigger ) );
-		return keys;
+		return inputTriggerMap.getTriggers( behaviourKey );
 	}
 
 	@Override
@@ -107,40 +86,8 @@ public class WrappedInputTriggerMap extends InputTriggerMap
 	}
 
 	@Override
-	public synchronized Map< InputTrigger, Set< String > > getAllBindings()
-	{
-		final Map< InputTrigger, Set< String > > allBindings;
-		if ( parent != null )
-			allBindings = parent.getAllBindings();
-		else
-			allBindings = new HashMap<>();
-
-		for ( final Map.Entry< InputTrigger, Set< String > > entry : inputTriggerMap.getAllBindings().entrySet() )
-		{
-			final InputTrigger inputTrigger = entry.getKey();
-			if ( entry.getValue() == null || entry.getValue().isEmpty() )
-				continue;
-
-			final Set< String > behaviourKeys = allBindings.computeIfAbsent( inputTrigger, k -> new HashSet<>() );
-			behaviourKeys.addAll( entry.getValue() );
-		}
-
-		return allBindings;
-	}
-
-	@Override
-	public int modCount()
+	protected Map< InputTrigger, Set< String > > getLocalBindings()
 	{
-		if ( parent != null )
-		{
-			final int m = parent.modCount();
-			if ( m != expectedParentModCount )
-			{
-				expectedParentModCount = m;
-				inputTriggerMap.remove( null, null ); // hack to bump
-														// inputTriggerMap.modCount
-			}
-		}
-		return inputTriggerMap.modCount();
+		return inputTriggerMap.getAllBindingsSnapshot();
 	}
 }
@@ -0,0 +1,142 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.wheel;
+
+import java.awt.event.InputEvent;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * The wheel rotation for {@link AccumulatedScrollBehaviour}s is summed per
+ * direction, and delivered with the next frame or when it reaches the scroll
+ * threshold.
+ */
+public class AccumulatedScrollBehaviourTest
+{
+	private final List< Double > vertical = new ArrayList<>();
+
+	private final List< Double > horizontal = new ArrayList<>();
+
+	private int plainScrolls;
+
+	private MouseAndKeyHandler handler;
+
+	@Before
+	public void setUp()
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "scroll", "accumulated", AccumulatedScrollBehaviour.accumulated(
+				( wheelRotation, isHorizontal, x, y ) -> ( isHorizontal ? horizontal : vertical ).add( wheelRotation ) ) );
+		bind( inputMap, behaviourMap, "scroll", "plain", ( ScrollBehaviour ) ( wheelRotation, isHorizontal, x, y ) -> ++plainScrolls );
+		handler = TestInput.handler( inputMap, behaviourMap );
+		handler.setFrameInterval( 0 );
+	}
+
+	private static double sum( final List< Double > rotations )
+	{
+		double sum = 0;
+		for ( final double r : rotations )
+			sum += r;
+		return sum;
+	}
+
+	@Test
+	public void testThreshold()
+	{
+		handler.setScrollThreshold( 1 );
+		for ( int i = 0; i < 38; ++i )
+			handler.mouseWheelMoved( wheel( 0, 0, 0.25 ) );
+
+		// delivered each time the sum reaches 1, the rest waits for a frame
+		assertEquals( 38, plainScrolls );
+		assertEquals( 9, vertical.size() );
+		assertEquals( 9, sum( vertical ), 0 );
+
+		handler.frameTick();
+		handler.frameTick();
+		assertEquals( 10, vertical.size() );
+		assertEquals( 9.5, sum( vertical ), 0 );
+	}
+
+	@Test
+	public void testPerDirection()
+	{
+		handler.setScrollThreshold( 100 );
+		for ( int i = 0; i < 50; ++i )
+		{
+			handler.mouseWheelMoved( wheel( 0, 0, 0.125 ) );
+			handler.mouseWheelMoved( wheel( 0, InputEvent.SHIFT_DOWN_MASK, -0.25 ) );
+		}
+		assertEquals( 0, vertical.size() + horizontal.size() );
+
+		handler.frameTick();
+		assertEquals( 1, vertical.size() );
+		assertEquals( 1, horizontal.size() );
+		assertEquals( 6.25, vertical.get( 0 ), 0 );
+		assertEquals( -12.5, horizontal.get( 0 ), 0 );
+		assertEquals( 100, plainScrolls );
+
+		handler.frameTick();
+		assertEquals( 1, vertical.size() );
+		assertEquals( 1, horizontal.size() );
+	}
+
+	@Test
+	public void testDeliveredScrollIsNotPending() throws ReflectiveOperationException
+	{
+		handler.setScrollThreshold( 1 );
+		for ( int i = 0; i < 4; ++i )
+			handler.mouseWheelMoved( wheel( 0, 0, 0.25 ) );
+		assertEquals( 1, vertical.size() );
+		assertEquals( 0, numPendingScrolls() );
+
+		handler.mouseWheelMoved( wheel( 0, 0, 0.25 ) );
+		assertEquals( 1, numPendingScrolls() );
+		handler.frameTick();
+		assertEquals( 0, numPendingScrolls() );
+		assertEquals( 1.25, sum( vertical ), 0 );
+	}
+
+	private int numPendingScrolls() throws ReflectiveOperationException
+	{
+		final Field field = MouseAndKeyHandler.class.getDeclaredField( "numPendingScrolls" );
+		field.setAccessible( true );
+		return ( Integer ) field.get( handler );
+	}
+}
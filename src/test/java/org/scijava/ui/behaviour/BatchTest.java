@@ -0,0 +1,241 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link InputTriggerMap#beginBatch()} and
+ * {@link BehaviourMap#beginBatch()}: nesting, visibility of unpublished
+ * modifications to the batching thread and to other threads, and writers on
+ * other threads waiting for the batch.
+ */
+public class BatchTest
+{
+	private static final InputTrigger A = InputTrigger.getFromString( "A" );
+
+	private static final InputTrigger B = InputTrigger.getFromString( "B" );
+
+	private static final Behaviour BEHAVIOUR = ( ClickBehaviour ) ( x, y ) -> {};
+
+	private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+	@After
+	public void shutdown()
+	{
+		other.shutdownNow();
+	}
+
+	private < T > T onOtherThread( final Callable< T > callable ) throws Exception
+	{
+		return other.submit( callable ).get( 10, TimeUnit.SECONDS );
+	}
+
+	@Test
+	public void testNestedBatchPublishesOnOutermostCommit() throws Exception
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		final int modCount = map.modCount();
+
+		map.beginBatch();
+		map.put( A, "a" );
+		map.beginBatch();
+		map.put( B, "b" );
+		map.commit();
+		assertEquals( modCount, map.modCount() );
+		assertEquals( Collections.emptySet(), onOtherThread( () -> map.get( B ) ) );
+
+		map.commit();
+		assertEquals( modCount + 1, map.modCount() );
+		assertEquals( Collections.singleton( "a" ), onOtherThread( () -> map.get( A ) ) );
+		assertEquals( Collections.singleton( "b" ), onOtherThread( () -> map.get( B ) ) );
+	}
+
+	@Test( expected = IllegalStateException.class )
+	public void testUnmatchedCommit()
+	{
+		new InputTriggerMap().commit();
+	}
+
+	@Test
+	public void testCommitOnOtherThread() throws Exception
+	{
+		final BehaviourMap map = new BehaviourMap();
+		map.beginBatch();
+		try
+		{
+			onOtherThread( () -> {
+				map.commit();
+				return null;
+			} );
+			fail();
+		}
+		catch ( final ExecutionException e )
+		{
+			assertTrue( e.getCause() instanceof IllegalStateException );
+		}
+		finally
+		{
+			map.commit();
+		}
+	}
+
+	@Test
+	public void testInputTriggerMapReadYourWrites() throws Exception
+	{
+		final InputTriggerMap parent = new InputTriggerMap();
+		final InputTriggerMap map = new InputTriggerMap();
+		map.setParent( parent );
+		parent.put( A, "p" );
+		// cache the published snapshot
+		map.getAllBindingsSnapshot();
+
+		map.beginBatch();
+		map.put( A, "a" );
+		map.put( B, "b" );
+		map.remove( B, "b" );
+		map.put( B, "c" );
+
+		final Set< String > expectedA = new HashSet<>( Arrays.asList( "p", "a" ) );
+		assertEquals( expectedA, map.get( A ) );
+		assertEquals( Collections.singleton( "c" ), map.get( B ) );
+		assertEquals( Collections.singleton( B ), map.getTriggers( "c" ) );
+		assertEquals( expectedA, map.getAllBindingsSnapshot().get( A ) );
+		assertEquals( expectedA, map.getAllBindings().get( A ) );
+		assertEquals( Collections.singleton( "c" ), map.getBindings().get( B ) );
+
+		// other threads see neither the modifications nor a snapshot of them
+		assertEquals( Collections.singleton( "p" ), onOtherThread( () -> map.get( A ) ) );
+		assertEquals( Collections.singleton( "p" ), onOtherThread( () -> map.getAllBindingsSnapshot().get( A ) ) );
+		assertFalse( onOtherThread( () -> map.getAllBindingsSnapshot().containsKey( B ) ) );
+
+		map.commit();
+		assertEquals( expectedA, onOtherThread( () -> map.getAllBindingsSnapshot().get( A ) ) );
+		assertEquals( Collections.singleton( "c" ), onOtherThread( () -> map.get( B ) ) );
+	}
+
+	@Test
+	public void testBehaviourMapReadYourWrites() throws Exception
+	{
+		final BehaviourMap map = new BehaviourMap();
+		map.put( "old", BEHAVIOUR );
+		map.getAllBindingsSnapshot();
+
+		map.beginBatch();
+		map.put( "new", BEHAVIOUR );
+		map.remove( "old" );
+
+		assertEquals( BEHAVIOUR, map.get( "new" ) );
+		assertEquals( null, map.get( "old" ) );
+		assertEquals( Collections.singleton( "new" ), map.keys() );
+		assertEquals( Collections.singleton( "new" ), map.getAllBindingsSnapshot().keySet() );
+
+		assertEquals( Collections.singleton( "old" ), onOtherThread( map::keys ) );
+		assertEquals( Collections.singleton( "old" ), onOtherThread( () -> map.getAllBindingsSnapshot().keySet() ) );
+
+		map.commit();
+		assertEquals( Collections.singleton( "new" ), onOtherThread( map::keys ) );
+		assertEquals( Collections.singleton( "new" ), onOtherThread( () -> map.getAllBindingsSnapshot().keySet() ) );
+	}
+
+	@Test
+	public void testDispatchTableIgnoresUnpublished() throws Exception
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		behaviourMap.put( "a", BEHAVIOUR );
+		behaviourMap.put( "b", BEHAVIOUR );
+		final MouseAndKeyHandler handler = new MouseAndKeyHandler();
+		handler.setInputMap( inputMap );
+		handler.setBehaviourMap( behaviourMap );
+		handler.update();
+
+		inputMap.put( A, "a" );
+		inputMap.beginBatch();
+		inputMap.put( B, "b" );
+		// the table is rebuilt by the batching thread, and shared
+		assertEquals( 1, handler.update().size() );
+		assertEquals( 1, ( int ) onOtherThread( () -> handler.update().size() ) );
+		inputMap.commit();
+
+		assertEquals( 2, handler.update().size() );
+	}
+
+	@Test
+	public void testOtherWritersWaitForBatch() throws Exception
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		final int modCount = map.modCount();
+
+		map.beginBatch();
+		map.put( A, "a" );
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final Future< ? > write = other.submit( () -> {
+			started.countDown();
+			map.put( B, "b" );
+		} );
+		started.await();
+		try
+		{
+			write.get( 200, TimeUnit.MILLISECONDS );
+			fail( "write on other thread did not wait for batch" );
+		}
+		catch ( final TimeoutException e )
+		{
+			// expected
+		}
+		assertEquals( Collections.emptySet(), map.get( B ) );
+
+		map.commit();
+		write.get( 10, TimeUnit.SECONDS );
+		assertEquals( Collections.singleton( "a" ), map.get( A ) );
+		assertEquals( Collections.singleton( "b" ), map.get( B ) );
+		assertEquals( modCount + 2, map.modCount() );
+	}
+}
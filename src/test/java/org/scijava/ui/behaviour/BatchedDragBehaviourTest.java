@@ -0,0 +1,115 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.dragged;
+import static org.scijava.ui.behaviour.TestInput.pressed;
+import static org.scijava.ui.behaviour.TestInput.released;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * {@link BatchedDragBehaviour}s get every position of a drag, in order and
+ * batched per frame, and all pending positions before
+ * {@link BatchedDragBehaviour#end(int, int)}.
+ */
+public class BatchedDragBehaviourTest
+{
+	@Test
+	public void testAllPositionsInOrder()
+	{
+		final List< Integer > batchSizes = new ArrayList<>();
+		final List< Long > positions = new ArrayList<>();
+		final List< String > log = new ArrayList<>();
+
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "batched", new BatchedDragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				log.add( "init " + x );
+			}
+
+			@Override
+			public void drag( final int[] x, final int[] y, final long[] when, final int count )
+			{
+				batchSizes.add( count );
+				for ( int i = 0; i < count; ++i )
+				{
+					assertEquals( x[ i ], y[ i ] );
+					assertEquals( x[ i ] * 10L, when[ i ] );
+					positions.add( ( long ) x[ i ] );
+				}
+				log.add( "drag " + x[ count - 1 ] );
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				fail();
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				log.add( "end " + x );
+			}
+		} );
+		final MouseAndKeyHandler handler = TestInput.handler( inputMap, behaviourMap );
+		handler.setFrameInterval( 0 );
+
+		handler.mousePressed( pressed( 10, 1, 1 ) );
+		for ( int x = 2; x <= 100; ++x )
+			handler.mouseDragged( dragged( x * 10L, x, x ) );
+		handler.frameTick();
+		handler.frameTick();
+		for ( int x = 101; x <= 250; ++x )
+			handler.mouseDragged( dragged( x * 10L, x, x ) );
+		handler.mouseReleased( released( 2510, 250, 250 ) );
+
+		final List< Long > expected = new ArrayList<>();
+		for ( long x = 2; x <= 250; ++x )
+			expected.add( x );
+		assertEquals( expected, positions );
+		assertEquals( 2, batchSizes.size() );
+		assertEquals( 99, ( int ) batchSizes.get( 0 ) );
+		assertEquals( "init 1", log.get( 0 ) );
+		assertEquals( "drag 250", log.get( log.size() - 2 ) );
+		assertEquals( "end 250", log.get( log.size() - 1 ) );
+	}
+}
@@ -0,0 +1,173 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.scijava.ui.behaviour.BehaviourMetrics.NUM_BUCKETS;
+import static org.scijava.ui.behaviour.BehaviourMetrics.bucket;
+import static org.scijava.ui.behaviour.BehaviourMetrics.lowerBound;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.clicked;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.Collections;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * {@link BehaviourMetrics} sorts latencies into contiguous buckets, records
+ * invocations dispatched by a {@link MouseAndKeyHandler} only while enabled,
+ * and reports the handlers it monitors.
+ */
+public class BehaviourMetricsTest
+{
+	private static final MouseEvent CLICK = clicked( InputEvent.BUTTON1_DOWN_MASK, MouseEvent.BUTTON1, 1, 1 );
+
+	@Test
+	public void testBucketBounds()
+	{
+		for ( int i = 0; i < NUM_BUCKETS; ++i )
+		{
+			assertEquals( i, bucket( lowerBound( i ) ) );
+			if ( i > 0 )
+				assertTrue( lowerBound( i ) > lowerBound( i - 1 ) );
+			if ( i + 1 < NUM_BUCKETS )
+				assertEquals( i, bucket( lowerBound( i + 1 ) - 1 ) );
+		}
+		assertEquals( 229376, lowerBound( NUM_BUCKETS - 1 ) );
+	}
+
+	@Test
+	public void testOutOfRangeLatencies()
+	{
+		assertEquals( 0, bucket( -1 ) );
+		assertEquals( 0, bucket( Long.MIN_VALUE ) );
+		assertEquals( NUM_BUCKETS - 1, bucket( lowerBound( NUM_BUCKETS - 1 ) * 2 ) );
+		assertEquals( NUM_BUCKETS - 1, bucket( Long.MAX_VALUE ) );
+	}
+
+	@Test
+	public void testBucketBoundsAreReported()
+	{
+		final long[] bounds = new BehaviourMetrics().getLatencyBucketBounds();
+		assertEquals( NUM_BUCKETS, bounds.length );
+		for ( int i = 0; i < NUM_BUCKETS; ++i )
+			assertEquals( lowerBound( i ), bounds[ i ] );
+	}
+
+	@Test
+	public void testInvocationsAreRecorded()
+	{
+		final BehaviourMetrics metrics = new BehaviourMetrics();
+		final long now = System.currentTimeMillis();
+		metrics.invoked( "a", now );
+		metrics.invoked( "a", now );
+		metrics.invoked( "b", now );
+		metrics.invoked( null, now );
+
+		final Map< String, Long > counts = metrics.getInvocationCounts();
+		assertEquals( 3, counts.size() );
+		assertEquals( Long.valueOf( 2 ), counts.get( "a" ) );
+		assertEquals( Long.valueOf( 1 ), counts.get( "b" ) );
+		assertEquals( Long.valueOf( 1 ), counts.get( "" ) );
+
+		long total = 0;
+		for ( final long n : metrics.getLatencyHistogram() )
+			total += n;
+		assertEquals( 4, total );
+
+		// an event from the future counts as latency 0
+		metrics.invoked( "c", now + 60_000 );
+		assertEquals( 1, metrics.getLatencyHistograms().get( "c" )[ 0 ] );
+	}
+
+	@Test
+	public void testDisabledMetricsRecordNothing()
+	{
+		final BehaviourMetrics metrics = new BehaviourMetrics();
+		assertTrue( metrics.isEnabled() );
+		metrics.setEnabled( false );
+		assertFalse( metrics.isEnabled() );
+		metrics.invoked( "a", System.currentTimeMillis() );
+		assertEquals( Collections.emptyMap(), metrics.getInvocationCounts() );
+		assertArrayEquals( new long[ NUM_BUCKETS ], metrics.getLatencyHistogram() );
+
+		metrics.setEnabled( true );
+		metrics.invoked( "a", System.currentTimeMillis() );
+		assertEquals( Collections.singletonMap( "a", 1L ), metrics.getInvocationCounts() );
+	}
+
+	@Test
+	public void testReset()
+	{
+		final BehaviourMetrics metrics = new BehaviourMetrics();
+		metrics.invoked( "a", System.currentTimeMillis() );
+		metrics.reset();
+		assertEquals( Collections.emptyMap(), metrics.getInvocationCounts() );
+		assertArrayEquals( new long[ NUM_BUCKETS ], metrics.getLatencyHistogram() );
+	}
+
+	@Test
+	public void testHandlerInvocationsAreCounted()
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "click", ( ClickBehaviour ) ( x, y ) -> {} );
+		final MouseAndKeyHandler handler = TestInput.handler( inputMap, behaviourMap );
+		final BehaviourMetrics metrics = new BehaviourMetrics();
+		handler.setMetrics( metrics );
+
+		handler.mouseClicked( CLICK );
+		handler.mouseClicked( CLICK );
+		assertEquals( Collections.singletonMap( "click", 2L ), metrics.getInvocationCounts() );
+
+		final Map< String, Integer > bindings = metrics.getBindingCounts();
+		assertEquals( 1, bindings.size() );
+		assertEquals( Integer.valueOf( handler.getBindingCount() ), bindings.values().iterator().next() );
+		final Map< String, Long > updates = metrics.getDispatchTableUpdateCounts();
+		assertEquals( 1, updates.size() );
+		assertEquals( Long.valueOf( handler.getDispatchTableUpdateCount() ), updates.values().iterator().next() );
+
+		metrics.setEnabled( false );
+		handler.mouseClicked( CLICK );
+		assertEquals( Collections.singletonMap( "click", 2L ), metrics.getInvocationCounts() );
+
+		handler.setMetrics( null );
+		metrics.setEnabled( true );
+		handler.mouseClicked( CLICK );
+		assertEquals( Collections.singletonMap( "click", 2L ), metrics.getInvocationCounts() );
+		assertEquals( Collections.emptyMap(), metrics.getBindingCounts() );
+	}
+}
@@ -0,0 +1,124 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.clicked;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * A {@link BehaviourWatchdog} records a {@link BehaviourWatchdog.Stall} with
+ * a sample of the stack for behaviours that exceed the budget, and none for
+ * fast behaviours.
+ */
+public class BehaviourWatchdogTest
+{
+	private static final MouseEvent CLICK = clicked( InputEvent.BUTTON1_DOWN_MASK, MouseEvent.BUTTON1, 1, 1 );
+
+	private static void sleep( final long millis )
+	{
+		try
+		{
+			Thread.sleep( millis );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static MouseAndKeyHandler handler( final long slowMillis )
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "slow click", ( ClickBehaviour ) ( x, y ) -> sleep( slowMillis ) );
+		bind( inputMap, behaviourMap, "button1", "fast click", ( ClickBehaviour ) ( x, y ) -> {} );
+		return TestInput.handler( inputMap, behaviourMap );
+	}
+
+	@Test
+	public void testStallIsRecorded()
+	{
+		final MouseAndKeyHandler handler = handler( 300 );
+		try (final BehaviourWatchdog watchdog = new BehaviourWatchdog( 20 ))
+		{
+			final List< BehaviourWatchdog.Stall > notified = new ArrayList<>();
+			watchdog.stallListeners().add( notified::add );
+			handler.setWatchdog( watchdog );
+			handler.mouseClicked( CLICK );
+
+			final List< BehaviourWatchdog.Stall > stalls = watchdog.getStalls();
+			assertEquals( 1, stalls.size() );
+			assertEquals( stalls, notified );
+
+			final BehaviourWatchdog.Stall stall = stalls.get( 0 );
+			assertEquals( "slow click", stall.behaviourKey() );
+			assertEquals( "click", stall.method() );
+			assertEquals( InputTrigger.getFromString( "button1" ), stall.trigger() );
+			assertTrue( stall.durationNanos() >= TimeUnit.MILLISECONDS.toNanos( 300 ) );
+
+			// the sample ends in the behaviour, above the handler
+			final StackTraceElement[] stack = stall.stackTrace();
+			assertTrue( stack.length > 0 );
+			boolean inBehaviour = false;
+			for ( final StackTraceElement element : stack )
+			{
+				assertTrue( !element.getClassName().equals( MouseAndKeyHandler.class.getName() ) );
+				inBehaviour |= element.getClassName().startsWith( BehaviourWatchdogTest.class.getName() );
+			}
+			assertTrue( inBehaviour );
+		}
+	}
+
+	@Test
+	public void testCapacity()
+	{
+		final MouseAndKeyHandler handler = handler( 5 );
+		try (final BehaviourWatchdog watchdog = new BehaviourWatchdog( 1, 2 ))
+		{
+			handler.setWatchdog( watchdog );
+			for ( int i = 0; i < 3; ++i )
+				handler.mouseClicked( CLICK );
+			assertEquals( 2, watchdog.getStalls().size() );
+
+			watchdog.clearStalls();
+			assertEquals( 0, watchdog.getStalls().size() );
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.dragged;
+import static org.scijava.ui.behaviour.TestInput.pressed;
+import static org.scijava.ui.behaviour.TestInput.released;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * {@link CoalescedDragBehaviour}s get the latest position once per frame, and
+ * the final position before {@link CoalescedDragBehaviour#end(int, int)}.
+ */
+public class CoalescedDragBehaviourTest
+{
+	private final List< String > coalesced = new ArrayList<>();
+
+	private int plainDrags;
+
+	private MouseAndKeyHandler handler;
+
+	@Before
+	public void setUp()
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "coalesced", CoalescedDragBehaviour.coalesced( new DragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				coalesced.add( "init " + x );
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				coalesced.add( "drag " + x );
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				coalesced.add( "end " + x );
+			}
+		} ) );
+		bind( inputMap, behaviourMap, "button1", "plain", new DragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				++plainDrags;
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{}
+		} );
+
+		handler = TestInput.handler( inputMap, behaviourMap );
+		handler.setFrameInterval( 0 );
+	}
+
+	@Test
+	public void testLatestPositionPerFrame()
+	{
+		handler.mousePressed( pressed( 0, 1, 1 ) );
+		for ( int x = 2; x <= 100; ++x )
+			handler.mouseDragged( dragged( 0, x, x ) );
+		handler.frameTick();
+		handler.frameTick();
+		for ( int x = 101; x <= 150; ++x )
+			handler.mouseDragged( dragged( 0, x, x ) );
+		handler.frameTick();
+		handler.mouseReleased( released( 0, 150, 150 ) );
+
+		assertEquals( asList( "init 1", "drag 100", "drag 150", "end 150" ), coalesced );
+		assertEquals( 149, plainDrags );
+	}
+
+	@Test
+	public void testFinalPositionBeforeEnd()
+	{
+		handler.mousePressed( pressed( 0, 1, 1 ) );
+		for ( int x = 2; x <= 10; ++x )
+			handler.mouseDragged( dragged( 0, x, x ) );
+		handler.frameTick();
+		handler.mouseDragged( dragged( 0, 11, 11 ) );
+		handler.mouseDragged( dragged( 0, 12, 12 ) );
+		handler.mouseReleased( released( 0, 12, 12 ) );
+
+		assertEquals( asList( "init 1", "drag 10", "drag 12", "end 12" ), coalesced );
+	}
+}
@@ -0,0 +1,242 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+import org.scijava.ui.behaviour.AbstractMouseAndKeyHandler.BehaviourEntry;
+import org.scijava.ui.behaviour.AbstractMouseAndKeyHandler.BehaviourIndex;
+import org.scijava.ui.behaviour.AbstractMouseAndKeyHandler.DispatchTable;
+import org.scijava.ui.behaviour.util.WrappedInputTriggerMap;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * The {@link DispatchTable} of a handler, patched from the change logs of its
+ * maps, dispatches exactly like a table built from scratch, after random
+ * sequences of puts, removes, and clears on a chain of maps.
+ */
+public class DispatchTablePatchTest
+{
+	private static final String[] TRIGGERS = { "A", "B", "ctrl A", "button1", "shift button1", "A | all", "ctrl B | shift", "scroll" };
+
+	private static final int NUM_ROUNDS = 50;
+
+	private static final int NUM_STEPS = 100;
+
+	private static class Handler extends AbstractMouseAndKeyHandler
+	{}
+
+	private static final List< InputTrigger > triggers = new ArrayList<>();
+
+	static
+	{
+		for ( final String trigger : TRIGGERS )
+			triggers.add( InputTrigger.getFromString( trigger ) );
+	}
+
+	/**
+	 * Describe the entries of {@code index} that match each of the test
+	 * triggers.
+	 */
+	private static < T extends Behaviour > Set< String > matches( final String name, final BehaviourIndex< T > index )
+	{
+		final Set< String > matches = new HashSet<>();
+		final List< BehaviourEntry< T > > entries = new ArrayList<>();
+		for ( final InputTrigger trigger : triggers )
+		{
+			final TIntSet keys = new TIntHashSet( trigger.getPressedKeys() );
+			index.collectMatches( trigger.getMask(), trigger.getMask(), keys, entries );
+			for ( final BehaviourEntry< T > entry : entries )
+				matches.add( name + " " + trigger + ": " + entry.buttons() + " -> " + entry.behaviourKey() + " " + System.identityHashCode( entry.behaviour() ) );
+			entries.clear();
+		}
+		matches.add( name + " size " + index.size() );
+		return matches;
+	}
+
+	private static Set< String > matches( final DispatchTable table )
+	{
+		final Set< String > matches = new HashSet<>();
+		matches.addAll( matches( "buttonDrags", table.buttonDrags() ) );
+		matches.addAll( matches( "keyDrags", table.keyDrags() ) );
+		matches.addAll( matches( "buttonClicks", table.buttonClicks() ) );
+		matches.addAll( matches( "keyClicks", table.keyClicks() ) );
+		matches.addAll( matches( "scrolls", table.scrolls() ) );
+		matches.add( "bindings " + table.size() );
+		return matches;
+	}
+
+	private static Behaviour[] behaviours()
+	{
+		final Behaviour[] behaviours = new Behaviour[ 6 ];
+		for ( int i = 0; i < behaviours.length; ++i )
+		{
+			switch ( i % 3 )
+			{
+			case 0:
+				behaviours[ i ] = ( ClickBehaviour ) ( x, y ) -> {};
+				break;
+			case 1:
+				behaviours[ i ] = new DragBehaviour()
+				{
+					@Override
+					public void init( final int x, final int y )
+					{}
+
+					@Override
+					public void drag( final int x, final int y )
+					{}
+
+					@Override
+					public void end( final int x, final int y )
+					{}
+				};
+				break;
+			default:
+				behaviours[ i ] = ( ScrollBehaviour ) ( wheelRotation, isHorizontal, x, y ) -> {};
+				break;
+			}
+		}
+		return behaviours;
+	}
+
+	@Test
+	public void testPatchEqualsRebuild()
+	{
+		final Random random = new Random( 1 );
+		final Behaviour[] behaviours = behaviours();
+		for ( int round = 0; round < NUM_ROUNDS; ++round )
+		{
+			// a chain with a wrapped map in the middle
+			final InputTriggerMap i0 = new InputTriggerMap();
+			final InputTriggerMap i1 = new InputTriggerMap();
+			final InputTriggerMap inner = new InputTriggerMap();
+			final WrappedInputTriggerMap wrapped = new WrappedInputTriggerMap( inner );
+			wrapped.setParent( i0 );
+			i1.setParent( wrapped );
+			final BehaviourMap b0 = new BehaviourMap();
+			final BehaviourMap b1 = new BehaviourMap();
+			b1.setParent( b0 );
+			final InputTriggerMap[] inputMaps = { i0, i1, inner };
+			final BehaviourMap[] behaviourMaps = { b0, b1 };
+
+			final Handler handler = new Handler();
+			handler.setInputMap( i1 );
+			handler.setBehaviourMap( b1 );
+
+			for ( int step = 0; step < NUM_STEPS; ++step )
+			{
+				// mostly a few operations, sometimes many
+				final int numOps = 1 + random.nextInt( random.nextInt( 10 ) == 0 ? 400 : 4 );
+				for ( int i = 0; i < numOps; ++i )
+				{
+					final int op = random.nextInt( 20 );
+					final InputTriggerMap im = inputMaps[ random.nextInt( inputMaps.length ) ];
+					final BehaviourMap bm = behaviourMaps[ random.nextInt( behaviourMaps.length ) ];
+					final InputTrigger trigger = triggers.get( random.nextInt( triggers.size() ) );
+					final String key = "k" + random.nextInt( 6 );
+					if ( op < 7 )
+						im.put( trigger, key );
+					else if ( op < 11 )
+						im.remove( trigger, key );
+					else if ( op < 12 )
+						im.removeAll( trigger );
+					else if ( op < 16 )
+						bm.put( key, behaviours[ random.nextInt( behaviours.length ) ] );
+					else if ( op < 19 )
+						bm.remove( key );
+					else if ( random.nextInt( 10 ) == 0 )
+					{
+						if ( random.nextBoolean() )
+							im.clear();
+						else
+							bm.clear();
+					}
+				}
+
+				final DispatchTable patched = handler.update();
+				final DispatchTable rebuilt = new DispatchTable( i1, b1 );
+				assertEquals( "round " + round + ", step " + step, matches( rebuilt ), matches( patched ) );
+			}
+		}
+	}
+
+	@Test
+	public void testBindingCount()
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		final Handler handler = new Handler();
+		handler.setInputMap( inputMap );
+		handler.setBehaviourMap( behaviourMap );
+
+		// indexed as button drag, button click, and scroll
+		final class DragClickScroll implements DragBehaviour, ClickBehaviour, ScrollBehaviour
+		{
+			@Override
+			public void init( final int x, final int y )
+			{}
+
+			@Override
+			public void drag( final int x, final int y )
+			{}
+
+			@Override
+			public void end( final int x, final int y )
+			{}
+
+			@Override
+			public void click( final int x, final int y )
+			{}
+
+			@Override
+			public void scroll( final double wheelRotation, final boolean isHorizontal, final int x, final int y )
+			{}
+		}
+		TestInput.bind( inputMap, behaviourMap, "button1", "all", new DragClickScroll() );
+		inputMap.put( InputTrigger.getFromString( "A" ), "unbound" );
+		handler.update();
+		assertEquals( 2, handler.getBindingCount() );
+
+		inputMap.put( InputTrigger.getFromString( "B" ), "all" );
+		inputMap.remove( InputTrigger.getFromString( "A" ), "unbound" );
+		handler.update();
+		assertEquals( 2, handler.getBindingCount() );
+	}
+}
@@ -0,0 +1,140 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import org.junit.Test;
+
+/**
+ * Checks that dispatching mouse press, drag, release, click and wheel events
+ * through a {@link MouseAndKeyHandler} does not allocate in steady state. The
+ * bytes allocated by the current thread are measured with
+ * {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)}, the
+ * test is skipped on VMs that do not support this.
+ */
+public class EventAllocationTest
+{
+	private static final int WARMUP_ROUNDS = 50_000;
+
+	private static final int MEASURE_ROUNDS = 200_000;
+
+	private static final int DRAGS_PER_ROUND = 10;
+
+	private static long counter;
+
+	@Test
+	public void testDispatchDoesNotAllocate()
+	{
+		final ThreadMXBean mxBean = ManagementFactory.getThreadMXBean();
+		assumeTrue( mxBean instanceof com.sun.management.ThreadMXBean );
+		final com.sun.management.ThreadMXBean threadBean = ( com.sun.management.ThreadMXBean ) mxBean;
+		assumeTrue( threadBean.isThreadAllocatedMemorySupported() && threadBean.isThreadAllocatedMemoryEnabled() );
+
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+
+		final DragBehaviour drag = new DragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				++counter;
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				counter += x;
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				++counter;
+			}
+		};
+		final ClickBehaviour click = ( x, y ) -> ++counter;
+		final ScrollBehaviour scroll = ( wheelRotation, isHorizontal, x, y ) -> ++counter;
+
+		inputMap.put( InputTrigger.getFromString( "button1" ), "drag" );
+		inputMap.put( InputTrigger.getFromString( "ctrl button1 | shift" ), "drag ignore" );
+		inputMap.put( InputTrigger.getFromString( "button3" ), "click" );
+		inputMap.put( InputTrigger.getFromString( "scroll" ), "scroll" );
+		inputMap.put( InputTrigger.getFromString( "ctrl scroll | all" ), "scroll ignore" );
+		behaviourMap.put( "drag", drag );
+		behaviourMap.put( "drag ignore", drag );
+		behaviourMap.put( "click", click );
+		behaviourMap.put( "scroll", scroll );
+		behaviourMap.put( "scroll ignore", scroll );
+
+		final MouseAndKeyHandler handler = TestInput.handler( inputMap, behaviourMap );
+
+		final MouseEvent pressed = TestInput.pressed( 0, 10, 10 );
+		final MouseEvent dragged = TestInput.dragged( 0, 20, 20 );
+		final MouseEvent released = TestInput.released( 0, 20, 20 );
+		final MouseEvent moved = TestInput.mouse( MouseEvent.MOUSE_MOVED, 0, 0, 30, 30, 0, MouseEvent.NOBUTTON );
+		final MouseEvent clicked = TestInput.clicked( InputEvent.BUTTON3_DOWN_MASK, MouseEvent.BUTTON3, 30, 30 );
+		final MouseWheelEvent wheel = TestInput.wheel( 0, 0, 1 );
+
+		final Runnable round = () -> {
+			handler.mousePressed( pressed );
+			for ( int i = 0; i < DRAGS_PER_ROUND; ++i )
+				handler.mouseDragged( dragged );
+			handler.mouseReleased( released );
+			handler.mouseMoved( moved );
+			handler.mouseClicked( clicked );
+			handler.mouseWheelMoved( wheel );
+		};
+
+		for ( int i = 0; i < WARMUP_ROUNDS; ++i )
+			round.run();
+
+		final long threadId = Thread.currentThread().getId();
+		final long before = threadBean.getThreadAllocatedBytes( threadId );
+		for ( int i = 0; i < MEASURE_ROUNDS; ++i )
+			round.run();
+		final long after = threadBean.getThreadAllocatedBytes( threadId );
+
+		final int eventsPerRound = 5 + DRAGS_PER_ROUND;
+		final double bytesPerEvent = ( double ) ( after - before ) / ( MEASURE_ROUNDS * eventsPerRound );
+
+		// allow for the few bytes allocated by getThreadAllocatedBytes() itself
+		assertTrue( String.format( "allocated %d bytes for %d events (%.4f bytes/event)",
+				after - before, MEASURE_ROUNDS * eventsPerRound, bytesPerEvent ), bytesPerEvent < 0.01 );
+	}
+}
@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.clicked;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * A flight recording of a click on a {@link MouseAndKeyHandler} contains the
+ * {@link FlightRecorderEvents} with the expected fields. The {@code jdk.jfr}
+ * API is used reflectively, like in {@link FlightRecorderEvents}, and the test
+ * is skipped where it is not available.
+ */
+public class FlightRecorderEventsTest
+{
+	private static final String PREFIX = "org.scijava.ui.behaviour.";
+
+	private static boolean jfrAvailable()
+	{
+		try
+		{
+			Class.forName( "jdk.jfr.Recording" );
+			Class.forName( "jdk.jfr.consumer.RecordingFile" );
+			return true;
+		}
+		catch ( final ClassNotFoundException e )
+		{
+			return false;
+		}
+	}
+
+	private static Object call( final Object target, final String method, final Object... args ) throws ReflectiveOperationException
+	{
+		final Class< ? >[] types = new Class< ? >[ args.length ];
+		for ( int i = 0; i < args.length; ++i )
+			types[ i ] = args[ i ] instanceof Path ? Path.class : args[ i ].getClass();
+		return target.getClass().getMethod( method, types ).invoke( target, args );
+	}
+
+	@Test
+	public void testEventsAreRecorded() throws Exception
+	{
+		assumeTrue( jfrAvailable() );
+
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "click", ( ClickBehaviour ) ( x, y ) -> {} );
+		final MouseAndKeyHandler handler = TestInput.handler( inputMap, behaviourMap );
+
+		final Path file = Files.createTempFile( "behaviour", ".jfr" );
+		final List< Object > events = new ArrayList<>();
+		try
+		{
+			final Object recording = Class.forName( "jdk.jfr.Recording" ).getConstructor().newInstance();
+			for ( final String name : new String[] { "InputDispatched", "BehaviourInvoked", "DispatchTableRebuilt" } )
+				call( recording, "enable", PREFIX + name );
+			call( recording, "start" );
+			handler.mouseClicked( clicked( InputEvent.BUTTON1_DOWN_MASK, MouseEvent.BUTTON1, 1, 1 ) );
+			call( recording, "stop" );
+			call( recording, "dump", file );
+			call( recording, "close" );
+
+			final Class< ? > recordingFile = Class.forName( "jdk.jfr.consumer.RecordingFile" );
+			for ( final Object event : ( List< ? > ) recordingFile.getMethod( "readAllEvents", Path.class ).invoke( null, file ) )
+			{
+				final Object type = call( event, "getEventType" );
+				if ( ( ( String ) call( type, "getName" ) ).startsWith( PREFIX ) )
+					events.add( event );
+			}
+		}
+		finally
+		{
+			Files.deleteIfExists( file );
+		}
+
+		final Object rebuilt = find( events, "DispatchTableRebuilt" );
+		assertEquals( 1, value( rebuilt, "bindings" ) );
+		assertFalse( ( Boolean ) value( rebuilt, "patched" ) );
+
+		final Object dispatched = find( events, "InputDispatched" );
+		assertEquals( "mouseClicked", value( dispatched, "eventType" ) );
+		assertEquals( "click", value( dispatched, "behaviourKeys" ) );
+		assertTrue( ( Integer ) value( dispatched, "scanned" ) >= 1 );
+
+		final Object invoked = find( events, "BehaviourInvoked" );
+		assertEquals( "click", value( invoked, "behaviourKey" ) );
+		assertEquals( "click", value( invoked, "method" ) );
+		assertEquals( "button1", value( invoked, "trigger" ) );
+	}
+
+	private static Object find( final List< Object > events, final String name ) throws ReflectiveOperationException
+	{
+		for ( final Object event : events )
+			if ( call( call( event, "getEventType" ), "getName" ).equals( PREFIX + name ) )
+				return event;
+		throw new AssertionError( "no " + name + " event recorded" );
+	}
+
+	private static Object value( final Object event, final String field ) throws ReflectiveOperationException
+	{
+		return event.getClass().getMethod( "getValue", String.class ).invoke( event, field );
+	}
+}
@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.scijava.ui.behaviour.TestInput.key;
+
+import java.awt.event.KeyEvent;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import gnu.trove.set.TIntSet;
+
+/**
+ * {@link GlobalKeyEventDispatcher#pressedKeys()} returns immutable snapshots,
+ * and {@link GlobalKeyEventDispatcher#pressedKeysVersion()} increases with
+ * every change of the pressed keys and identifies the current snapshot.
+ */
+public class GlobalKeyEventDispatcherTest
+{
+	private static final int[] KEYS = { KeyEvent.VK_F7, KeyEvent.VK_Q, KeyEvent.VK_EURO_SIGN };
+
+	private GlobalKeyEventDispatcher dispatcher;
+
+	@Before
+	public void setUp()
+	{
+		dispatcher = GlobalKeyEventDispatcher.getInstance();
+		releaseAll();
+	}
+
+	@After
+	public void releaseAll()
+	{
+		for ( final int k : KEYS )
+			release( k );
+	}
+
+	private void press( final int keyCode )
+	{
+		dispatcher.dispatchKeyEvent( key( KeyEvent.KEY_PRESSED, 0, 0, keyCode, KeyEvent.CHAR_UNDEFINED, KeyEvent.KEY_LOCATION_STANDARD ) );
+	}
+
+	private void release( final int keyCode )
+	{
+		dispatcher.dispatchKeyEvent( key( KeyEvent.KEY_RELEASED, 0, 0, keyCode, KeyEvent.CHAR_UNDEFINED, KeyEvent.KEY_LOCATION_STANDARD ) );
+	}
+
+	@Test
+	public void testVersionIncreasesOnPressAndRelease()
+	{
+		long version = dispatcher.pressedKeysVersion();
+		for ( final int k : KEYS )
+		{
+			press( k );
+			assertTrue( dispatcher.pressedKeys().contains( k ) );
+			assertTrue( dispatcher.pressedKeysVersion() > version );
+			version = dispatcher.pressedKeysVersion();
+		}
+		for ( final int k : KEYS )
+		{
+			release( k );
+			assertFalse( dispatcher.pressedKeys().contains( k ) );
+			assertTrue( dispatcher.pressedKeysVersion() > version );
+			version = dispatcher.pressedKeysVersion();
+		}
+	}
+
+	@Test
+	public void testUnchangedVersionReturnsIdenticalSnapshot()
+	{
+		press( KeyEvent.VK_F7 );
+		press( KeyEvent.VK_EURO_SIGN );
+		final long version = dispatcher.pressedKeysVersion();
+		final TIntSet snapshot = dispatcher.pressedKeys();
+		assertSame( snapshot, dispatcher.pressedKeys() );
+
+		// auto-repeat, and modifier keys which are not tracked in the set
+		press( KeyEvent.VK_F7 );
+		press( KeyEvent.VK_EURO_SIGN );
+		press( KeyEvent.VK_CONTROL );
+		release( KeyEvent.VK_CONTROL );
+		release( KeyEvent.VK_Q );
+		assertEquals( version, dispatcher.pressedKeysVersion() );
+		assertSame( snapshot, dispatcher.pressedKeys() );
+	}
+
+	@Test
+	public void testSnapshotDoesNotChange()
+	{
+		final TIntSet before = dispatcher.pressedKeys();
+		final int size = before.size();
+
+		press( KeyEvent.VK_F7 );
+		press( KeyEvent.VK_EURO_SIGN );
+		final TIntSet pressed = dispatcher.pressedKeys();
+		assertEquals( size, before.size() );
+		assertFalse( before.contains( KeyEvent.VK_F7 ) );
+		assertFalse( before.contains( KeyEvent.VK_EURO_SIGN ) );
+		assertEquals( size + 2, pressed.size() );
+
+		release( KeyEvent.VK_F7 );
+		release( KeyEvent.VK_EURO_SIGN );
+		assertEquals( size + 2, pressed.size() );
+		assertTrue( pressed.contains( KeyEvent.VK_F7 ) );
+		assertTrue( pressed.contains( KeyEvent.VK_EURO_SIGN ) );
+		assertEquals( before, dispatcher.pressedKeys() );
+
+		try
+		{
+			pressed.add( KeyEvent.VK_Q );
+			fail( "snapshot is modifiable" );
+		}
+		catch ( final UnsupportedOperationException e )
+		{
+			// expected
+		}
+	}
+}
@@ -0,0 +1,160 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.ui.behaviour.util.WrappedInputTriggerMap;
+
+/**
+ * Bindings of {@link InputTriggerMap}s in both directions, trigger to
+ * behaviour keys ({@link InputTriggerMap#get(InputTrigger)}) and behaviour key
+ * to triggers ({@link InputTriggerMap#getTriggers(String)}), across parent
+ * chains and after removing bindings.
+ */
+public class InputTriggerMapTest
+{
+	private static final InputTrigger A = InputTrigger.getFromString( "A" );
+
+	private static final InputTrigger B = InputTrigger.getFromString( "B" );
+
+	private static final InputTrigger C = InputTrigger.getFromString( "ctrl C" );
+
+	private InputTriggerMap parent;
+
+	private InputTriggerMap map;
+
+	@Before
+	public void setUp()
+	{
+		parent = new InputTriggerMap();
+		map = new InputTriggerMap();
+		map.setParent( parent );
+	}
+
+	@SafeVarargs
+	private static < T > HashSet< T > set( final T... elements )
+	{
+		return new HashSet<>( Arrays.asList( elements ) );
+	}
+
+	@Test
+	public void testGetTriggersAcrossParents()
+	{
+		parent.put( A, "a" );
+		parent.put( B, "shared" );
+		map.put( C, "shared" );
+		map.put( A, "c" );
+
+		assertEquals( set( A ), map.getTriggers( "a" ) );
+		assertEquals( set( B, C ), map.getTriggers( "shared" ) );
+		assertEquals( set( A ), map.getTriggers( "c" ) );
+		assertEquals( set( B ), parent.getTriggers( "shared" ) );
+		assertEquals( Collections.emptySet(), parent.getTriggers( "c" ) );
+		assertEquals( Collections.emptySet(), map.getTriggers( "unbound" ) );
+
+		final InputTriggerMap grandchild = new InputTriggerMap();
+		grandchild.setParent( map );
+		grandchild.put( A, "shared" );
+		assertEquals( set( A, B, C ), grandchild.getTriggers( "shared" ) );
+
+		map.setParent( null );
+		assertEquals( set( A, C ), grandchild.getTriggers( "shared" ) );
+		assertEquals( Collections.emptySet(), grandchild.getTriggers( "a" ) );
+	}
+
+	@Test
+	public void testGetTriggersAfterRemove()
+	{
+		map.put( A, "a" );
+		map.put( B, "a" );
+		map.put( B, "b" );
+		map.put( C, "b" );
+
+		map.remove( A, "a" );
+		assertEquals( set( B ), map.getTriggers( "a" ) );
+		assertEquals( Collections.emptySet(), map.get( A ) );
+
+		map.removeAll( B );
+		assertEquals( Collections.emptySet(), map.getTriggers( "a" ) );
+		assertEquals( set( C ), map.getTriggers( "b" ) );
+		assertEquals( Collections.emptySet(), map.get( B ) );
+
+		map.clear();
+		assertEquals( Collections.emptySet(), map.getTriggers( "b" ) );
+		assertEquals( Collections.emptySet(), map.get( C ) );
+	}
+
+	@Test
+	public void testGetTriggersThroughWrappedMap()
+	{
+		parent.put( A, "a" );
+		map.put( B, "a" );
+		final WrappedInputTriggerMap wrapped = new WrappedInputTriggerMap( map );
+		assertEquals( set( A, B ), wrapped.getTriggers( "a" ) );
+
+		final InputTriggerMap wrappedParent = new InputTriggerMap();
+		wrappedParent.put( C, "a" );
+		wrapped.setParent( wrappedParent );
+		assertEquals( set( A, B, C ), wrapped.getTriggers( "a" ) );
+
+		map.remove( B, "a" );
+		assertEquals( set( A, C ), wrapped.getTriggers( "a" ) );
+	}
+
+	@Test
+	public void testGetTriggerBoundOnlyInParent()
+	{
+		parent.put( A, "a" );
+		assertEquals( set( "a" ), map.get( A ) );
+		assertEquals( Collections.emptySet(), map.get( B ) );
+	}
+
+	@Test
+	public void testRemoveDropsEmptyEntry()
+	{
+		map.put( A, "a" );
+		map.put( A, "b" );
+		map.remove( A, "a" );
+		assertEquals( set( "b" ), map.getLocalBindings().get( A ) );
+
+		map.remove( A, "b" );
+		assertFalse( map.getLocalBindings().containsKey( A ) );
+		assertEquals( Collections.emptyMap(), map.getBindings() );
+		assertEquals( Collections.emptySet(), map.getTriggers( "b" ) );
+	}
+}
@@ -0,0 +1,287 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertTrue;
+
+import java.awt.event.KeyEvent;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import javax.swing.KeyStroke;
+
+import org.junit.Test;
+
+import gnu.trove.TIntCollection;
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Differential check of the {@link InputTrigger} string parser against the
+ * previous parser (based on {@code String.split}, {@link StringTokenizer}, and
+ * {@link KeyStroke#getKeyStroke(String)}), which is copied here. Both parsers
+ * are run on a fixed corpus and on random strings built from key names,
+ * modifiers, and separators, and must agree on all fields of the parsed
+ * trigger, or both reject the string.
+ */
+public class InputTriggerParserTest
+{
+	private static final int NUM_RANDOM = 20_000;
+
+	@Test
+	public void testAgreesWithLegacyParser() throws Exception
+	{
+		final List< String > vocabulary = new ArrayList<>();
+		for ( final Field field : KeyEvent.class.getFields() )
+			if ( field.getName().startsWith( "VK_" ) && Modifier.isStatic( field.getModifiers() ) )
+				vocabulary.add( field.getName().substring( 3 ) );
+		final List< String > keyNames = new ArrayList<>( vocabulary );
+		vocabulary.addAll( Arrays.asList(
+				"shift", "control", "ctrl", "meta", "alt", "altGraph", "button1", "button2", "button3",
+				"double-click", "scroll", "win", "pressed", "released", "typed", "all", "not", "mapped",
+				"a", "Shift", "VK_A", "", "\t", "|", "||", " | ", "-" ) );
+
+		final List< String > corpus = new ArrayList<>();
+		for ( final String key : keyNames )
+		{
+			corpus.add( key );
+			corpus.add( "ctrl shift " + key );
+			corpus.add( "released " + key );
+			corpus.add( "win " + key );
+			corpus.add( key + " | all" );
+			corpus.add( key.toLowerCase() );
+		}
+		corpus.addAll( Arrays.asList(
+				"A", " A ", "A|", "A||", "|A", "A|B", "A|B|", "A|B|C", "A| |", "A |  shift  ", "|", "||", " ",
+				"\tA\n", "ctrl\tA", "ctrl  A", "ctrl A A", "A ctrl", "ctrl", "shift ctrl", "typed a", "typed A",
+				"pressed", "ctrl pressed A", "ctrl released A", "pressed released A", "A released",
+				"button1", "button1 A", "double-click button1", "scroll", "shift scroll", "win", "alt altGraph F1",
+				"not mapped", "all", "A | all", "A | all all", "A | ctrl all", "not mapped | all" ) );
+
+		final List< String > mismatches = new ArrayList<>();
+		for ( final String s : corpus )
+			compare( s, mismatches );
+
+		final Random random = new Random( 1 );
+		final String[] separators = { " ", " ", " ", "  ", "|", " | ", "\t", "" };
+		final StringBuilder sb = new StringBuilder();
+		for ( int i = 0; i < NUM_RANDOM && mismatches.size() < 20; ++i )
+		{
+			sb.setLength( 0 );
+			final int n = 1 + random.nextInt( 5 );
+			for ( int j = 0; j < n; ++j )
+			{
+				if ( j > 0 || random.nextInt( 8 ) == 0 )
+					sb.append( separators[ random.nextInt( separators.length ) ] );
+				sb.append( vocabulary.get( random.nextInt( vocabulary.size() ) ) );
+			}
+			if ( random.nextInt( 8 ) == 0 )
+				sb.append( separators[ random.nextInt( separators.length ) ] );
+			compare( sb.toString(), mismatches );
+		}
+
+		assertTrue( String.join( "\n", mismatches ), mismatches.isEmpty() );
+	}
+
+	private static void compare( final String s, final List< String > mismatches ) throws ReflectiveOperationException
+	{
+		String expected;
+		try
+		{
+			expected = legacyParse( s ).toString();
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			expected = "error";
+		}
+
+		String actual;
+		try
+		{
+			actual = fields( InputTrigger.parse( s ) ).toString();
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			actual = "error";
+		}
+
+		if ( !expected.equals( actual ) )
+			mismatches.add( "\"" + s + "\": expected " + expected + ", parsed " + actual );
+	}
+
+	/**
+	 * The fields of a parsed trigger.
+	 */
+	private static final class Parsed
+	{
+		final int mask;
+
+		final int[] pressedKeys;
+
+		final KeyStroke keyStroke;
+
+		final boolean ignoreAll;
+
+		final int ignoreMask;
+
+		final int[] ignoreKeys;
+
+		Parsed( final int mask, final TIntCollection pressedKeys, final KeyStroke keyStroke, final boolean ignoreAll, final int ignoreMask, final TIntCollection ignoreKeys )
+		{
+			this.mask = mask;
+			this.pressedKeys = sorted( pressedKeys );
+			this.keyStroke = keyStroke;
+			this.ignoreAll = ignoreAll;
+			this.ignoreMask = ignoreMask;
+			this.ignoreKeys = sorted( ignoreKeys );
+		}
+
+		private static int[] sorted( final TIntCollection keys )
+		{
+			final int[] a = keys.toArray();
+			Arrays.sort( a );
+			return a;
+		}
+
+		@Override
+		public String toString()
+		{
+			return "mask=" + mask + " keys=" + Arrays.toString( pressedKeys )
+					+ " keyStroke=" + Objects.toString( keyStroke )
+					+ " ignoreAll=" + ignoreAll + " ignoreMask=" + ignoreMask + " ignoreKeys=" + Arrays.toString( ignoreKeys );
+		}
+	}
+
+	private static Parsed fields( final InputTrigger trigger ) throws ReflectiveOperationException
+	{
+		return new Parsed(
+				trigger.getMask(),
+				trigger.getPressedKeys(),
+				trigger.getKeyStroke(),
+				( Boolean ) field( trigger, "ignoreAll" ),
+				( Integer ) field( trigger, "ignoreMask" ),
+				( TIntCollection ) field( trigger, "ignoreKeys" ) );
+	}
+
+	private static Object field( final InputTrigger trigger, final String name ) throws ReflectiveOperationException
+	{
+		final Field field = InputTrigger.class.getDeclaredField( name );
+		field.setAccessible( true );
+		return field.get( trigger );
+	}
+
+	/*
+	 * The previous parser.
+	 */
+
+	private static Parsed legacyParse( final String s ) throws IllegalArgumentException
+	{
+		final String[] split = s.split( "\\|" );
+		if ( split.length < 1 || split.length > 2 )
+			throw new IllegalArgumentException();
+		for ( int i = 0; i < split.length; ++i )
+		{
+			split[ i ] = split[ i ].trim();
+			if ( split[ i ].length() == 0 )
+				throw new IllegalArgumentException();
+		}
+		final String triggerdef = split[ 0 ];
+		final String ignoredef = split.length > 1 ? split[ 1 ] : null;
+
+		final int[] mask = new int[ 1 ];
+		final TIntSet pressedKeys = legacyMaskAndKeys( triggerdef, mask );
+
+		KeyStroke keyStroke = null;
+		if ( ( mask[ 0 ] & ( InputTrigger.DOUBLE_CLICK_MASK | InputTrigger.BUTTON1_DOWN_MASK | InputTrigger.BUTTON2_DOWN_MASK | InputTrigger.BUTTON3_DOWN_MASK ) ) == 0 )
+			keyStroke = KeyStroke.getKeyStroke( triggerdef );
+
+		final int[] ignoreMask = new int[ 1 ];
+		TIntSet ignoreKeys = new TIntHashSet();
+		boolean ignoreAll = false;
+		if ( ignoredef != null )
+		{
+			if ( ignoredef.equals( "all" ) )
+				ignoreAll = true;
+			else
+				ignoreKeys = legacyMaskAndKeys( ignoredef, ignoreMask );
+		}
+
+		return new Parsed( mask[ 0 ], pressedKeys, keyStroke, ignoreAll, ignoreMask[ 0 ], ignoreKeys );
+	}
+
+	private static final Map< String, Integer > modifierKeywords = new HashMap<>();
+	static
+	{
+		modifierKeywords.put( "shift", InputTrigger.SHIFT_DOWN_MASK );
+		modifierKeywords.put( "control", InputTrigger.CTRL_DOWN_MASK );
+		modifierKeywords.put( "ctrl", InputTrigger.CTRL_DOWN_MASK );
+		modifierKeywords.put( "meta", InputTrigger.META_DOWN_MASK );
+		modifierKeywords.put( "alt", InputTrigger.ALT_DOWN_MASK );
+		modifierKeywords.put( "altGraph", InputTrigger.ALT_GRAPH_DOWN_MASK );
+		modifierKeywords.put( "button1", InputTrigger.BUTTON1_DOWN_MASK );
+		modifierKeywords.put( "button2", InputTrigger.BUTTON2_DOWN_MASK );
+		modifierKeywords.put( "button3", InputTrigger.BUTTON3_DOWN_MASK );
+		modifierKeywords.put( "double-click", InputTrigger.DOUBLE_CLICK_MASK );
+		modifierKeywords.put( "scroll", InputTrigger.SCROLL_MASK );
+		modifierKeywords.put( "win", InputTrigger.WIN_DOWN_MASK );
+	}
+
+	private static TIntSet legacyMaskAndKeys( final String s, final int[] mask ) throws IllegalArgumentException
+	{
+		final StringTokenizer st = new StringTokenizer( s, " " );
+		final TIntSet pressedKeys = new TIntHashSet();
+		final int count = st.countTokens();
+		for ( int i = 1; i <= count; i++ )
+		{
+			final String token = st.nextToken();
+			if ( token.equals( "released" ) || token.equals( "pressed" ) || token.equals( "typed" ) )
+				continue;
+			final Integer tokenMask = modifierKeywords.get( token );
+			if ( tokenMask != null )
+				mask[ 0 ] |= tokenMask.intValue();
+			else
+			{
+				final KeyStroke ks = KeyStroke.getKeyStroke( token );
+				if ( ks == null || ks.getKeyCode() == 0 )
+					throw new IllegalArgumentException();
+				pressedKeys.add( ks.getKeyCode() );
+			}
+		}
+		return pressedKeys;
+	}
+}
@@ -0,0 +1,186 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * {@link InputTrigger#getFromString(String)} returns the same canonical
+ * instance for equal triggers as long as it is reachable, also when called
+ * from several threads, and does not keep unreachable triggers alive.
+ */
+public class InputTriggerPoolTest
+{
+	private static final String[] DEFINITIONS = {
+			"ctrl alt F1", "shift F2", "ctrl button1", "alt button3 A", "meta scroll",
+			"ctrl shift alt F3", "B C D", "win F4", "double-click button1", "ctrl F5 | all", "shift G | ctrl" };
+
+	@Test
+	public void testIdentity()
+	{
+		for ( final String definition : DEFINITIONS )
+		{
+			final InputTrigger trigger = InputTrigger.getFromString( definition );
+			assertSame( trigger, InputTrigger.getFromString( definition ) );
+			assertSame( trigger, InputTrigger.getFromString( trigger.toString() ) );
+		}
+		assertSame( InputTrigger.getFromString( "ctrl shift A" ), InputTrigger.getFromString( "shift ctrl A" ) );
+	}
+
+	@Test
+	public void testIdentityAcrossThreads() throws Exception
+	{
+		final int numThreads = 8;
+		final CyclicBarrier start = new CyclicBarrier( numThreads );
+		final ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+		try
+		{
+			final List< Future< InputTrigger[] > > results = new ArrayList<>();
+			for ( int t = 0; t < numThreads; ++t )
+			{
+				// definitions that no other test uses, so that the threads race
+				// to create the canonical instances
+				results.add( executor.submit( () -> {
+					start.await();
+					final InputTrigger[] triggers = new InputTrigger[ 200 ];
+					for ( int i = 0; i < triggers.length; ++i )
+						triggers[ i ] = InputTrigger.getFromString( "ctrl alt shift F" + ( 1 + i % 12 ) + " " + ( char ) ( 'A' + i / 12 ) );
+					return triggers;
+				} ) );
+			}
+			final InputTrigger[] expected = results.get( 0 ).get( 10, TimeUnit.SECONDS );
+			for ( final Future< InputTrigger[] > result : results )
+			{
+				final InputTrigger[] triggers = result.get( 10, TimeUnit.SECONDS );
+				for ( int i = 0; i < expected.length; ++i )
+					assertSame( expected[ i ], triggers[ i ] );
+			}
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testUnreachableTriggerIsCollected() throws InterruptedException
+	{
+		InputTrigger trigger = InputTrigger.getFromString( "ctrl alt meta F12 Z" );
+		final WeakReference< InputTrigger > ref = new WeakReference<>( trigger );
+		final int hashCode = trigger.hashCode();
+		final String definition = trigger.toString();
+		trigger = null;
+
+		assertTrue( "trigger was not garbage-collected", collect( ref ) );
+
+		// a new canonical instance is created
+		final InputTrigger recreated = InputTrigger.getFromString( definition );
+		assertEquals( hashCode, recreated.hashCode() );
+		assertSame( recreated, InputTrigger.getFromString( definition ) );
+	}
+
+	@Test
+	public void testCollectedTriggersAreRemovedFromPool() throws Exception
+	{
+		final List< WeakReference< InputTrigger > > refs = new ArrayList<>();
+		for ( int i = 0; i < 100; ++i )
+			refs.add( new WeakReference<>( InputTrigger.getFromString( "ctrl meta shift F" + ( 1 + i % 12 ) + " button" + ( 1 + i / 12 % 3 ) + " " + ( char ) ( 'A' + i / 36 ) ) ) );
+		final int size = pool().size();
+		for ( final WeakReference< InputTrigger > ref : refs )
+			assertTrue( "trigger was not garbage-collected", collect( ref ) );
+
+		// cleared keys are removed when the next trigger is looked up
+		InputTrigger.getFromString( "A" );
+		assertTrue( pool().size() <= size - 100 + 1 );
+	}
+
+	/**
+	 * The pool entry of a trigger that was garbage-collected may still be in
+	 * the pool when an equal trigger is looked up. It must not be returned,
+	 * and must not prevent a new canonical instance.
+	 */
+	@Test
+	public void testClearedPoolEntry() throws Exception
+	{
+		final String definition = "alt meta F9 Y";
+		final InputTrigger trigger = InputTrigger.getFromString( definition );
+		for ( final Object key : pool().keySet() )
+			if ( ( ( Reference< ? > ) key ).get() == trigger )
+				// cleared as by the garbage collector, but not enqueued
+				( ( Reference< ? > ) key ).clear();
+
+		final InputTrigger recreated = InputTrigger.getFromString( definition );
+		assertEquals( trigger, recreated );
+		assertNotSame( trigger, recreated );
+		assertSame( recreated, InputTrigger.getFromString( definition ) );
+	}
+
+	/**
+	 * Run the garbage collector until {@code ref} is cleared, or a timeout
+	 * expires.
+	 *
+	 * @return whether {@code ref} was cleared.
+	 */
+	private static boolean collect( final WeakReference< ? > ref ) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + 10_000;
+		while ( ref.get() != null && System.currentTimeMillis() < deadline )
+		{
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		return ref.get() == null;
+	}
+
+	private static Map< ?, ? > pool() throws ReflectiveOperationException
+	{
+		final Field field = InputTrigger.class.getDeclaredField( "pool" );
+		field.setAccessible( true );
+		return ( Map< ?, ? > ) field.get( null );
+	}
+}
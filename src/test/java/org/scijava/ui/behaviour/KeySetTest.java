@@ -0,0 +1,189 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static java.awt.event.KeyEvent.VK_A;
+import static java.awt.event.KeyEvent.VK_BACK_QUOTE;
+import static java.awt.event.KeyEvent.VK_DELETE;
+import static java.awt.event.KeyEvent.VK_EURO_SIGN;
+import static java.awt.event.KeyEvent.VK_F13;
+import static java.awt.event.KeyEvent.VK_SHIFT;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * {@link KeySet} behaves like a {@link TIntHashSet} with the same elements,
+ * for key codes in the bit words ({@code < 256}) and in the overflow array
+ * (e.g., {@code VK_F13}, {@code VK_EURO_SIGN}).
+ */
+public class KeySetTest
+{
+	private static final int[] KEYS = { VK_SHIFT, VK_A, VK_DELETE, VK_BACK_QUOTE, VK_EURO_SIGN, VK_F13 };
+
+	@Test
+	public void testEqualsAndHashCodeLikeTIntHashSet()
+	{
+		for ( final int[] keys : new int[][] { {}, { VK_A }, { VK_SHIFT, VK_BACK_QUOTE }, { VK_F13 }, KEYS } )
+		{
+			final KeySet keySet = KeySet.of( keys );
+			final TIntHashSet hashSet = new TIntHashSet( keys );
+			assertEquals( hashSet, keySet );
+			assertEquals( keySet, hashSet );
+			assertEquals( hashSet.hashCode(), keySet.hashCode() );
+			assertEquals( keySet, KeySet.of( hashSet ) );
+			assertEquals( keys.length, keySet.size() );
+			for ( final int key : keys )
+				assertTrue( keySet.contains( key ) );
+		}
+		assertFalse( KeySet.of( VK_A ).equals( new TIntHashSet( new int[] { VK_A, VK_F13 } ) ) );
+		assertFalse( KeySet.of( VK_A, VK_F13 ).equals( new TIntHashSet( new int[] { VK_A } ) ) );
+		assertFalse( KeySet.of( VK_A, VK_F13 ).equals( KeySet.of( VK_A, VK_EURO_SIGN ) ) );
+	}
+
+	@Test
+	public void testIterationOrder()
+	{
+		final int[] sorted = KEYS.clone();
+		Arrays.sort( sorted );
+		final KeySet keySet = KeySet.of( VK_F13, VK_A, VK_EURO_SIGN, VK_SHIFT, VK_BACK_QUOTE, VK_DELETE, VK_A );
+		assertArrayEquals( sorted, keySet.toArray() );
+	}
+
+	@Test
+	public void testIsSubsetOf()
+	{
+		final KeySet all = KeySet.of( KEYS );
+		for ( final TIntSet keys : new TIntSet[] { all, new TIntHashSet( KEYS ) } )
+		{
+			assertTrue( KeySet.of( VK_A, VK_F13 ).isSubsetOf( keys ) );
+			assertTrue( KeySet.of( VK_EURO_SIGN, VK_F13 ).isSubsetOf( keys ) );
+			assertTrue( KeySet.of( VK_BACK_QUOTE ).isSubsetOf( keys ) );
+			assertTrue( all.isSubsetOf( keys ) );
+		}
+		for ( final TIntSet keys : new TIntSet[] { KeySet.of( VK_A, VK_F13 ), new TIntHashSet( new int[] { VK_A, VK_F13 } ) } )
+		{
+			assertFalse( KeySet.of( VK_A, VK_EURO_SIGN ).isSubsetOf( keys ) );
+			assertFalse( KeySet.of( VK_SHIFT, VK_F13 ).isSubsetOf( keys ) );
+			assertFalse( all.isSubsetOf( keys ) );
+		}
+	}
+
+	@Test
+	public void testEqualsDifference()
+	{
+		final KeySet ignored = KeySet.of( VK_SHIFT, VK_EURO_SIGN );
+		final int[] pressed = { VK_SHIFT, VK_A, VK_EURO_SIGN, VK_F13 };
+		for ( final TIntSet keys : new TIntSet[] { KeySet.of( pressed ), new TIntHashSet( pressed ) } )
+		{
+			assertTrue( KeySet.of( VK_A, VK_F13 ).equalsDifference( keys, ignored ) );
+			assertFalse( KeySet.of( VK_A ).equalsDifference( keys, ignored ) );
+			assertFalse( KeySet.of( VK_F13 ).equalsDifference( keys, ignored ) );
+			assertFalse( KeySet.of( VK_A, VK_F13, VK_EURO_SIGN ).equalsDifference( keys, ignored ) );
+			assertFalse( KeySet.of( VK_A, VK_F13, VK_DELETE ).equalsDifference( keys, ignored ) );
+			assertTrue( KeySet.of( pressed ).equalsDifference( keys, KeySet.EMPTY ) );
+		}
+	}
+
+	/**
+	 * Compare the bitwise {@code KeySet} path and the fallback path for other
+	 * {@link TIntSet}s with a straightforward computation on random sets.
+	 */
+	@Test
+	public void testRandomAgainstTIntHashSet()
+	{
+		final Random random = new Random( 1 );
+		for ( int i = 0; i < 2000; ++i )
+		{
+			final int[] a = randomKeys( random );
+			final int[] b = randomKeys( random );
+			final int[] c = randomKeys( random );
+			final KeySet ka = KeySet.of( a );
+			final KeySet kc = KeySet.of( c );
+			final TIntHashSet hb = new TIntHashSet( b );
+
+			final boolean subset = hb.containsAll( a );
+			assertEquals( subset, ka.isSubsetOf( hb ) );
+			assertEquals( subset, ka.isSubsetOf( KeySet.of( b ) ) );
+
+			final TIntHashSet difference = new TIntHashSet( b );
+			difference.removeAll( c );
+			final boolean equalsDifference = difference.equals( new TIntHashSet( a ) );
+			assertEquals( equalsDifference, ka.equalsDifference( hb, kc ) );
+			assertEquals( equalsDifference, ka.equalsDifference( KeySet.of( b ), kc ) );
+			assertEquals( difference, KeySet.of( b ).minus( kc ) );
+		}
+	}
+
+	private static int[] randomKeys( final Random random )
+	{
+		final int[] candidates = { VK_SHIFT, VK_A, VK_DELETE, VK_BACK_QUOTE, VK_EURO_SIGN, VK_F13, 0, 63, 64, 255, 256, -1 };
+		final int[] keys = new int[ random.nextInt( 5 ) ];
+		for ( int i = 0; i < keys.length; ++i )
+			keys[ i ] = candidates[ random.nextInt( candidates.length ) ];
+		return keys;
+	}
+
+	@Test
+	public void testEmpty()
+	{
+		assertSame( KeySet.EMPTY, KeySet.of() );
+		assertSame( KeySet.EMPTY, KeySet.of( new TIntHashSet() ) );
+		assertTrue( KeySet.EMPTY.isEmpty() );
+		assertEquals( 0, KeySet.EMPTY.hashCode() );
+		assertEquals( new TIntHashSet(), KeySet.EMPTY );
+		assertEquals( KeySet.EMPTY, new TIntHashSet() );
+		assertEquals( KeySet.EMPTY, KeySet.of( VK_A ).minus( KeySet.of( VK_A ) ) );
+		assertTrue( KeySet.EMPTY.isSubsetOf( KeySet.EMPTY ) );
+		assertTrue( KeySet.EMPTY.isSubsetOf( new TIntHashSet() ) );
+		assertTrue( KeySet.EMPTY.isSubsetOf( KeySet.of( VK_F13 ) ) );
+		assertFalse( KeySet.of( VK_F13 ).isSubsetOf( KeySet.EMPTY ) );
+		assertTrue( KeySet.EMPTY.equalsDifference( KeySet.of( VK_A ), KeySet.of( VK_A ) ) );
+		assertTrue( KeySet.EMPTY.equalsDifference( new TIntHashSet(), KeySet.EMPTY ) );
+		assertFalse( KeySet.EMPTY.iterator().hasNext() );
+		assertEquals( "{}", KeySet.EMPTY.toString() );
+	}
+
+	@Test( expected = UnsupportedOperationException.class )
+	public void testUnmodifiable()
+	{
+		KeySet.of( VK_A ).add( VK_SHIFT );
+	}
+}
@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.clicked;
+import static org.scijava.ui.behaviour.TestInput.pressed;
+import static org.scijava.ui.behaviour.TestInput.released;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Behaviours that throw, or that dispatch events into the handler that invoked
+ * them, do not disturb the matches of other events.
+ */
+public class MatchBuffersTest
+{
+	private static final MouseEvent CLICK1 = clicked( InputEvent.BUTTON1_DOWN_MASK, MouseEvent.BUTTON1, 1, 1 );
+
+	private static final MouseEvent CLICK3 = clicked( InputEvent.BUTTON3_DOWN_MASK, MouseEvent.BUTTON3, 1, 1 );
+
+	private final List< String > invoked = new ArrayList<>();
+
+	private InputTriggerMap inputMap;
+
+	private BehaviourMap behaviourMap;
+
+	private MouseAndKeyHandler handler;
+
+	@Before
+	public void setUp()
+	{
+		inputMap = new InputTriggerMap();
+		behaviourMap = new BehaviourMap();
+		handler = TestInput.handler( inputMap, behaviourMap );
+	}
+
+	private ClickBehaviour record( final String name )
+	{
+		return ( x, y ) -> invoked.add( name );
+	}
+
+	@Test
+	public void testThrowingBehaviour()
+	{
+		final boolean[] fail = { true };
+		bind( inputMap, behaviourMap, "button1", "a", ( ClickBehaviour ) ( x, y ) -> {
+			invoked.add( "a" );
+			if ( fail[ 0 ] )
+				throw new IllegalStateException();
+		} );
+		bind( inputMap, behaviourMap, "button1", "b", record( "b" ) );
+
+		try
+		{
+			handler.mouseClicked( CLICK1 );
+			fail();
+		}
+		catch ( final IllegalStateException e )
+		{}
+		fail[ 0 ] = false;
+		invoked.clear();
+
+		handler.mouseClicked( CLICK1 );
+		assertEquals( 2, invoked.size() );
+		assertEquals( 1, invoked.stream().filter( "a"::equals ).count() );
+		assertEquals( 1, invoked.stream().filter( "b"::equals ).count() );
+	}
+
+	@Test
+	public void testThrowingDragInit()
+	{
+		final int[] ends = { 0 };
+		final boolean[] fail = { true };
+		bind( inputMap, behaviourMap, "button1", "drag", new DragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				if ( fail[ 0 ] )
+					throw new IllegalStateException();
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				++ends[ 0 ];
+			}
+		} );
+
+		try
+		{
+			handler.mousePressed( pressed( 0, 1, 1 ) );
+			fail();
+		}
+		catch ( final IllegalStateException e )
+		{}
+		fail[ 0 ] = false;
+
+		handler.mousePressed( pressed( 0, 1, 1 ) );
+		handler.mouseReleased( released( 0, 1, 1 ) );
+		assertEquals( 1, ends[ 0 ] );
+	}
+
+	@Test
+	public void testReentrantDispatch()
+	{
+		bind( inputMap, behaviourMap, "button1", "outer1", ( ClickBehaviour ) ( x, y ) -> {
+			invoked.add( "outer1" );
+			handler.mouseClicked( CLICK3 );
+		} );
+		bind( inputMap, behaviourMap, "button1", "outer2", record( "outer2" ) );
+		bind( inputMap, behaviourMap, "button3", "inner1", record( "inner1" ) );
+		bind( inputMap, behaviourMap, "button3", "inner2", record( "inner2" ) );
+
+		handler.mouseClicked( CLICK1 );
+
+		final List< String > expected = new ArrayList<>( asList( "outer1", "outer2", "inner1", "inner2" ) );
+		expected.sort( null );
+		final List< String > actual = new ArrayList<>( invoked );
+		actual.sort( null );
+		assertEquals( expected, actual );
+	}
+}
@@ -0,0 +1,156 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link BehaviourMap} and {@link InputTriggerMap} accept
+ * {@code null} keys without binding them, and that every modification,
+ * including modifications that leave the bindings unchanged, increments the
+ * {@code modCount()}.
+ */
+public class NullBindingTest
+{
+	private static final InputTrigger A = InputTrigger.getFromString( "A" );
+
+	private static final Behaviour BEHAVIOUR = ( ClickBehaviour ) ( x, y ) -> {};
+
+	@Test
+	public void testBehaviourMapGetNull()
+	{
+		final BehaviourMap parent = new BehaviourMap();
+		final BehaviourMap map = new BehaviourMap();
+		map.setParent( parent );
+		assertNull( map.get( null ) );
+
+		map.put( "a", BEHAVIOUR );
+		assertNull( map.get( null ) );
+	}
+
+	@Test
+	public void testBehaviourMapPutNull()
+	{
+		final BehaviourMap map = new BehaviourMap();
+		final int modCount = map.modCount();
+		map.put( null, BEHAVIOUR );
+		assertEquals( modCount + 1, map.modCount() );
+		assertNull( map.get( null ) );
+		assertEquals( Collections.emptySet(), map.keys() );
+	}
+
+	@Test
+	public void testBehaviourMapRemoveNull()
+	{
+		final BehaviourMap map = new BehaviourMap();
+		map.put( "a", BEHAVIOUR );
+		final BehaviourMap child = new BehaviourMap();
+		child.setParent( map );
+		final int modCount = child.modCount();
+		map.remove( null );
+		assertEquals( modCount + 1, child.modCount() );
+		assertSame( BEHAVIOUR, child.get( "a" ) );
+	}
+
+	@Test
+	public void testBehaviourMapNoOpWritesBumpModCount()
+	{
+		final BehaviourMap map = new BehaviourMap();
+		final int modCount = map.modCount();
+		map.remove( "a" );
+		map.put( "a", null );
+		map.clear();
+		assertEquals( modCount + 3, map.modCount() );
+	}
+
+	@Test
+	public void testInputTriggerMapGetNull()
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		map.put( A, "a" );
+		assertEquals( Collections.emptySet(), map.get( null ) );
+		assertEquals( Collections.emptySet(), map.getTriggers( null ) );
+	}
+
+	@Test
+	public void testInputTriggerMapPutNullKey()
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		final int modCount = map.modCount();
+		map.put( A, null );
+		assertEquals( modCount + 1, map.modCount() );
+		assertEquals( Collections.emptySet(), map.get( A ) );
+		assertEquals( Collections.emptyMap(), map.getBindings() );
+	}
+
+	@Test
+	public void testInputTriggerMapPutNullTrigger()
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		final int modCount = map.modCount();
+		map.put( null, "a" );
+		assertEquals( modCount + 1, map.modCount() );
+		assertEquals( Collections.emptySet(), map.getTriggers( "a" ) );
+		assertEquals( Collections.emptyMap(), map.getBindings() );
+	}
+
+	@Test
+	public void testInputTriggerMapRemoveNull()
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		map.put( A, "a" );
+		final int modCount = map.modCount();
+		map.remove( A, null );
+		map.removeAll( null );
+		assertEquals( modCount + 2, map.modCount() );
+		assertEquals( Collections.singleton( "a" ), map.get( A ) );
+	}
+
+	@Test
+	public void testInputTriggerMapNoOpWritesBumpModCount()
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		map.put( A, "a" );
+		final int modCount = map.modCount();
+		map.put( A, "a" );
+		map.remove( A, "b" );
+		map.removeAll( InputTrigger.getFromString( "B" ) );
+		assertEquals( modCount + 3, map.modCount() );
+		map.clear();
+		map.clear();
+		assertEquals( modCount + 5, map.modCount() );
+	}
+}
@@ -0,0 +1,126 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour;
+
+import java.awt.Component;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+
+/**
+ * Handlers and synthetic input events for headless tests.
+ */
+public final class TestInput
+{
+	/**
+	 * Source of all events. It is never shown, so events can be created
+	 * without a display.
+	 */
+	public static final Component SOURCE = new Component()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	/**
+	 * Create a {@link MouseAndKeyHandler} dispatching from the given maps.
+	 */
+	public static MouseAndKeyHandler handler( final InputTriggerMap inputMap, final BehaviourMap behaviourMap )
+	{
+		final MouseAndKeyHandler handler = new MouseAndKeyHandler();
+		handler.setInputMap( inputMap );
+		handler.setBehaviourMap( behaviourMap );
+		return handler;
+	}
+
+	/**
+	 * Bind {@code behaviour} to {@code trigger} under {@code behaviourKey}.
+	 */
+	public static void bind( final InputTriggerMap inputMap, final BehaviourMap behaviourMap, final String trigger, final String behaviourKey, final Behaviour behaviour )
+	{
+		inputMap.put( InputTrigger.getFromString( trigger ), behaviourKey );
+		behaviourMap.put( behaviourKey, behaviour );
+	}
+
+	public static MouseEvent mouse( final int id, final long when, final int modifiers, final int x, final int y, final int clickCount, final int button )
+	{
+		return new MouseEvent( SOURCE, id, when, modifiers, x, y, clickCount, false, button );
+	}
+
+	/**
+	 * Press of the left mouse button.
+	 */
+	public static MouseEvent pressed( final long when, final int x, final int y )
+	{
+		return mouse( MouseEvent.MOUSE_PRESSED, when, InputEvent.BUTTON1_DOWN_MASK, x, y, 1, MouseEvent.BUTTON1 );
+	}
+
+	/**
+	 * Motion with the left mouse button down.
+	 */
+	public static MouseEvent dragged( final long when, final int x, final int y )
+	{
+		return mouse( MouseEvent.MOUSE_DRAGGED, when, InputEvent.BUTTON1_DOWN_MASK, x, y, 0, MouseEvent.NOBUTTON );
+	}
+
+	/**
+	 * Release of the left mouse button.
+	 */
+	public static MouseEvent released( final long when, final int x, final int y )
+	{
+		return mouse( MouseEvent.MOUSE_RELEASED, when, 0, x, y, 1, MouseEvent.BUTTON1 );
+	}
+
+	/**
+	 * Single click of {@code button}, with modifiers {@code modifiers} (which
+	 * should include the mask of the button).
+	 */
+	public static MouseEvent clicked( final int modifiers, final int button, final int x, final int y )
+	{
+		return mouse( MouseEvent.MOUSE_CLICKED, 0, modifiers, x, y, 1, button );
+	}
+
+	/**
+	 * Wheel rotation by {@code rotation} at (5, 5).
+	 */
+	public static MouseWheelEvent wheel( final long when, final int modifiers, final double rotation )
+	{
+		return new MouseWheelEvent( SOURCE, MouseEvent.MOUSE_WHEEL, when, modifiers, 5, 5, 5, 5, 0, false,
+				MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, ( int ) rotation, rotation );
+	}
+
+	public static KeyEvent key( final int id, final long when, final int modifiers, final int keyCode, final char keyChar, final int keyLocation )
+	{
+		return new KeyEvent( SOURCE, id, when, modifiers, keyCode, keyChar, keyLocation );
+	}
+
+	private TestInput()
+	{}
+}
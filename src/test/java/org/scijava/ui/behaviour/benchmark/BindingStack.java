@@ -0,0 +1,220 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.scijava.ui.behaviour.Behaviour;
+import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.DragBehaviour;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.ScrollBehaviour;
+import org.scijava.ui.behaviour.util.TriggerBehaviourBindings;
+
+/**
+ * Synthetic stack of {@link InputTriggerMap}s and {@link BehaviourMap}s for
+ * benchmarks. {@code numBindings} bindings are spread evenly over
+ * {@code depth} layers, which are chained through a
+ * {@link TriggerBehaviourBindings}, like in an application where several
+ * components install their keymaps.
+ * <p>
+ * Every layer binds distinct key triggers (modifiers with one or two keys) to
+ * a mix of click, drag and scroll behaviours. The bottom layer additionally
+ * contains a few triggers that ignore modifiers or keys. The behaviours
+ * count their invocations in {@link #counter()}.
+ */
+public class BindingStack
+{
+	private static final String[] MODIFIERS = { "", "ctrl ", "alt ", "shift ", "ctrl alt ", "ctrl shift ", "alt shift ", "ctrl alt shift " };
+
+	private static final String[] KEYS = {
+			"A", "B", "C", "D", "E", "F", "G", "H", "I", "J", "K", "L", "M",
+			"N", "O", "P", "Q", "R", "S", "T", "U", "V", "W", "X", "Y", "Z",
+			"0", "1", "2", "3", "4", "5", "6", "7", "8", "9",
+			"F1", "F2", "F3", "F4", "F5", "F6", "F7", "F8", "F9", "F10", "F11", "F12" };
+
+	private final TriggerBehaviourBindings bindings = new TriggerBehaviourBindings();
+
+	private final List< InputTriggerMap > inputMaps = new ArrayList<>();
+
+	private final List< BehaviourMap > behaviourMaps = new ArrayList<>();
+
+	private final List< InputTrigger > triggers = new ArrayList<>();
+
+	private long counter;
+
+	private final ClickBehaviour click = ( x, y ) -> ++counter;
+
+	private final DragBehaviour drag = new DragBehaviour()
+	{
+		@Override
+		public void init( final int x, final int y )
+		{
+			++counter;
+		}
+
+		@Override
+		public void drag( final int x, final int y )
+		{
+			counter += x;
+		}
+
+		@Override
+		public void end( final int x, final int y )
+		{
+			++counter;
+		}
+	};
+
+	private final ScrollBehaviour scroll = ( wheelRotation, isHorizontal, x, y ) -> ++counter;
+
+	/**
+	 * @param numBindings
+	 *            total number of bindings in all layers.
+	 * @param depth
+	 *            number of layers.
+	 */
+	public BindingStack( final int numBindings, final int depth )
+	{
+		for ( int l = 0; l < depth; ++l )
+		{
+			final InputTriggerMap inputMap = new InputTriggerMap();
+			final BehaviourMap behaviourMap = new BehaviourMap();
+			inputMaps.add( inputMap );
+			behaviourMaps.add( behaviourMap );
+			bindings.addInputTriggerMap( "layer " + l, inputMap );
+			bindings.addBehaviourMap( "layer " + l, behaviourMap );
+		}
+
+		final int maxTriggers = MODIFIERS.length * KEYS.length * KEYS.length;
+		if ( numBindings > maxTriggers )
+			throw new IllegalArgumentException( "at most " + maxTriggers + " bindings are supported" );
+		int i = 0;
+		outer:
+		for ( int k2 = -1; k2 < KEYS.length; ++k2 )
+			for ( final String key1 : KEYS )
+				for ( final String modifiers : MODIFIERS )
+				{
+					if ( i >= numBindings )
+						break outer;
+					final String key2 = k2 < 0 ? "" : " " + KEYS[ k2 ];
+					if ( key2.equals( " " + key1 ) )
+						continue;
+					final InputTrigger trigger = InputTrigger.getFromString( modifiers + key1 + key2 );
+					bind( i * depth / Math.max( numBindings, 1 ), trigger, "behaviour " + i, behaviour( i ) );
+					triggers.add( trigger );
+					++i;
+				}
+
+		// a few triggers that ignore modifiers and keys
+		bind( 0, InputTrigger.getFromString( "button3 | all" ), "ignore all", click );
+		bind( 0, InputTrigger.getFromString( "ctrl Q | shift alt" ), "ignore some", click );
+		bind( 0, InputTrigger.getFromString( "ctrl scroll | all" ), "scroll ignore", scroll );
+	}
+
+	/**
+	 * Add a binding to the map of the given layer.
+	 */
+	public void bind( final int layer, final InputTrigger trigger, final String behaviourKey, final Behaviour behaviour )
+	{
+		inputMaps.get( layer ).put( trigger, behaviourKey );
+		behaviourMaps.get( layer ).put( behaviourKey, behaviour );
+	}
+
+	private Behaviour behaviour( final int i )
+	{
+		switch ( i % 3 )
+		{
+		case 0:
+			return click;
+		case 1:
+			return drag;
+		default:
+			return scroll;
+		}
+	}
+
+	/**
+	 * The concatenated {@link InputTriggerMap} of all layers.
+	 */
+	public InputTriggerMap inputMap()
+	{
+		return bindings.getConcatenatedInputTriggerMap();
+	}
+
+	/**
+	 * The concatenated {@link BehaviourMap} of all layers.
+	 */
+	public BehaviourMap behaviourMap()
+	{
+		return bindings.getConcatenatedBehaviourMap();
+	}
+
+	public InputTriggerMap inputMap( final int layer )
+	{
+		return inputMaps.get( layer );
+	}
+
+	public BehaviourMap behaviourMap( final int layer )
+	{
+		return behaviourMaps.get( layer );
+	}
+
+	/**
+	 * The generated key triggers, in the order they were bound.
+	 */
+	public List< InputTrigger > triggers()
+	{
+		return triggers;
+	}
+
+	public ClickBehaviour click()
+	{
+		return click;
+	}
+
+	public DragBehaviour drag()
+	{
+		return drag;
+	}
+
+	public ScrollBehaviour scroll()
+	{
+		return scroll;
+	}
+
+	public long counter()
+	{
+		return counter;
+	}
+}
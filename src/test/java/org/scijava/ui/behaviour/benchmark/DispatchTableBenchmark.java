@@ -0,0 +1,141 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+
+/**
+ * Measures how long it takes a {@link MouseAndKeyHandler} to bring its internal
+ * behaviour indices up to date after the bindings changed, for a
+ * {@link BindingStack} with a growing number of bindings and layers.
+ * <ul>
+ * <li>{@code fullRebuild}: the parent chain is re-linked, so all bindings
+ * must be re-read.</li>
+ * <li>{@code toggleBinding}: a single binding in the bottom layer is added or
+ * removed, which only requires patching the indices.</li>
+ * </ul>
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 4, time = 1 )
+@Measurement( iterations = 8, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+public class DispatchTableBenchmark
+{
+	@Param( { "10", "100", "1000" } )
+	public int numBindings;
+
+	@Param( { "1", "10" } )
+	public int depth;
+
+	/**
+	 * Exposes {@link MouseAndKeyHandler#update()}.
+	 */
+	private static class Handler extends MouseAndKeyHandler
+	{
+		Object table()
+		{
+			return update();
+		}
+	}
+
+	private BindingStack stack;
+
+	private Handler handler;
+
+	private InputTriggerMap bottom;
+
+	private InputTrigger toggledTrigger;
+
+	private boolean toggled;
+
+	@Setup
+	public void setup()
+	{
+		stack = new BindingStack( numBindings, depth );
+		handler = new Handler();
+		handler.setInputMap( stack.inputMap() );
+		handler.setBehaviourMap( stack.behaviourMap() );
+		handler.table();
+
+		bottom = stack.inputMap( 0 );
+		toggledTrigger = InputTrigger.getFromString( "ctrl alt shift SPACE" );
+		stack.behaviourMap( 0 ).put( "toggled", stack.click() );
+	}
+
+	@Benchmark
+	public Object fullRebuild()
+	{
+		// re-linking the chain invalidates all recorded changes
+		bottom.setParent( null );
+		return handler.table();
+	}
+
+	@Benchmark
+	public Object toggleBinding()
+	{
+		toggled = !toggled;
+		if ( toggled )
+			bottom.put( toggledTrigger, "toggled" );
+		else
+			bottom.remove( toggledTrigger, "toggled" );
+		return handler.table();
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( DispatchTableBenchmark.class.getSimpleName() )
+				.addProfiler( GCProfiler.class )
+				.build();
+		new Runner( opt ).run();
+	}
+}
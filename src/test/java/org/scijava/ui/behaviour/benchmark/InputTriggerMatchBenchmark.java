@@ -0,0 +1,120 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.KeySet;
+
+import gnu.trove.set.TIntSet;
+import gnu.trove.set.hash.TIntHashSet;
+
+/**
+ * Measures {@link InputTrigger#matches(int, TIntSet)} for triggers that ignore
+ * nothing, some modifiers and keys, or everything. The pressed keys are given
+ * as a {@link KeySet} (as provided by
+ * {@link org.scijava.ui.behaviour.GlobalKeyEventDispatcher}) or as a
+ * {@link TIntHashSet}.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 4, time = 1 )
+@Measurement( iterations = 8, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+public class InputTriggerMatchBenchmark
+{
+	@Param( { "ctrl A B", "ctrl A B | shift C", "ctrl A | all" } )
+	public String trigger;
+
+	private InputTrigger inputTrigger;
+
+	private int mask;
+
+	private KeySet keySet;
+
+	private TIntHashSet hashSet;
+
+	@Setup
+	public void setup()
+	{
+		inputTrigger = InputTrigger.getFromString( trigger );
+
+		// an event that matches all three triggers
+		final InputTrigger event = InputTrigger.getFromString( "ctrl A B" );
+		mask = event.getMask();
+		keySet = KeySet.of( event.getPressedKeys() );
+		hashSet = new TIntHashSet( event.getPressedKeys() );
+	}
+
+	@Benchmark
+	public boolean matchesKeySet()
+	{
+		return inputTrigger.matches( mask, keySet );
+	}
+
+	@Benchmark
+	public boolean matchesHashSet()
+	{
+		return inputTrigger.matches( mask, hashSet );
+	}
+
+	@Benchmark
+	public boolean matchesSubsetKeySet()
+	{
+		return inputTrigger.matchesSubset( mask, keySet );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( InputTriggerMatchBenchmark.class.getSimpleName() )
+				.addProfiler( GCProfiler.class )
+				.build();
+		new Runner( opt ).run();
+	}
+}
@@ -0,0 +1,176 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.benchmark;
+
+import java.awt.AWTEvent;
+import java.awt.Component;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+import org.scijava.ui.behaviour.util.InputEventRecorder;
+import org.scijava.ui.behaviour.util.InputEventReplayer;
+
+/**
+ * Replays a recorded input session (see {@link InputEventRecorder}) through a
+ * {@link MouseAndKeyHandler} as fast as possible, and reports the time per
+ * session. Pass the log with {@code -p log=<path>}. Without a log, a synthetic
+ * session of mouse moves, drags, clicks, scrolls and key presses is recorded
+ * first.
+ * <p>
+ * {@code replayDecoded} dispatches pre-decoded events, {@code replayLog}
+ * includes decoding the memory-mapped log. The latter is dominated by the
+ * construction of AWT events (about 1 us each).
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 4, time = 1 )
+@Measurement( iterations = 8, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Fork( 1 )
+public class ReplayBenchmark
+{
+	@Param( { "" } )
+	public String log;
+
+	@Param( { "1000" } )
+	public int numBindings;
+
+	private final Component source = new Component()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private MouseAndKeyHandler handler;
+
+	private InputEventReplayer replayer;
+
+	private AWTEvent[] events;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		final BindingStack stack = new BindingStack( numBindings, 1 );
+		stack.bind( 0, InputTrigger.getFromString( "button1" ), "drag target", stack.drag() );
+		stack.bind( 0, InputTrigger.getFromString( "ctrl button1" ), "click target", stack.click() );
+		stack.bind( 0, InputTrigger.getFromString( "scroll" ), "scroll target", stack.scroll() );
+		stack.bind( 0, InputTrigger.getFromString( "SPACE" ), "key target", stack.click() );
+
+		handler = new MouseAndKeyHandler();
+		handler.setInputMap( stack.inputMap() );
+		handler.setBehaviourMap( stack.behaviourMap() );
+
+		final Path path;
+		if ( log.isEmpty() )
+		{
+			path = Files.createTempFile( "session", ".events" );
+			path.toFile().deleteOnExit();
+			recordSyntheticSession( path );
+		}
+		else
+			path = Paths.get( log );
+		replayer = new InputEventReplayer( path );
+		events = replayer.events( source );
+	}
+
+	private void recordSyntheticSession( final Path path ) throws IOException
+	{
+		try (final InputEventRecorder recorder = new InputEventRecorder( path ))
+		{
+			long t = 0;
+			for ( int i = 0; i < 100; ++i )
+			{
+				for ( int j = 0; j < 10; ++j )
+					recorder.record( new MouseEvent( source, MouseEvent.MOUSE_MOVED, t += 8, 0, j, i, 0, false, MouseEvent.NOBUTTON ) );
+
+				final int button1 = InputEvent.BUTTON1_DOWN_MASK | InputEvent.BUTTON1_MASK;
+				recorder.record( new MouseEvent( source, MouseEvent.MOUSE_PRESSED, t += 8, button1, 10, i, 1, false, MouseEvent.BUTTON1 ) );
+				for ( int j = 0; j < 10; ++j )
+					recorder.record( new MouseEvent( source, MouseEvent.MOUSE_DRAGGED, t += 8, button1, 10 + j, i, 0, false, MouseEvent.NOBUTTON ) );
+				recorder.record( new MouseEvent( source, MouseEvent.MOUSE_RELEASED, t += 8, InputEvent.BUTTON1_MASK, 20, i, 1, false, MouseEvent.BUTTON1 ) );
+
+				final int ctrlButton1 = InputEvent.CTRL_DOWN_MASK | InputEvent.CTRL_MASK | InputEvent.BUTTON1_MASK;
+				recorder.record( new MouseEvent( source, MouseEvent.MOUSE_CLICKED, t += 8, ctrlButton1, 20, i, 1, false, MouseEvent.BUTTON1 ) );
+
+				for ( int j = 0; j < 5; ++j )
+					recorder.record( new MouseWheelEvent( source, MouseEvent.MOUSE_WHEEL, t += 8, 0, 20, i, 20, i, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, 0, 0.2 ) );
+
+				recorder.record( new KeyEvent( source, KeyEvent.KEY_PRESSED, t += 8, 0, KeyEvent.VK_SPACE, ' ' ) );
+				recorder.record( new KeyEvent( source, KeyEvent.KEY_RELEASED, t += 8, 0, KeyEvent.VK_SPACE, ' ' ) );
+			}
+		}
+	}
+
+	@Benchmark
+	public void replayDecoded()
+	{
+		for ( final AWTEvent e : events )
+			InputEventReplayer.dispatch( e, handler );
+	}
+
+	@Benchmark
+	public void replayLog()
+	{
+		replayer.replay( handler );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( ReplayBenchmark.class.getSimpleName() )
+				.addProfiler( GCProfiler.class )
+				.build();
+		new Runner( opt ).run();
+	}
+}
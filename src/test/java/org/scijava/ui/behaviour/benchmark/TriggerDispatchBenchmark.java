@@ -0,0 +1,215 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.benchmark;
+
+import java.awt.Component;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.scijava.ui.behaviour.GlobalKeyEventDispatcher;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+
+/**
+ * Measures the cost of dispatching synthetic key, mouse and wheel events
+ * through a {@link MouseAndKeyHandler}, for a {@link BindingStack} with a
+ * growing number of bindings and layers. With the hashed trigger index, the
+ * cost per event should stay flat as {@code numBindings} and {@code depth}
+ * grow. Moving the mouse without active key drags should cost next to nothing.
+ * <p>
+ * Run {@link #main(String...)} (or JMH with {@code -prof gc}) to also report
+ * the allocation rate. This should be zero for all benchmarks except
+ * {@code keyClick}, where {@link GlobalKeyEventDispatcher} publishes a new
+ * snapshot of the pressed keys on every key press.
+ */
+@State( Scope.Benchmark )
+@Warmup( iterations = 4, time = 1 )
+@Measurement( iterations = 8, time = 1 )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Fork( 1 )
+public class TriggerDispatchBenchmark
+{
+	@Param( { "10", "100", "1000" } )
+	public int numBindings;
+
+	@Param( { "1", "10" } )
+	public int depth;
+
+	/**
+	 * Exposes {@link MouseAndKeyHandler#getMask(InputEvent)}.
+	 */
+	private static class Handler extends MouseAndKeyHandler
+	{
+		int mask( final InputEvent e )
+		{
+			return getMask( e );
+		}
+	}
+
+	private final Component source = new Component()
+	{
+		private static final long serialVersionUID = 1L;
+	};
+
+	private BindingStack stack;
+
+	private Handler handler;
+
+	private GlobalKeyEventDispatcher globalKeys;
+
+	private KeyEvent keyPressed;
+
+	private KeyEvent keyReleased;
+
+	private MouseEvent mouseClicked;
+
+	private MouseEvent mousePressed;
+
+	private MouseEvent mouseDragged;
+
+	private MouseEvent mouseReleased;
+
+	private MouseEvent mouseMoved;
+
+	private MouseWheelEvent mouseWheel;
+
+	@Setup
+	public void setup()
+	{
+		stack = new BindingStack( numBindings, depth );
+
+		// bindings that are hit by the benchmark events
+		final int top = depth - 1;
+		stack.bind( top, InputTrigger.getFromString( "ctrl shift SPACE" ), "key target", stack.click() );
+		stack.bind( top, InputTrigger.getFromString( "ctrl shift button1" ), "mouse target", stack.click() );
+		stack.bind( top, InputTrigger.getFromString( "shift button1" ), "drag target", stack.drag() );
+		stack.bind( top, InputTrigger.getFromString( "shift scroll" ), "scroll target", stack.scroll() );
+
+		handler = new Handler();
+		handler.setInputMap( stack.inputMap() );
+		handler.setBehaviourMap( stack.behaviourMap() );
+
+		globalKeys = GlobalKeyEventDispatcher.getInstance();
+
+		final int ctrlShift = InputEvent.CTRL_DOWN_MASK | InputEvent.SHIFT_DOWN_MASK;
+		keyPressed = new KeyEvent( source, KeyEvent.KEY_PRESSED, 0, ctrlShift, KeyEvent.VK_SPACE, ' ' );
+		keyReleased = new KeyEvent( source, KeyEvent.KEY_RELEASED, 0, ctrlShift, KeyEvent.VK_SPACE, ' ' );
+		mouseClicked = new MouseEvent( source, MouseEvent.MOUSE_CLICKED, 0, ctrlShift | InputEvent.BUTTON1_DOWN_MASK, 10, 10, 1, false, MouseEvent.BUTTON1 );
+		mousePressed = new MouseEvent( source, MouseEvent.MOUSE_PRESSED, 0, InputEvent.SHIFT_DOWN_MASK | InputEvent.BUTTON1_DOWN_MASK, 10, 10, 1, false, MouseEvent.BUTTON1 );
+		mouseDragged = new MouseEvent( source, MouseEvent.MOUSE_DRAGGED, 0, InputEvent.SHIFT_DOWN_MASK | InputEvent.BUTTON1_DOWN_MASK, 20, 20, 0, false, MouseEvent.NOBUTTON );
+		mouseReleased = new MouseEvent( source, MouseEvent.MOUSE_RELEASED, 0, InputEvent.SHIFT_DOWN_MASK, 20, 20, 1, false, MouseEvent.BUTTON1 );
+		mouseMoved = new MouseEvent( source, MouseEvent.MOUSE_MOVED, 0, 0, 20, 20, 0, false );
+		mouseWheel = new MouseWheelEvent( source, MouseEvent.MOUSE_WHEEL, 0, InputEvent.SHIFT_DOWN_MASK, 20, 20, 0, false, MouseWheelEvent.WHEEL_UNIT_SCROLL, 1, 1 );
+
+		// shift is tracked by GlobalKeyEventDispatcher
+		globalKeys.dispatchKeyEvent( new KeyEvent( source, KeyEvent.KEY_PRESSED, 0, InputEvent.SHIFT_DOWN_MASK, KeyEvent.VK_SHIFT, KeyEvent.CHAR_UNDEFINED ) );
+	}
+
+	@Benchmark
+	public long keyClick()
+	{
+		globalKeys.dispatchKeyEvent( keyPressed );
+		handler.keyPressed( keyPressed );
+		globalKeys.dispatchKeyEvent( keyReleased );
+		handler.keyReleased( keyReleased );
+		return stack.counter();
+	}
+
+	@Benchmark
+	public long mouseClick()
+	{
+		handler.mouseClicked( mouseClicked );
+		return stack.counter();
+	}
+
+	@Benchmark
+	public long mouseDrag()
+	{
+		handler.mousePressed( mousePressed );
+		handler.mouseDragged( mouseDragged );
+		handler.mouseReleased( mouseReleased );
+		return stack.counter();
+	}
+
+	@Benchmark
+	public long mouseWheel()
+	{
+		handler.mouseWheelMoved( mouseWheel );
+		return stack.counter();
+	}
+
+	@Benchmark
+	public long mouseMoved()
+	{
+		handler.mouseMoved( mouseMoved );
+		return stack.counter();
+	}
+
+	@Benchmark
+	public int getMaskKey()
+	{
+		return handler.mask( keyPressed );
+	}
+
+	@Benchmark
+	public int getMaskWheel()
+	{
+		return handler.mask( mouseWheel );
+	}
+
+	public static void main( final String... args ) throws RunnerException
+	{
+		final Options opt = new OptionsBuilder()
+				.include( TriggerDispatchBenchmark.class.getSimpleName() )
+				.addProfiler( GCProfiler.class )
+				.build();
+		new Runner( opt ).run();
+	}
+}
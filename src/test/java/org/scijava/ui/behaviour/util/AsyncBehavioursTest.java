@@ -0,0 +1,137 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Test;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.ScrollBehaviour;
+
+/**
+ * Tests {@link AsyncBehaviours} on an executor that runs the scheduled tasks
+ * only when asked to, so that the order of triggers and invocations is
+ * deterministic.
+ */
+public class AsyncBehavioursTest
+{
+	/**
+	 * Executor that queues tasks until {@link #runAll()}.
+	 */
+	private static class ManualExecutor implements Executor
+	{
+		private final ArrayDeque< Runnable > tasks = new ArrayDeque<>();
+
+		@Override
+		public void execute( final Runnable task )
+		{
+			tasks.add( task );
+		}
+
+		void runAll()
+		{
+			while ( !tasks.isEmpty() )
+				tasks.poll().run();
+		}
+	}
+
+	@Test
+	public void testClickLatestWins()
+	{
+		final ManualExecutor executor = new ManualExecutor();
+		final List< Integer > clicks = new ArrayList<>();
+		final ClickBehaviour click = AsyncBehaviours.async( ( x, y ) -> clicks.add( x ), executor );
+
+		click.click( 1, 0 );
+		click.click( 2, 0 );
+		click.click( 3, 0 );
+		assertEquals( 1, executor.tasks.size() );
+		executor.runAll();
+		assertEquals( Arrays.asList( 3 ), clicks );
+
+		click.click( 4, 0 );
+		executor.runAll();
+		assertEquals( Arrays.asList( 3, 4 ), clicks );
+	}
+
+	@Test
+	public void testClickSupersededWhileRunning()
+	{
+		final ManualExecutor executor = new ManualExecutor();
+		final List< Integer > clicks = new ArrayList<>();
+		final List< Boolean > superseded = new ArrayList<>();
+		final ClickBehaviour[] click = new ClickBehaviour[ 1 ];
+		click[ 0 ] = AsyncBehaviours.async( ( x, y ) -> {
+			clicks.add( x );
+			if ( x == 1 )
+			{
+				// triggered again while the first invocation runs
+				click[ 0 ].click( 2, 0 );
+				click[ 0 ].click( 3, 0 );
+			}
+			superseded.add( AsyncBehaviours.isSuperseded() );
+		}, executor );
+
+		click[ 0 ].click( 1, 0 );
+		executor.runAll();
+		assertEquals( Arrays.asList( 1, 3 ), clicks );
+		assertEquals( Arrays.asList( true, false ), superseded );
+	}
+
+	@Test
+	public void testScrollRotationsAreSummed()
+	{
+		final ManualExecutor executor = new ManualExecutor();
+		final List< String > scrolls = new ArrayList<>();
+		final ScrollBehaviour scroll = AsyncBehaviours.async(
+				( wheelRotation, isHorizontal, x, y ) -> scrolls.add( wheelRotation + " " + isHorizontal + " " + x + " " + y ),
+				executor );
+
+		scroll.scroll( 1, false, 1, 1 );
+		scroll.scroll( 0.5, false, 5, 5 );
+		scroll.scroll( 2, true, 6, 6 );
+		scroll.scroll( -0.25, false, 7, 8 );
+		executor.runAll();
+		assertEquals( Arrays.asList( "1.25 false 7 8", "2.0 true 7 8" ), scrolls );
+
+		scrolls.clear();
+		scroll.scroll( 1, true, 1, 1 );
+		scroll.scroll( 1, false, 2, 2 );
+		scroll.scroll( 1, true, 3, 3 );
+		executor.runAll();
+		assertEquals( Arrays.asList( "2.0 true 3 3", "1.0 false 3 3" ), scrolls );
+	}
+}
@@ -0,0 +1,180 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.io.InputTriggerConfig;
+
+public class BehavioursTest
+{
+	private final ExecutorService other = Executors.newSingleThreadExecutor();
+
+	@After
+	public void shutdown()
+	{
+		other.shutdownNow();
+	}
+
+	/**
+	 * Assert that {@code write} on another thread waits for a batch, and
+	 * returns its {@link Future}.
+	 */
+	private Future< ? > blockedWrite( final Runnable write ) throws Exception
+	{
+		final CountDownLatch started = new CountDownLatch( 1 );
+		final Future< ? > future = other.submit( () -> {
+			started.countDown();
+			write.run();
+		} );
+		started.await();
+		try
+		{
+			future.get( 200, TimeUnit.MILLISECONDS );
+			fail( "write on other thread did not wait for batch" );
+		}
+		catch ( final TimeoutException e )
+		{
+			// expected
+		}
+		return future;
+	}
+
+	@Test
+	public void testUpdateKeyConfigInBatch()
+	{
+		final Behaviours behaviours = new Behaviours( new InputTriggerConfig(), "test" );
+		final InputTriggerMap map = behaviours.getInputTriggerMap();
+
+		final InputTriggerConfig keyConfig = new InputTriggerConfig();
+		keyConfig.add( "B", "added in batch", "test" );
+
+		behaviours.beginBatch();
+		try
+		{
+			final ClickBehaviour click = ( x, y ) -> {};
+			behaviours.behaviour( click, "added in batch", "A" );
+			behaviours.updateKeyConfig( keyConfig );
+		}
+		finally
+		{
+			behaviours.commit();
+		}
+
+		assertEquals( Collections.emptySet(), map.get( InputTrigger.getFromString( "A" ) ) );
+		assertEquals( Collections.singleton( "added in batch" ), map.get( InputTrigger.getFromString( "B" ) ) );
+	}
+
+	@Test
+	public void testWritersAreReleasedWhenBatchThrows() throws Exception
+	{
+		final Behaviours behaviours = new Behaviours( new InputTriggerConfig(), "test" );
+		final InputTriggerMap map = behaviours.getInputTriggerMap();
+		final ClickBehaviour click = ( x, y ) -> {};
+
+		Future< ? > write = null;
+		try
+		{
+			behaviours.beginBatch();
+			try
+			{
+				behaviours.behaviour( click, "added in batch", "A" );
+				write = blockedWrite( () -> behaviours.behaviour( click, "added by other", "B" ) );
+				throw new IllegalArgumentException( "failed in batch" );
+			}
+			finally
+			{
+				behaviours.commit();
+			}
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			// expected
+		}
+
+		write.get( 10, TimeUnit.SECONDS );
+		assertEquals( Collections.singleton( "added in batch" ), map.get( InputTrigger.getFromString( "A" ) ) );
+		assertEquals( Collections.singleton( "added by other" ), map.get( InputTrigger.getFromString( "B" ) ) );
+	}
+
+	@Test
+	public void testFailedBeginBatchReleasesInputTriggerMap() throws Exception
+	{
+		final InputTriggerMap map = new InputTriggerMap();
+		final BehaviourMap failing = new BehaviourMap()
+		{
+			@Override
+			public synchronized void beginBatch()
+			{
+				throw new IllegalStateException( "cannot batch" );
+			}
+		};
+		final Behaviours behaviours = new Behaviours( map, failing, new InputTriggerConfig(), "test" );
+
+		try
+		{
+			behaviours.beginBatch();
+			fail( "beginBatch() did not propagate the failure" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			// expected
+		}
+
+		other.submit( () -> map.put( InputTrigger.getFromString( "A" ), "a" ) ).get( 10, TimeUnit.SECONDS );
+		assertEquals( Collections.singleton( "a" ), map.get( InputTrigger.getFromString( "A" ) ) );
+
+		// the input map has no batch of this thread left open
+		try
+		{
+			map.commit();
+			fail( "input map batch was left open" );
+		}
+		catch ( final IllegalStateException e )
+		{
+			// expected
+		}
+	}
+}
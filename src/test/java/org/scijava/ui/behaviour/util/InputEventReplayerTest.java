@@ -0,0 +1,204 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.scijava.ui.behaviour.TestInput.bind;
+import static org.scijava.ui.behaviour.TestInput.key;
+import static org.scijava.ui.behaviour.TestInput.mouse;
+import static org.scijava.ui.behaviour.TestInput.wheel;
+
+import java.awt.AWTEvent;
+import java.awt.event.FocusEvent;
+import java.awt.event.InputEvent;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.DragBehaviour;
+import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+import org.scijava.ui.behaviour.ScrollBehaviour;
+import org.scijava.ui.behaviour.TestInput;
+
+/**
+ * Events recorded by {@link InputEventRecorder} are decoded by
+ * {@link InputEventReplayer} with the same fields, and replaying them triggers
+ * the same behaviours as the original events.
+ */
+public class InputEventReplayerTest
+{
+	private final List< String > log = new ArrayList<>();
+
+	private static List< AWTEvent > events()
+	{
+		final List< AWTEvent > events = new ArrayList<>();
+		long t = 1000;
+		final int b1 = InputEvent.BUTTON1_DOWN_MASK | InputEvent.BUTTON1_MASK;
+		final int ctrl = InputEvent.CTRL_DOWN_MASK | InputEvent.CTRL_MASK;
+		final int shift = InputEvent.SHIFT_DOWN_MASK;
+		final char none = KeyEvent.CHAR_UNDEFINED;
+		events.add( mouse( MouseEvent.MOUSE_PRESSED, t++, b1, 1, 1, 1, MouseEvent.BUTTON1 ) );
+		for ( int i = 2; i < 6; ++i )
+			events.add( mouse( MouseEvent.MOUSE_DRAGGED, t += 5, b1, i, i, 0, MouseEvent.NOBUTTON ) );
+		events.add( mouse( MouseEvent.MOUSE_RELEASED, t += 5, InputEvent.BUTTON1_MASK, 6, 6, 1, MouseEvent.BUTTON1 ) );
+		events.add( mouse( MouseEvent.MOUSE_CLICKED, t += 1, InputEvent.BUTTON1_MASK | ctrl, 7, 7, 1, MouseEvent.BUTTON1 ) );
+		events.add( wheel( t += 10, 0, 0.25 ) );
+		events.add( wheel( t += 10, shift, -1.5 ) );
+		events.add( key( KeyEvent.KEY_PRESSED, t += 10, 0, KeyEvent.VK_A, 'a', KeyEvent.KEY_LOCATION_STANDARD ) );
+		events.add( key( KeyEvent.KEY_RELEASED, t += 10, 0, KeyEvent.VK_A, 'a', KeyEvent.KEY_LOCATION_STANDARD ) );
+		events.add( key( KeyEvent.KEY_PRESSED, t += 10, shift, KeyEvent.VK_SHIFT, none, KeyEvent.KEY_LOCATION_LEFT ) );
+		events.add( key( KeyEvent.KEY_PRESSED, t += 10, shift, KeyEvent.VK_B, 'B', KeyEvent.KEY_LOCATION_STANDARD ) );
+		events.add( key( KeyEvent.KEY_RELEASED, t += 10, shift, KeyEvent.VK_B, 'B', KeyEvent.KEY_LOCATION_STANDARD ) );
+		events.add( key( KeyEvent.KEY_RELEASED, t += 10, 0, KeyEvent.VK_SHIFT, none, KeyEvent.KEY_LOCATION_LEFT ) );
+		events.add( new FocusEvent( TestInput.SOURCE, FocusEvent.FOCUS_LOST ) );
+		return events;
+	}
+
+	private MouseAndKeyHandler handler()
+	{
+		final InputTriggerMap inputMap = new InputTriggerMap();
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		bind( inputMap, behaviourMap, "button1", "drag", new DragBehaviour()
+		{
+			@Override
+			public void init( final int x, final int y )
+			{
+				log.add( "init " + x );
+			}
+
+			@Override
+			public void drag( final int x, final int y )
+			{
+				log.add( "drag " + x );
+			}
+
+			@Override
+			public void end( final int x, final int y )
+			{
+				log.add( "end " + x );
+			}
+		} );
+		bind( inputMap, behaviourMap, "ctrl button1", "click", ( ClickBehaviour ) ( x, y ) -> log.add( "click " + x ) );
+		bind( inputMap, behaviourMap, "A", "a", ( ClickBehaviour ) ( x, y ) -> log.add( "a" ) );
+		bind( inputMap, behaviourMap, "shift B", "b", ( ClickBehaviour ) ( x, y ) -> log.add( "b" ) );
+		bind( inputMap, behaviourMap, "scroll", "scroll", ( ScrollBehaviour ) ( wheelRotation, isHorizontal, x, y ) -> log.add( "scroll " + wheelRotation + " " + isHorizontal ) );
+		return TestInput.handler( inputMap, behaviourMap );
+	}
+
+	private static InputEventReplayer record( final List< AWTEvent > events ) throws IOException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (final InputEventRecorder recorder = new InputEventRecorder( Channels.newChannel( bytes ) ))
+		{
+			for ( final AWTEvent e : events )
+				recorder.record( e );
+			assertEquals( events.size(), recorder.getEventCount() );
+		}
+		return new InputEventReplayer( ByteBuffer.wrap( bytes.toByteArray() ) );
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		final List< AWTEvent > events = events();
+		final InputEventReplayer replayer = record( events );
+		assertEquals( events.size(), replayer.size() );
+
+		final AWTEvent[] decoded = replayer.events( TestInput.SOURCE );
+		for ( int i = 0; i < decoded.length; ++i )
+		{
+			final AWTEvent expected = events.get( i );
+			final AWTEvent actual = decoded[ i ];
+			final String message = "event " + i + ": " + expected.paramString();
+			assertEquals( message, expected.getClass(), actual.getClass() );
+			assertEquals( message, expected.getID(), actual.getID() );
+			if ( expected instanceof InputEvent )
+			{
+				final InputEvent e = ( InputEvent ) expected;
+				final InputEvent a = ( InputEvent ) actual;
+				assertEquals( message, e.getWhen(), a.getWhen() );
+				assertEquals( message, e.getModifiers(), a.getModifiers() );
+				assertEquals( message, e.getModifiersEx(), a.getModifiersEx() );
+			}
+			if ( expected instanceof MouseEvent )
+			{
+				final MouseEvent e = ( MouseEvent ) expected;
+				final MouseEvent a = ( MouseEvent ) actual;
+				assertEquals( message, e.getX(), a.getX() );
+				assertEquals( message, e.getY(), a.getY() );
+				assertEquals( message, e.getClickCount(), a.getClickCount() );
+				assertEquals( message, e.getButton(), a.getButton() );
+			}
+			if ( expected instanceof MouseWheelEvent )
+			{
+				final MouseWheelEvent e = ( MouseWheelEvent ) expected;
+				final MouseWheelEvent a = ( MouseWheelEvent ) actual;
+				assertEquals( message, e.getWheelRotation(), a.getWheelRotation() );
+				assertEquals( message, e.getPreciseWheelRotation(), a.getPreciseWheelRotation(), 0 );
+			}
+			if ( expected instanceof KeyEvent )
+			{
+				final KeyEvent e = ( KeyEvent ) expected;
+				final KeyEvent a = ( KeyEvent ) actual;
+				assertEquals( message, e.getKeyCode(), a.getKeyCode() );
+				assertEquals( message, e.getKeyChar(), a.getKeyChar() );
+				assertEquals( message, e.getKeyLocation(), a.getKeyLocation() );
+			}
+		}
+	}
+
+	@Test
+	public void testReplayTriggersSameBehaviours() throws IOException
+	{
+		final List< AWTEvent > events = events();
+		final MouseAndKeyHandler direct = handler();
+		for ( final AWTEvent e : events )
+			InputEventReplayer.dispatch( e, direct );
+		final List< String > expected = new ArrayList<>( log );
+		log.clear();
+
+		record( events ).replay( handler() );
+		assertEquals( expected, log );
+		assertEquals( "init 1", expected.get( 0 ) );
+		assertTrue( expected.containsAll( Arrays.asList( "end 6", "click 7", "a", "b" ) ) );
+	}
+}
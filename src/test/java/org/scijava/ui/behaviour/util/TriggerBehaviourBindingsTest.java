@@ -0,0 +1,249 @@
+/*-
+ * #%L
+ * Configurable key and mouse event handling
+ * %%
+ * Copyright (C) 2015 - 2023 Max Planck Institute of Molecular Cell Biology
+ * and Genetics.
+ * %%
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * 1. Redistributions of source code must retain the above copyright notice,
+ *    this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ * #L%
+ */
+package org.scijava.ui.behaviour.util;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+import java.awt.event.InputEvent;
+import java.awt.event.MouseEvent;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.scijava.ui.behaviour.AbstractMouseAndKeyHandler;
+import org.scijava.ui.behaviour.BehaviourMap;
+import org.scijava.ui.behaviour.ClickBehaviour;
+import org.scijava.ui.behaviour.InputTrigger;
+import org.scijava.ui.behaviour.InputTriggerMap;
+import org.scijava.ui.behaviour.MouseAndKeyHandler;
+import org.scijava.ui.behaviour.TestInput;
+
+/**
+ * Switching modes of {@link TriggerBehaviourBindings}: clicks are
+ * dispatched to the behaviours of the current mode, and dispatch tables are
+ * only rebuilt when maps are modified, not when switching back and forth.
+ */
+public class TriggerBehaviourBindingsTest
+{
+	private final List< String > clicks = new ArrayList<>();
+
+	private TriggerBehaviourBindings bindings;
+
+	private InputTriggerMap base;
+
+	private InputTriggerMap nav;
+
+	private InputTriggerMap paint;
+
+	private MouseAndKeyHandler handler;
+
+	private MouseEvent click;
+
+	@Before
+	public void setUp()
+	{
+		base = new InputTriggerMap();
+		nav = new InputTriggerMap();
+		paint = new InputTriggerMap();
+		base.put( InputTrigger.getFromString( "button1" ), "select" );
+		nav.put( InputTrigger.getFromString( "button3" ), "pan" );
+		paint.put( InputTrigger.getFromString( "button3" ), "brush" );
+
+		final BehaviourMap behaviourMap = new BehaviourMap();
+		for ( final String name : new String[] { "select", "pan", "brush" } )
+			behaviourMap.put( name, ( ClickBehaviour ) ( x, y ) -> clicks.add( name ) );
+
+		bindings = new TriggerBehaviourBindings();
+		bindings.addBehaviourMap( "all", behaviourMap );
+		bindings.addInputTriggerMap( "base", base );
+		bindings.addInputTriggerMap( "nav", nav );
+		bindings.addInputTriggerMap( "paint", paint );
+		bindings.addMode( "navigate", "base", "nav" );
+		bindings.addMode( "paint", "base", "paint" );
+
+		handler = TestInput.handler( bindings.getConcatenatedInputTriggerMap(), bindings.getConcatenatedBehaviourMap() );
+		click = TestInput.clicked( InputEvent.BUTTON3_DOWN_MASK, MouseEvent.BUTTON3, 10, 10 );
+	}
+
+	private List< String > click()
+	{
+		clicks.clear();
+		handler.mouseClicked( click );
+		return new ArrayList<>( clicks );
+	}
+
+	@Test
+	public void testDispatchToMode()
+	{
+		bindings.setMode( "navigate" );
+		assertEquals( asList( "pan" ), click() );
+		bindings.setMode( "paint" );
+		assertEquals( asList( "brush" ), click() );
+		bindings.setMode( null );
+		assertEquals( 2, click().size() );
+		bindings.setMode( "navigate" );
+		assertEquals( asList( "pan" ), click() );
+	}
+
+	@Test
+	public void testSwitchingDoesNotRebuild()
+	{
+		bindings.setMode( "navigate" );
+		click();
+		bindings.setMode( null );
+		click();
+		bindings.setMode( "paint" );
+		click();
+		final long updates = handler.getDispatchTableUpdateCount();
+
+		for ( int i = 0; i < 10; ++i )
+		{
+			bindings.setMode( "navigate" );
+			assertEquals( asList( "pan" ), click() );
+			bindings.setMode( null );
+			click();
+			bindings.setMode( "paint" );
+			assertEquals( asList( "brush" ), click() );
+		}
+		assertEquals( updates, handler.getDispatchTableUpdateCount() );
+	}
+
+	@Test
+	public void testModificationInOtherMode()
+	{
+		bindings.setMode( "navigate" );
+		click();
+		bindings.setMode( "paint" );
+		click();
+		final long updates = handler.getDispatchTableUpdateCount();
+
+		// modify a map of mode "navigate" while in mode "paint"
+		nav.put( InputTrigger.getFromString( "button3" ), "select" );
+		assertEquals( asList( "brush" ), click() );
+		bindings.setMode( "navigate" );
+		assertEquals( 2, click().size() );
+		assertEquals( updates + 1, handler.getDispatchTableUpdateCount() );
+	}
+
+	@Test
+	public void testAddMapOnlyRelinksModesContainingIt()
+	{
+		bindings.setMode( "navigate" );
+		final InputTriggerMap navigateRoot = bindings.getConcatenatedInputTriggerMap().getDispatchMap();
+		bindings.setMode( "paint" );
+		final int navigateModCount = navigateRoot.modCount();
+
+		final InputTriggerMap brushes = new InputTriggerMap();
+		brushes.put( InputTrigger.getFromString( "button3" ), "select" );
+		bindings.addInputTriggerMap( "paint", brushes );
+
+		assertEquals( navigateModCount, navigateRoot.modCount() );
+		assertEquals( asList( "select" ), click() );
+		bindings.setMode( "navigate" );
+		assertEquals( asList( "pan" ), click() );
+	}
+
+	@Test
+	public void testBindingsOfConcatenatedMapAreDispatched()
+	{
+		final InputTriggerMap concatenated = bindings.getConcatenatedInputTriggerMap();
+		final InputTrigger button3 = InputTrigger.getFromString( "button3" );
+		bindings.setMode( "navigate" );
+		assertEquals( asList( "pan" ), click() );
+
+		concatenated.put( button3, "select" );
+		assertEquals( new HashSet<>( asList( "pan", "select" ) ), new HashSet<>( click() ) );
+		bindings.setMode( "paint" );
+		assertEquals( new HashSet<>( asList( "brush", "select" ) ), new HashSet<>( click() ) );
+
+		concatenated.remove( button3, "select" );
+		assertEquals( asList( "brush" ), click() );
+		bindings.setMode( "navigate" );
+		assertEquals( asList( "pan" ), click() );
+		assertSame( concatenated.getParent(), concatenated.getDispatchMap() );
+	}
+
+	@Test
+	public void testReaddingMapToMode()
+	{
+		bindings.setMode( "navigate" );
+		for ( int i = 0; i < 3; ++i )
+		{
+			bindings.removeInputTriggerMap( "nav" );
+			assertEquals( asList(), click() );
+			bindings.addInputTriggerMap( "nav", nav );
+			assertEquals( asList( "pan" ), click() );
+		}
+
+		// maps removed from the mode are no longer part of its chain
+		final InputTriggerMap navigateRoot = bindings.getConcatenatedInputTriggerMap().getDispatchMap();
+		bindings.removeInputTriggerMap( "nav" );
+		final int modCount = navigateRoot.modCount();
+		nav.put( InputTrigger.getFromString( "button3" ), "select" );
+		assertEquals( modCount, navigateRoot.modCount() );
+	}
+
+	@Test
+	public void testRemovedModeTablesAreDropped() throws ReflectiveOperationException
+	{
+		bindings.setMode( "navigate" );
+		click();
+		final InputTriggerMap oldRoot = bindings.getConcatenatedInputTriggerMap().getDispatchMap();
+		bindings.setMode( "paint" );
+		click();
+		assertEquals( 2, dispatchTables().size() );
+
+		for ( int i = 0; i < 3; ++i )
+		{
+			bindings.removeMode( "navigate" );
+			bindings.addMode( "navigate", "base", "nav" );
+			bindings.setMode( "navigate" );
+			assertEquals( asList( "pan" ), click() );
+			bindings.setMode( "paint" );
+			assertEquals( asList( "brush" ), click() );
+		}
+		assertFalse( dispatchTables().containsKey( oldRoot ) );
+		assertEquals( 2, dispatchTables().size() );
+	}
+
+	private Map< ?, ? > dispatchTables() throws ReflectiveOperationException
+	{
+		final Field field = AbstractMouseAndKeyHandler.class.getDeclaredField( "dispatchTables" );
+		field.setAccessible( true );
+		return ( Map< ?, ? > ) field.get( handler );
+	}
+}